@@ -0,0 +1,90 @@
+package pl.majchrzw.repoapi.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jol.info.GraphLayout;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import pl.majchrzw.repoapi.model.BranchDto;
+import pl.majchrzw.repoapi.model.CommitDto;
+import pl.majchrzw.repoapi.model.CompactRepositoryList;
+import pl.majchrzw.repoapi.model.OwnerDto;
+import pl.majchrzw.repoapi.model.RepositoryDto;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * Retained heap of a cached result held as plain DTOs, as they come from deserialization, and as
+ * {@link CompactRepositoryList}; sizes are measured with JOL and printed once per trial. Benchmarks show what
+ * compacting costs on insertion and how serialization of a cached result compares.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CacheFootprintBenchmark {
+	
+	@Param({"30", "100"})
+	private int repositories;
+	
+	@Param({"1", "5"})
+	private int branches;
+	
+	private ObjectMapper objectMapper;
+	private List<RepositoryDto> plain;
+	private CompactRepositoryList compact;
+	
+	@Setup
+	public void setup() {
+		objectMapper = Jackson2ObjectMapperBuilder.json().build();
+		plain = result();
+		compact = CompactRepositoryList.of(result());
+		long plainBytes = GraphLayout.parseInstance(plain).totalSize();
+		long compactBytes = GraphLayout.parseInstance(compact).totalSize();
+		System.out.printf("%nbytes per cached repository: plain %d, compact %d%n",
+				plainBytes / repositories, compactBytes / repositories);
+	}
+	
+	@Benchmark
+	public CompactRepositoryList compact() {
+		return CompactRepositoryList.of(plain);
+	}
+	
+	@Benchmark
+	public byte[] serializePlain() throws Exception {
+		return objectMapper.writeValueAsBytes(plain);
+	}
+	
+	@Benchmark
+	public byte[] serializeCompact() throws Exception {
+		return objectMapper.writeValueAsBytes(compact);
+	}
+	
+	/**
+	 * Every string is a distinct instance, as each one is read separately from GitHub JSON.
+	 */
+	private List<RepositoryDto> result() {
+		return IntStream.range(0, repositories)
+				.mapToObj(repo -> new RepositoryDto(GithubPayloads.repoName(repo), new OwnerDto(new String("octocat")), false,
+						IntStream.range(0, branches)
+								.mapToObj(branch -> new BranchDto(branch == 0 ? new String("main") : "feature-" + branch,
+										new CommitDto("%040x".formatted(repo * 1000L + branch))))
+								.toList(),
+						null, Instant.parse("2024-05-01T10:15:30Z").plusSeconds(repo)))
+				.toList();
+	}
+}
@@ -0,0 +1,82 @@
+package pl.majchrzw.repoapi.benchmark;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import pl.majchrzw.repoapi.model.BranchDto;
+import pl.majchrzw.repoapi.model.RepositoryDto;
+import pl.majchrzw.repoapi.service.GithubJsonReader;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Deserialization of a single page of GitHub listings: data binding with object mapper configured the way
+ * {@code RestClient} message converters have it, and {@link GithubJsonReader} used by the REST backend.
+ * Run with {@code -prof gc} to compare allocation per operation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DeserializationBenchmark {
+	
+	private static final TypeReference<List<RepositoryDto>> REPOSITORIES = new TypeReference<>() {
+	};
+	private static final TypeReference<List<BranchDto>> BRANCHES = new TypeReference<>() {
+	};
+	
+	@Param({"30", "100"})
+	private int pageSize;
+	
+	private ObjectMapper objectMapper;
+	private byte[] repositoriesPage;
+	private byte[] branchesPage;
+	
+	@Setup
+	public void setup() {
+		objectMapper = Jackson2ObjectMapperBuilder.json().build();
+		repositoriesPage = GithubPayloads.repositories(0, pageSize).getBytes(StandardCharsets.UTF_8);
+		branchesPage = GithubPayloads.branches(0, pageSize).getBytes(StandardCharsets.UTF_8);
+	}
+	
+	@Benchmark
+	public List<RepositoryDto> repositoriesPage() throws Exception {
+		return objectMapper.readValue(repositoriesPage, REPOSITORIES);
+	}
+	
+	@Benchmark
+	public List<BranchDto> branchesPage() throws Exception {
+		return objectMapper.readValue(branchesPage, BRANCHES);
+	}
+	
+	@Benchmark
+	public List<RepositoryDto> repositoriesPageStreaming() throws Exception {
+		List<RepositoryDto> repositories = new ArrayList<>();
+		GithubJsonReader.readNonForkRepositories(new ByteArrayInputStream(repositoriesPage), repositories::add);
+		return repositories;
+	}
+	
+	@Benchmark
+	public List<BranchDto> branchesPageStreaming() throws Exception {
+		List<BranchDto> branches = new ArrayList<>();
+		GithubJsonReader.readBranches(new ByteArrayInputStream(branchesPage), branches::add);
+		return branches;
+	}
+}
@@ -0,0 +1,61 @@
+package pl.majchrzw.repoapi.benchmark;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Payloads shaped like real GitHub REST responses: full repository objects and branch listings.
+ */
+final class GithubPayloads {
+	
+	private static final String REPOSITORY_TEMPLATE = load("/github-repository.json");
+	
+	private GithubPayloads() {
+	}
+	
+	static String repoName(int repo) {
+		return "repo-%04d".formatted(repo);
+	}
+	
+	/**
+	 * Every fifth repository is a fork.
+	 */
+	static boolean isFork(int repo) {
+		return repo % 5 == 4;
+	}
+	
+	static String repositories(int from, int to) {
+		return IntStream.range(from, to)
+				.mapToObj(repo -> REPOSITORY_TEMPLATE
+						.replace("${id}", String.valueOf(1_296_269 + repo))
+						.replace("${name}", repoName(repo))
+						.replace("${fork}", String.valueOf(isFork(repo))))
+				.collect(Collectors.joining(",", "[", "]"));
+	}
+	
+	static String branches(int repo, int count) {
+		return IntStream.range(0, count)
+				.mapToObj(branch -> {
+					String sha = "%040x".formatted(repo * 1000L + branch);
+					return """
+							{"name":"branch-%03d","commit":{"sha":"%s","url":"https://api.github.com/repos/octocat/%s/commits/%s"},"protected":false}"""
+							.formatted(branch, sha, repoName(repo), sha);
+				})
+				.collect(Collectors.joining(",", "[", "]"));
+	}
+	
+	private static String load(String resource) {
+		try (InputStream in = GithubPayloads.class.getResourceAsStream(resource)) {
+			if (in == null) {
+				throw new IllegalStateException("Missing resource " + resource);
+			}
+			return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+}
@@ -0,0 +1,123 @@
+package pl.majchrzw.repoapi.benchmark;
+
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import pl.majchrzw.repoapi.RepositoryApiApplication;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Load comparison of the blocking endpoint {@code /api/{username}} and the reactive one
+ * {@code /reactive/api/{username}}, served by a running application with small servlet thread pool, against
+ * a GitHub stub with configured latency. Blocking endpoint holds a servlet thread for the whole fan-out, so its
+ * throughput is capped at about {@code servletThreads / request time}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 10)
+@Threads(64)
+@Fork(1)
+public class ModeComparisonBenchmark {
+	
+	@Param({"/api/", "/reactive/api/"})
+	private String endpoint;
+	
+	@Param({"50"})
+	private long latencyMs;
+	
+	@Param({"16"})
+	private int servletThreads;
+	
+	private MockWebServer webServer;
+	private ConfigurableApplicationContext context;
+	private HttpClient httpClient;
+	private URI uri;
+	
+	@Setup
+	public void setup() throws IOException {
+		webServer = new MockWebServer();
+		webServer.setDispatcher(new StubDispatcher(latencyMs));
+		webServer.start();
+		context = new SpringApplicationBuilder(RepositoryApiApplication.class)
+				.properties(
+						"server.port=0",
+						"server.tomcat.threads.max=" + servletThreads,
+						"gh-api-url=http://localhost:" + webServer.getPort(),
+						"gh-reactive=true",
+						"cache-ttl=0s",
+						"logging.level.pl.majchrzw=WARN")
+				.run();
+		int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+		uri = URI.create("http://localhost:" + port + endpoint + "octocat");
+		httpClient = HttpClient.newHttpClient();
+	}
+	
+	@TearDown
+	public void tearDown() throws IOException {
+		httpClient.close();
+		context.close();
+		webServer.shutdown();
+	}
+	
+	@Benchmark
+	public int repositoriesAndBranches() throws Exception {
+		var response = httpClient.send(HttpRequest.newBuilder(uri).header(HttpHeaders.ACCEPT, MediaType.APPLICATION_JSON_VALUE).build(),
+				HttpResponse.BodyHandlers.discarding());
+		if (response.statusCode() != 200) {
+			throw new IllegalStateException("Unexpected status " + response.statusCode());
+		}
+		return response.statusCode();
+	}
+	
+	private static class StubDispatcher extends Dispatcher {
+		
+		private static final int REPOSITORIES = 10;
+		
+		private final String repositoriesBody = GithubPayloads.repositories(0, REPOSITORIES);
+		private final long latencyMs;
+		
+		StubDispatcher(long latencyMs) {
+			this.latencyMs = latencyMs;
+		}
+		
+		@Override
+		public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+			Thread.sleep(latencyMs);
+			String[] segments = request.getRequestUrl().encodedPath().split("/");
+			String body = segments[1].equals("users")
+					? repositoriesBody
+					: GithubPayloads.branches(Integer.parseInt(segments[3].substring("repo-".length())), 3);
+			return new MockResponse()
+					.setResponseCode(200)
+					.addHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+					.setBody(body);
+		}
+	}
+}
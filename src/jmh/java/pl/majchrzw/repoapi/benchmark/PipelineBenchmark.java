@@ -0,0 +1,81 @@
+package pl.majchrzw.repoapi.benchmark;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.mock.http.client.MockClientHttpRequest;
+import org.springframework.mock.http.client.MockClientHttpResponse;
+import org.springframework.web.client.RestClient;
+import pl.majchrzw.repoapi.model.RepositoryDto;
+import pl.majchrzw.repoapi.service.FanOutExecutor;
+import pl.majchrzw.repoapi.service.GithubMetrics;
+import pl.majchrzw.repoapi.service.RequestHedger;
+import pl.majchrzw.repoapi.service.RestGithubApiService;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fork filtering and mapping of repositories to branches done by {@link RestGithubApiService}, with GitHub
+ * answering from memory, so only listing, fan-out and deserialization are measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PipelineBenchmark {
+	
+	@Param({"30", "100"})
+	private int repositories;
+	
+	@Param({"1", "8"})
+	private int fanOutLimit;
+	
+	private RestGithubApiService service;
+	
+	@Setup
+	public void setup() {
+		Map<String, byte[]> responses = new HashMap<>();
+		responses.put("/users/octocat/repos", GithubPayloads.repositories(0, repositories).getBytes(StandardCharsets.UTF_8));
+		for (int repo = 0; repo < repositories; repo++) {
+			responses.put("/repos/octocat/" + GithubPayloads.repoName(repo) + "/branches",
+					GithubPayloads.branches(repo, 1 + repo % 5).getBytes(StandardCharsets.UTF_8));
+		}
+		var restClient = RestClient.builder()
+				.baseUrl("http://github.local")
+				.requestFactory((uri, method) -> {
+					var request = new MockClientHttpRequest(method, uri);
+					var response = new MockClientHttpResponse(responses.get(uri.getPath()), HttpStatus.OK);
+					response.getHeaders().setContentType(MediaType.APPLICATION_JSON);
+					request.setResponse(response);
+					return request;
+				})
+				.build();
+		service = new RestGithubApiService(restClient, new FanOutExecutor(fanOutLimit),
+				new GithubMetrics(new SimpleMeterRegistry(), ObservationRegistry.NOOP),
+				new RequestHedger(false, 0.95, Duration.ofMillis(50), 0.1), 100, 10);
+	}
+	
+	@Benchmark
+	public List<RepositoryDto> repositoriesAndBranches() {
+		return service.getRepositoriesAndBranchesOfUser("octocat");
+	}
+}
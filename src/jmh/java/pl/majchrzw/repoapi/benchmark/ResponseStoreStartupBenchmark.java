@@ -0,0 +1,98 @@
+package pl.majchrzw.repoapi.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import pl.majchrzw.repoapi.configuration.PersistentResponseStore;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Startup cost of {@link PersistentResponseStore} holding given number of responses: opening the store, which is
+ * what boot waits for, and indexing the whole file, which happens in background.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ResponseStoreStartupBenchmark {
+	
+	@Param({"1000000"})
+	private int entries;
+	
+	private Path directory;
+	private Path file;
+	private PersistentResponseStore store;
+	
+	@Setup(Level.Trial)
+	public void setup() throws Exception {
+		directory = Files.createTempDirectory("response-store");
+		file = directory.resolve("responses.bin");
+		var writer = new PersistentResponseStore(file.toString(), Duration.ofDays(7));
+		writer.awaitLoaded(Duration.ofMinutes(1));
+		for (int i = 0; i < entries; i++) {
+			var headers = new HttpHeaders();
+			headers.setContentType(MediaType.APPLICATION_JSON);
+			headers.setETag("\"%040x\"".formatted(i));
+			byte[] body = GithubPayloads.branches(i % 100, 3).getBytes(StandardCharsets.UTF_8);
+			writer.put(uri(i), new PersistentResponseStore.Entry(headers, body, Instant.now()));
+			// writer drops records when it is far behind
+			if (i % 1024 == 0) {
+				writer.flush();
+			}
+		}
+		writer.destroy();
+	}
+	
+	@TearDown(Level.Iteration)
+	public void closeStore() throws Exception {
+		if (store != null) {
+			store.destroy();
+			store = null;
+		}
+	}
+	
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		Files.deleteIfExists(file);
+		Files.deleteIfExists(directory);
+	}
+	
+	@Benchmark
+	public PersistentResponseStore open() {
+		store = new PersistentResponseStore(file.toString(), Duration.ofDays(7));
+		return store;
+	}
+	
+	@Benchmark
+	public int openAndLoad() {
+		store = new PersistentResponseStore(file.toString(), Duration.ofDays(7));
+		store.awaitLoaded(Duration.ofMinutes(5));
+		return store.stats().entries();
+	}
+	
+	private static URI uri(int i) {
+		return URI.create("https://api.github.com/repos/octocat/" + GithubPayloads.repoName(i) + "/branches?per_page=100&page=1");
+	}
+}
@@ -0,0 +1,82 @@
+package pl.majchrzw.repoapi.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import pl.majchrzw.repoapi.model.BranchDto;
+import pl.majchrzw.repoapi.model.CommitDto;
+import pl.majchrzw.repoapi.model.OwnerDto;
+import pl.majchrzw.repoapi.model.RepositoryDto;
+import pl.majchrzw.repoapi.service.SerializedResponseCache;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Work done per response for a hot user: serializing the cached result (and compressing it) on every request,
+ * compared with a hit of {@link SerializedResponseCache}, which only looks up bytes prepared on insertion.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SerializedResponseBenchmark {
+	
+	@Param({"30", "100"})
+	private int repositories;
+	
+	@Param({"5"})
+	private int branches;
+	
+	private ObjectMapper objectMapper;
+	private SerializedResponseCache serializedResponseCache;
+	private List<RepositoryDto> result;
+	
+	@Setup
+	public void setup() {
+		objectMapper = Jackson2ObjectMapperBuilder.json().build();
+		serializedResponseCache = new SerializedResponseCache(objectMapper, 1 << 26);
+		result = IntStream.range(0, repositories)
+				.mapToObj(repo -> new RepositoryDto(GithubPayloads.repoName(repo), new OwnerDto("octocat"), false,
+						IntStream.range(0, branches)
+								.mapToObj(branch -> new BranchDto("branch-%03d".formatted(branch), new CommitDto("%040x".formatted(repo * 1000L + branch))))
+								.toList()))
+				.toList();
+		serializedResponseCache.get("octocat", result);
+	}
+	
+	@Benchmark
+	public byte[] serialize() throws IOException {
+		return objectMapper.writeValueAsBytes(result);
+	}
+	
+	@Benchmark
+	public byte[] serializeAndCompress() throws IOException {
+		var compressed = new ByteArrayOutputStream();
+		try (var gzip = new GZIPOutputStream(compressed)) {
+			gzip.write(objectMapper.writeValueAsBytes(result));
+		}
+		return compressed.toByteArray();
+	}
+	
+	@Benchmark
+	public byte[] cachedHit() {
+		return serializedResponseCache.get("octocat", result).gzip();
+	}
+}
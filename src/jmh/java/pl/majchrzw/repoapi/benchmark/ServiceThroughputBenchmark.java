@@ -0,0 +1,112 @@
+package pl.majchrzw.repoapi.benchmark;
+
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import pl.majchrzw.repoapi.RepositoryApiApplication;
+import pl.majchrzw.repoapi.model.RepositoryDto;
+import pl.majchrzw.repoapi.service.GithubApiService;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end throughput of the application context's {@link GithubApiService} against an in-process GitHub REST stub
+ * answering every call after configured latency. Cache is disabled, so every call reaches the stub.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 10)
+@Threads(8)
+@Fork(1)
+public class ServiceThroughputBenchmark {
+	
+	@Param({"0", "20"})
+	private long latencyMs;
+	
+	@Param({"30"})
+	private int repositories;
+	
+	private MockWebServer webServer;
+	private ConfigurableApplicationContext context;
+	private GithubApiService githubApiService;
+	
+	@Setup
+	public void setup() throws IOException {
+		webServer = new MockWebServer();
+		webServer.setDispatcher(new StubDispatcher(repositories, latencyMs));
+		webServer.start();
+		context = new SpringApplicationBuilder(RepositoryApiApplication.class)
+				.web(WebApplicationType.NONE)
+				.properties(
+						"gh-api-url=http://localhost:" + webServer.getPort(),
+						"cache-ttl=0s",
+						"logging.level.pl.majchrzw=WARN")
+				.run();
+		githubApiService = context.getBean(GithubApiService.class);
+	}
+	
+	@TearDown
+	public void tearDown() throws IOException {
+		context.close();
+		webServer.shutdown();
+	}
+	
+	@Benchmark
+	public List<RepositoryDto> repositoriesAndBranches() {
+		return githubApiService.getRepositoriesAndBranchesOfUser("octocat");
+	}
+	
+	private static class StubDispatcher extends Dispatcher {
+		
+		private final String repositoriesBody;
+		private final String[] branchesBodies;
+		private final long latencyMs;
+		
+		StubDispatcher(int repositories, long latencyMs) {
+			this.repositoriesBody = GithubPayloads.repositories(0, repositories);
+			this.branchesBodies = new String[repositories];
+			for (int repo = 0; repo < repositories; repo++) {
+				branchesBodies[repo] = GithubPayloads.branches(repo, 1 + repo % 5);
+			}
+			this.latencyMs = latencyMs;
+		}
+		
+		@Override
+		public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+			if (latencyMs > 0) {
+				Thread.sleep(latencyMs);
+			}
+			String[] segments = request.getRequestUrl().encodedPath().split("/");
+			String body = segments[1].equals("users")
+					? repositoriesBody
+					: branchesBodies[Integer.parseInt(segments[3].substring("repo-".length()))];
+			return new MockResponse()
+					.setResponseCode(200)
+					.addHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+					.setBody(body);
+		}
+	}
+}
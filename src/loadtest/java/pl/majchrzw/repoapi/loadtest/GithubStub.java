@@ -0,0 +1,260 @@
+package pl.majchrzw.repoapi.loadtest;
+
+import okhttp3.HttpUrl;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.zip.CRC32;
+
+/**
+ * GitHub REST API stub for synthetic users {@code user-0} to {@code user-(users - 1)}, each with {@code repos}
+ * repositories (every fifth one a fork) of {@code branches} branches, all of them paginated like GitHub does. Other
+ * usernames are answered with 404. Every response is delayed by the latency distribution, a share of them fails with
+ * 502, and calls beyond the rate limit quota of the current window are rejected with 403, as GitHub does. Responses
+ * carry an {@code ETag} and are answered with 304, which does not use quota, when it matches.
+ */
+class GithubStub extends Dispatcher {
+	
+	private static final String USER_PREFIX = "user-";
+	
+	private final LoadTestOptions options;
+	private final MockWebServer server = new MockWebServer();
+	
+	// guarded by this
+	private long quotaRemaining;
+	private long quotaResetAtSeconds;
+	
+	private final LongAdder calls = new LongAdder();
+	private final LongAdder notModified = new LongAdder();
+	private final LongAdder notFound = new LongAdder();
+	private final LongAdder injectedErrors = new LongAdder();
+	private final LongAdder rateLimited = new LongAdder();
+	
+	GithubStub(LoadTestOptions options) {
+		this.options = options;
+		server.setDispatcher(this);
+	}
+	
+	void start() throws IOException {
+		server.start(options.stubPort());
+		// MockWebServer keeps every request it has received, they are dropped so that long runs do not fill the heap
+		Thread.ofPlatform().daemon().name("github-stub-drain").start(() -> {
+			try {
+				while (true) {
+					server.takeRequest();
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		});
+	}
+	
+	String url() {
+		return "http://localhost:" + server.getPort();
+	}
+	
+	void stop() throws IOException {
+		server.shutdown();
+	}
+	
+	Stats stats() {
+		return new Stats(calls.sum(), notModified.sum(), notFound.sum(), injectedErrors.sum(), rateLimited.sum());
+	}
+	
+	@Override
+	public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+		calls.increment();
+		var random = ThreadLocalRandom.current();
+		long latency = options.latency().sampleNanos(random);
+		if (latency > 0) {
+			TimeUnit.NANOSECONDS.sleep(latency);
+		}
+		if (random.nextDouble() < options.errorRate()) {
+			injectedErrors.increment();
+			return json(502, "{\"message\":\"Server Error\"}");
+		}
+		HttpUrl url = request.getRequestUrl();
+		String body = body(url);
+		if (body == null) {
+			notFound.increment();
+			return withQuota(json(404, "{\"message\":\"Not Found\",\"documentation_url\":\"https://docs.github.com/rest\"}"), false);
+		}
+		String etag = etag(body);
+		if (etag.equals(request.getHeader(HttpHeaders.IF_NONE_MATCH))) {
+			notModified.increment();
+			return withQuota(new MockResponse().setResponseCode(304).addHeader(HttpHeaders.ETAG, etag), true);
+		}
+		MockResponse response = withQuota(json(200, body).addHeader(HttpHeaders.ETAG, etag), false);
+		if (response.getStatus().contains(" 403 ")) {
+			return response;
+		}
+		String link = link(url);
+		return link == null ? response : response.addHeader(HttpHeaders.LINK, link);
+	}
+	
+	/**
+	 * Returns body of a page of repositories or branches, {@code null} when the user or repository does not exist.
+	 */
+	private String body(HttpUrl url) {
+		var segments = url.pathSegments();
+		int perPage = queryInt(url, "per_page", 30);
+		int page = queryInt(url, "page", 1);
+		if (segments.size() == 3 && segments.get(0).equals("users") && segments.get(2).equals("repos")) {
+			String username = segments.get(1);
+			if (!exists(username)) {
+				return null;
+			}
+			return page(options.repos(), perPage, page)
+					.mapToObj(repo -> repository(username, repo))
+					.collect(Collectors.joining(",", "[", "]"));
+		}
+		if (segments.size() == 4 && segments.get(0).equals("repos") && segments.get(3).equals("branches")) {
+			String username = segments.get(1);
+			int repo = repoIndex(segments.get(2));
+			if (!exists(username) || repo < 0 || repo >= options.repos()) {
+				return null;
+			}
+			return page(options.branches(), perPage, page)
+					.mapToObj(branch -> branch(username, repo, branch))
+					.collect(Collectors.joining(",", "[", "]"));
+		}
+		return null;
+	}
+	
+	private String link(HttpUrl url) {
+		var segments = url.pathSegments();
+		int total = segments.get(0).equals("users") ? options.repos() : options.branches();
+		int perPage = queryInt(url, "per_page", 30);
+		int lastPage = Math.max(1, (total + perPage - 1) / perPage);
+		int page = queryInt(url, "page", 1);
+		if (page >= lastPage) {
+			return null;
+		}
+		return "<%s>; rel=\"next\", <%s>; rel=\"last\"".formatted(
+				url.newBuilder().setQueryParameter("page", String.valueOf(page + 1)).build(),
+				url.newBuilder().setQueryParameter("page", String.valueOf(lastPage)).build());
+	}
+	
+	/**
+	 * Takes a call from quota of the current window; 304 responses are free, like on GitHub.
+	 */
+	private MockResponse withQuota(MockResponse response, boolean free) {
+		if (options.rateLimit() <= 0) {
+			return response;
+		}
+		long remaining;
+		long resetAt;
+		synchronized (this) {
+			long now = Instant.now().getEpochSecond();
+			if (now >= quotaResetAtSeconds) {
+				quotaRemaining = options.rateLimit();
+				quotaResetAtSeconds = now + options.rateLimitWindow().toSeconds();
+			}
+			if (quotaRemaining <= 0) {
+				rateLimited.increment();
+				return json(403, "{\"message\":\"API rate limit exceeded\"}")
+						.addHeader("X-RateLimit-Limit", options.rateLimit())
+						.addHeader("X-RateLimit-Remaining", 0)
+						.addHeader("X-RateLimit-Reset", quotaResetAtSeconds);
+			}
+			if (!free) {
+				quotaRemaining--;
+			}
+			remaining = quotaRemaining;
+			resetAt = quotaResetAtSeconds;
+		}
+		return response
+				.addHeader("X-RateLimit-Limit", options.rateLimit())
+				.addHeader("X-RateLimit-Remaining", remaining)
+				.addHeader("X-RateLimit-Reset", resetAt);
+	}
+	
+	private boolean exists(String username) {
+		if (!username.startsWith(USER_PREFIX)) {
+			return false;
+		}
+		try {
+			int index = Integer.parseInt(username.substring(USER_PREFIX.length()));
+			return index >= 0 && index < options.users();
+		} catch (NumberFormatException e) {
+			return false;
+		}
+	}
+	
+	private static String repository(String username, int repo) {
+		// pushed_at does not change, so that incremental refresh keeps branches of every repository
+		return """
+				{"id":%d,"name":"%s","full_name":"%s/%s","private":false,"owner":{"login":"%s","id":%d,"type":"User","site_admin":false},\
+				"html_url":"https://github.com/%s/%s","description":"Synthetic repository","fork":%b,\
+				"url":"https://api.github.com/repos/%s/%s","created_at":"2020-01-01T00:00:00Z","updated_at":"2024-01-01T00:00:00Z",\
+				"pushed_at":"%s","size":108,"stargazers_count":42,"watchers_count":42,"language":"Java","forks_count":3,\
+				"open_issues_count":1,"default_branch":"main","visibility":"public"}"""
+				.formatted(repo, repoName(repo), username, repoName(repo), username, username.hashCode() & 0x7fffffff,
+						username, repoName(repo), repo % 5 == 4, username, repoName(repo),
+						Instant.parse("2024-01-01T00:00:00Z").plusSeconds(repo * 3600L));
+	}
+	
+	private static String branch(String username, int repo, int branch) {
+		String sha = "%08x%032x".formatted(username.hashCode(), repo * 100_000L + branch);
+		return """
+				{"name":"%s","commit":{"sha":"%s","url":"https://api.github.com/repos/%s/%s/commits/%s"},"protected":false}"""
+				.formatted(branch == 0 ? "main" : "branch-%03d".formatted(branch), sha, username, repoName(repo), sha);
+	}
+	
+	private static String repoName(int repo) {
+		return "repo-%04d".formatted(repo);
+	}
+	
+	private static int repoIndex(String name) {
+		try {
+			return name.startsWith("repo-") ? Integer.parseInt(name.substring("repo-".length())) : -1;
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+	
+	private static IntStream page(int total, int perPage, int page) {
+		int from = Math.min(total, (page - 1) * perPage);
+		return IntStream.range(from, Math.min(total, from + perPage));
+	}
+	
+	private static int queryInt(HttpUrl url, String name, int defaultValue) {
+		String value = url.queryParameter(name);
+		try {
+			return value == null ? defaultValue : Math.max(1, Integer.parseInt(value));
+		} catch (NumberFormatException e) {
+			return defaultValue;
+		}
+	}
+	
+	private static String etag(String body) {
+		var crc = new CRC32();
+		crc.update(body.getBytes(StandardCharsets.UTF_8));
+		return "\"%08x%08x\"".formatted(body.length(), crc.getValue());
+	}
+	
+	private static MockResponse json(int status, String body) {
+		return new MockResponse()
+				.setResponseCode(status)
+				.addHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+				.setBody(body);
+	}
+	
+	/**
+	 * Calls received by the stub and how many of them were answered with 304, 404, injected 502 or rate limit 403.
+	 */
+	record Stats(long calls, long notModified, long notFound, long injectedErrors, long rateLimited) {
+	}
+}
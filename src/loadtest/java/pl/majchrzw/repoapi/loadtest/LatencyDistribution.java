@@ -0,0 +1,51 @@
+package pl.majchrzw.repoapi.loadtest;
+
+import org.springframework.boot.convert.DurationStyle;
+
+import java.util.random.RandomGenerator;
+
+/**
+ * Latency added to every stubbed GitHub response, given as {@code fixed:20ms}, {@code uniform:10ms:50ms} or
+ * {@code lognormal:20ms:200ms}, the last one by its median and 99th percentile, which gives the long tail of real
+ * GitHub calls.
+ */
+record LatencyDistribution(String spec, Kind kind, long firstNanos, long secondNanos) {
+	
+	// 99th percentile of the standard normal distribution
+	private static final double Z_99 = 2.326;
+	
+	enum Kind {
+		FIXED, UNIFORM, LOGNORMAL
+	}
+	
+	static LatencyDistribution parse(String spec) {
+		String[] parts = spec.split(":");
+		Kind kind = Kind.valueOf(parts[0].toUpperCase());
+		long first = nanos(parts[1]);
+		long second = kind == Kind.FIXED ? first : nanos(parts[2]);
+		if (second < first) {
+			throw new IllegalArgumentException("Second latency of '" + spec + "' must not be lower than the first one");
+		}
+		return new LatencyDistribution(spec, kind, first, second);
+	}
+	
+	long sampleNanos(RandomGenerator random) {
+		return switch (kind) {
+			case FIXED -> firstNanos;
+			case UNIFORM -> firstNanos == secondNanos ? firstNanos : random.nextLong(firstNanos, secondNanos + 1);
+			case LOGNORMAL -> {
+				double sigma = Math.log((double) secondNanos / Math.max(1, firstNanos)) / Z_99;
+				yield (long) (firstNanos * Math.exp(sigma * random.nextGaussian()));
+			}
+		};
+	}
+	
+	@Override
+	public String toString() {
+		return spec;
+	}
+	
+	private static long nanos(String duration) {
+		return DurationStyle.detectAndParse(duration).toNanos();
+	}
+}
@@ -0,0 +1,72 @@
+package pl.majchrzw.repoapi.loadtest;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock free histogram of latencies from 1µs to about 10 minutes, in logarithmic buckets 1% wide, so percentiles are
+ * reported within 1% of the recorded value however long the tail is.
+ */
+class LatencyHistogram {
+	
+	private static final long MIN_NANOS = 1_000;
+	private static final double GROWTH = Math.log(1.01);
+	private static final int BUCKETS = (int) Math.ceil(Math.log(600e9 / MIN_NANOS) / GROWTH) + 1;
+	
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+	
+	void record(long nanos) {
+		counts.incrementAndGet(bucket(nanos));
+	}
+	
+	long count() {
+		long count = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			count += counts.get(i);
+		}
+		return count;
+	}
+	
+	/**
+	 * Returns upper bound of the bucket holding given percentile, in nanoseconds, or 0 when nothing was recorded.
+	 */
+	long percentileNanos(double percentile) {
+		long[] snapshot = new long[BUCKETS];
+		long total = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			snapshot[i] = counts.get(i);
+			total += snapshot[i];
+		}
+		if (total == 0) {
+			return 0;
+		}
+		long rank = Math.max(1, (long) Math.ceil(total * percentile / 100));
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			seen += snapshot[i];
+			if (seen >= rank) {
+				return upperBound(i);
+			}
+		}
+		return upperBound(BUCKETS - 1);
+	}
+	
+	long maxNanos() {
+		for (int i = BUCKETS - 1; i >= 0; i--) {
+			if (counts.get(i) > 0) {
+				return upperBound(i);
+			}
+		}
+		return 0;
+	}
+	
+	private static int bucket(long nanos) {
+		if (nanos <= MIN_NANOS) {
+			return 0;
+		}
+		return Math.min(BUCKETS - 1, (int) Math.ceil(Math.log((double) nanos / MIN_NANOS) / GROWTH));
+	}
+	
+	private static long upperBound(int bucket) {
+		return (long) (MIN_NANOS * Math.exp(bucket * GROWTH));
+	}
+}
@@ -0,0 +1,207 @@
+package pl.majchrzw.repoapi.loadtest;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Sends {@code /api/{username}} requests to the application, for usernames drawn from a Zipf distribution over the
+ * synthetic users, so that a few of them are hot like on a real service, and a {@code missing-rate} share of usernames
+ * which do not exist. Runs a warmup phase, whose results are dropped, and then the measured one.
+ * <p>
+ * In closed loop {@code concurrency} workers each send the next request once the previous one is answered, which
+ * measures the highest throughput. In open loop requests are sent at a fixed rate whether or not earlier ones are
+ * answered, and latency is measured from the time a request was due to be sent, so that a stalled application is not
+ * hidden by the generator slowing down with it.
+ */
+class LoadGenerator {
+	
+	private final LoadTestOptions options;
+	private final URI baseUri;
+	private final double[] zipfCdf;
+	private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+	private final HttpClient httpClient;
+	
+	LoadGenerator(LoadTestOptions options, URI baseUri) {
+		this.options = options;
+		this.baseUri = baseUri;
+		this.zipfCdf = zipfCdf(options.users(), options.zipfExponent());
+		this.httpClient = HttpClient.newBuilder()
+				.executor(executor)
+				.connectTimeout(options.timeout())
+				.build();
+	}
+	
+	Result run() throws InterruptedException {
+		if (!options.warmup().isZero()) {
+			runPhase(options.warmup());
+		}
+		return runPhase(options.duration());
+	}
+	
+	void close() {
+		httpClient.close();
+		executor.shutdownNow();
+	}
+	
+	private Result runPhase(Duration duration) throws InterruptedException {
+		var phase = new Phase();
+		long startedAt = System.nanoTime();
+		long endsAt = startedAt + duration.toNanos();
+		if (options.openLoop()) {
+			runOpenLoop(phase, startedAt, endsAt);
+		} else {
+			runClosedLoop(phase, endsAt);
+		}
+		return phase.result(System.nanoTime() - startedAt);
+	}
+	
+	private void runClosedLoop(Phase phase, long endsAt) throws InterruptedException {
+		var workers = new ArrayList<Future<?>>();
+		for (int i = 0; i < options.concurrency(); i++) {
+			workers.add(executor.submit(() -> {
+				while (System.nanoTime() - endsAt < 0) {
+					long sentAt = System.nanoTime();
+					try {
+						var response = httpClient.send(request(), HttpResponse.BodyHandlers.discarding());
+						phase.record(response.statusCode(), System.nanoTime() - sentAt);
+					} catch (IOException e) {
+						phase.recordError(e);
+					} catch (InterruptedException e) {
+						return;
+					}
+				}
+			}));
+		}
+		for (var worker : workers) {
+			try {
+				worker.get();
+			} catch (ExecutionException e) {
+				throw new IllegalStateException(e.getCause());
+			}
+		}
+	}
+	
+	private void runOpenLoop(Phase phase, long startedAt, long endsAt) throws InterruptedException {
+		long intervalNanos = 1_000_000_000L / options.rate();
+		var pending = new ArrayList<CompletableFuture<?>>();
+		for (long dueAt = startedAt; dueAt - endsAt < 0; dueAt += intervalNanos) {
+			long wait = dueAt - System.nanoTime();
+			if (wait > 0) {
+				LockSupport.parkNanos(wait);
+			}
+			if (Thread.interrupted()) {
+				throw new InterruptedException();
+			}
+			long intendedAt = dueAt;
+			pending.add(httpClient.sendAsync(request(), HttpResponse.BodyHandlers.discarding())
+					.handle((response, error) -> {
+						if (error == null) {
+							phase.record(response.statusCode(), System.nanoTime() - intendedAt);
+						} else {
+							phase.recordError(error instanceof CompletionException ? error.getCause() : error);
+						}
+						return null;
+					}));
+			pending.removeIf(CompletableFuture::isDone);
+		}
+		for (var request : pending) {
+			request.join();
+		}
+	}
+	
+	private HttpRequest request() {
+		return HttpRequest.newBuilder(baseUri.resolve("/api/" + username()))
+				.header(HttpHeaders.ACCEPT, MediaType.APPLICATION_JSON_VALUE)
+				.timeout(options.timeout())
+				.build();
+	}
+	
+	private String username() {
+		var random = ThreadLocalRandom.current();
+		if (random.nextDouble() < options.missingRate()) {
+			// drawn from a pool larger than the users, so that some missing names repeat and some do not
+			return "missing-" + random.nextInt(Math.max(1, options.users() * 10));
+		}
+		int index = Arrays.binarySearch(zipfCdf, random.nextDouble());
+		return "user-" + Math.min(zipfCdf.length - 1, index >= 0 ? index : -index - 1);
+	}
+	
+	private static double[] zipfCdf(int users, double exponent) {
+		double[] cdf = new double[Math.max(1, users)];
+		double sum = 0;
+		for (int i = 0; i < cdf.length; i++) {
+			sum += 1 / Math.pow(i + 1, exponent);
+			cdf[i] = sum;
+		}
+		for (int i = 0; i < cdf.length; i++) {
+			cdf[i] /= sum;
+		}
+		return cdf;
+	}
+	
+	private static class Phase {
+		
+		private final LatencyHistogram histogram = new LatencyHistogram();
+		private final LongAdder[] statusClasses = {new LongAdder(), new LongAdder(), new LongAdder(), new LongAdder(), new LongAdder()};
+		private final LongAdder ioErrors = new LongAdder();
+		private final LongAdder timeouts = new LongAdder();
+		
+		void record(int status, long latencyNanos) {
+			histogram.record(latencyNanos);
+			statusClasses[Math.min(4, Math.max(0, status / 100 - 1))].increment();
+		}
+		
+		void recordError(Throwable error) {
+			if (error instanceof HttpTimeoutException) {
+				timeouts.increment();
+			} else {
+				ioErrors.increment();
+			}
+		}
+		
+		Result result(long elapsedNanos) {
+			return new Result(elapsedNanos, histogram.count(), statusClasses[1].sum(), statusClasses[2].sum(),
+					statusClasses[3].sum(), statusClasses[4].sum(), ioErrors.sum(), timeouts.sum(),
+					histogram.percentileNanos(50), histogram.percentileNanos(90), histogram.percentileNanos(99),
+					histogram.percentileNanos(99.9), histogram.maxNanos());
+		}
+	}
+	
+	/**
+	 * Outcome of the measured phase; latencies are in nanoseconds and cover answered requests only.
+	 */
+	record Result(long elapsedNanos, long responses, long ok, long redirects, long clientErrors, long serverErrors,
+	              long ioErrors, long timeouts, long p50, long p90, long p99, long p999, long max) {
+		
+		long requests() {
+			return responses + ioErrors + timeouts;
+		}
+		
+		double throughput() {
+			return responses * 1e9 / elapsedNanos;
+		}
+		
+		double errorRate() {
+			return requests() == 0 ? 0 : (double) (serverErrors + ioErrors + timeouts) / requests();
+		}
+	}
+}
@@ -0,0 +1,80 @@
+package pl.majchrzw.repoapi.loadtest;
+
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import pl.majchrzw.repoapi.RepositoryApiApplication;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Load test of the application against {@link GithubStub}, run with {@code mvn verify -Ploadtest}, e.g.
+ * {@code -Dloadtest.args="rate=500 duration=1m latency=lognormal:50ms:800ms app.cache-ttl=0s"}; see
+ * {@link LoadTestOptions} for the arguments. The application is started in this JVM, unless {@code target} gives the
+ * url of one started separately, in which case it has to be pointed at the stub, whose port is then set with
+ * {@code stub-port}.
+ */
+public class LoadTest {
+	
+	public static void main(String[] args) throws Exception {
+		var options = LoadTestOptions.parse(args);
+		var stub = new GithubStub(options);
+		stub.start();
+		ConfigurableApplicationContext context = null;
+		LoadGenerator generator = null;
+		try {
+			URI target;
+			if (options.target() != null) {
+				target = URI.create(options.target());
+			} else {
+				context = startApplication(options, stub.url());
+				target = URI.create("http://localhost:" + ((WebServerApplicationContext) context).getWebServer().getPort());
+			}
+			System.out.printf("Load test of %s against GitHub stub at %s%n", target, stub.url());
+			generator = new LoadGenerator(options, target);
+			var result = generator.run();
+			report(options, result, stub.stats());
+		} finally {
+			if (generator != null) {
+				generator.close();
+			}
+			if (context != null) {
+				context.close();
+			}
+			stub.stop();
+		}
+	}
+	
+	private static ConfigurableApplicationContext startApplication(LoadTestOptions options, String stubUrl) {
+		// given as command line arguments, default properties would be overridden by application.properties
+		List<String> arguments = new ArrayList<>(List.of(
+				"--server.port=0",
+				"--gh-api-url=" + stubUrl,
+				"--logging.level.pl.majchrzw=WARN"));
+		options.appProperties().forEach((key, value) -> arguments.add("--" + key + "=" + value));
+		return new SpringApplicationBuilder(RepositoryApiApplication.class)
+				.run(arguments.toArray(String[]::new));
+	}
+	
+	private static void report(LoadTestOptions options, LoadGenerator.Result result, GithubStub.Stats stub) {
+		System.out.printf("%n%s loop, %s, %d users x %d repos x %d branches, GitHub latency %s, %.1f%% errors%n",
+				options.openLoop() ? "Open (" + options.rate() + " req/s)" : "Closed (" + options.concurrency() + " workers)",
+				options.duration(), options.users(), options.repos(), options.branches(),
+				options.latency(), options.errorRate() * 100);
+		System.out.printf("Requests:    %d, %.1f req/s%n", result.requests(), result.throughput());
+		System.out.printf("Responses:   2xx %d, 3xx %d, 4xx %d, 5xx %d%n",
+				result.ok(), result.redirects(), result.clientErrors(), result.serverErrors());
+		System.out.printf("Failures:    %d io errors, %d timeouts, error rate %.2f%%%n",
+				result.ioErrors(), result.timeouts(), result.errorRate() * 100);
+		System.out.printf("Latency:     p50 %s, p90 %s, p99 %s, p99.9 %s, max %s%n",
+				millis(result.p50()), millis(result.p90()), millis(result.p99()), millis(result.p999()), millis(result.max()));
+		System.out.printf("GitHub stub: %d calls, %d not modified, %d not found, %d injected errors, %d rate limited%n",
+				stub.calls(), stub.notModified(), stub.notFound(), stub.injectedErrors(), stub.rateLimited());
+	}
+	
+	private static String millis(long nanos) {
+		return "%.1fms".formatted(nanos / 1e6);
+	}
+}
@@ -0,0 +1,85 @@
+package pl.majchrzw.repoapi.loadtest;
+
+import org.springframework.boot.convert.DurationStyle;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Options of a load test run, given as {@code key=value} arguments. Arguments prefixed with {@code app.} are passed
+ * as properties to the embedded application, e.g. {@code app.cache-ttl=0s}.
+ */
+record LoadTestOptions(String target,
+                       int stubPort,
+                       int users,
+                       int repos,
+                       int branches,
+                       LatencyDistribution latency,
+                       double errorRate,
+                       int rateLimit,
+                       Duration rateLimitWindow,
+                       int concurrency,
+                       int rate,
+                       double zipfExponent,
+                       double missingRate,
+                       Duration warmup,
+                       Duration duration,
+                       Duration timeout,
+                       Map<String, String> appProperties) {
+	
+	private static final Set<String> KEYS = Set.of("target", "stub-port", "users", "repos", "branches", "latency",
+			"error-rate", "rate-limit", "rate-limit-window", "concurrency", "rate", "zipf", "missing-rate", "warmup",
+			"duration", "timeout");
+	
+	static LoadTestOptions parse(String... args) {
+		Map<String, String> values = new LinkedHashMap<>();
+		Map<String, String> appProperties = new LinkedHashMap<>();
+		for (String arg : args) {
+			int separator = arg.indexOf('=');
+			if (separator <= 0) {
+				throw new IllegalArgumentException("Argument '" + arg + "' is not of the form key=value");
+			}
+			String key = arg.substring(0, separator);
+			String value = arg.substring(separator + 1);
+			if (key.startsWith("app.")) {
+				appProperties.put(key.substring("app.".length()), value);
+			} else if (KEYS.contains(key)) {
+				values.put(key, value);
+			} else {
+				throw new IllegalArgumentException("Unknown argument '" + key + "', known ones are " + KEYS);
+			}
+		}
+		return new LoadTestOptions(
+				values.get("target"),
+				Integer.parseInt(values.getOrDefault("stub-port", "0")),
+				Integer.parseInt(values.getOrDefault("users", "1000")),
+				Integer.parseInt(values.getOrDefault("repos", "30")),
+				Integer.parseInt(values.getOrDefault("branches", "3")),
+				LatencyDistribution.parse(values.getOrDefault("latency", "lognormal:30ms:300ms")),
+				Double.parseDouble(values.getOrDefault("error-rate", "0.01")),
+				Integer.parseInt(values.getOrDefault("rate-limit", "0")),
+				duration(values.getOrDefault("rate-limit-window", "1h")),
+				Integer.parseInt(values.getOrDefault("concurrency", "32")),
+				Integer.parseInt(values.getOrDefault("rate", "0")),
+				Double.parseDouble(values.getOrDefault("zipf", "1.0")),
+				Double.parseDouble(values.getOrDefault("missing-rate", "0.05")),
+				duration(values.getOrDefault("warmup", "10s")),
+				duration(values.getOrDefault("duration", "30s")),
+				duration(values.getOrDefault("timeout", "10s")),
+				appProperties);
+	}
+	
+	/**
+	 * Open loop, sending requests at a fixed {@code rate} per second, instead of closed loop of {@code concurrency}
+	 * workers each waiting for its response before sending the next request.
+	 */
+	boolean openLoop() {
+		return rate > 0;
+	}
+	
+	private static Duration duration(String value) {
+		return DurationStyle.detectAndParse(value);
+	}
+}
@@ -0,0 +1,44 @@
+package pl.majchrzw.repoapi.configuration;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.client.ClientHttpResponse;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+
+class CachedClientHttpResponse implements ClientHttpResponse {
+	
+	private final HttpHeaders headers;
+	private final byte[] body;
+	
+	CachedClientHttpResponse(HttpHeaders headers, byte[] body) {
+		this.headers = headers;
+		this.body = body;
+	}
+	
+	@Override
+	public HttpStatusCode getStatusCode() {
+		return HttpStatus.OK;
+	}
+	
+	@Override
+	public String getStatusText() {
+		return HttpStatus.OK.getReasonPhrase();
+	}
+	
+	@Override
+	public HttpHeaders getHeaders() {
+		return headers;
+	}
+	
+	@Override
+	public InputStream getBody() {
+		return new ByteArrayInputStream(body);
+	}
+	
+	@Override
+	public void close() {
+	}
+}
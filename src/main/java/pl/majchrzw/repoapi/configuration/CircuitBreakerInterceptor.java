@@ -0,0 +1,156 @@
+package pl.majchrzw.repoapi.configuration;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.stereotype.Component;
+import pl.majchrzw.repoapi.exception.ExternalApiErrorException;
+import pl.majchrzw.repoapi.exception.RateLimitExceededException;
+import pl.majchrzw.repoapi.service.RequestDeadline;
+
+import java.io.IOException;
+import java.time.Duration;
+
+/**
+ * Stops calling GitHub when it fails: once at least {@code gh-circuit-failure-rate} of the last
+ * {@code gh-circuit-window} calls ended with I/O error or 5xx status, calls fail fast with
+ * {@link ExternalApiErrorException} for {@code gh-circuit-open-duration}. Afterwards
+ * {@code gh-circuit-half-open-calls} probe calls are let through, the circuit closes when all of them succeed
+ * and opens again on the first failure. Rate limiting (4xx) is not a failure, it is handled by
+ * {@link RateLimitInterceptor}, nor is a call it refuses because quota of all tokens is used up.
+ */
+@Component
+public class CircuitBreakerInterceptor implements ClientHttpRequestInterceptor {
+	
+	public enum State {
+		CLOSED, OPEN, HALF_OPEN
+	}
+	
+	private final Logger log = LoggerFactory.getLogger(CircuitBreakerInterceptor.class);
+	private final boolean[] outcomes;
+	private final int minCalls;
+	private final double failureRate;
+	private final long openNanos;
+	private final int halfOpenCalls;
+	
+	private State state = State.CLOSED;
+	private int recorded;
+	private int failures;
+	private long openedAt;
+	private int probesStarted;
+	private int probesSucceeded;
+	
+	public CircuitBreakerInterceptor(@Value("${gh-circuit-window:50}") int window,
+	                                 @Value("${gh-circuit-min-calls:20}") int minCalls,
+	                                 @Value("${gh-circuit-failure-rate:0.5}") double failureRate,
+	                                 @Value("${gh-circuit-open-duration:10s}") Duration openDuration,
+	                                 @Value("${gh-circuit-half-open-calls:3}") int halfOpenCalls) {
+		this.outcomes = new boolean[window];
+		this.minCalls = Math.min(minCalls, window);
+		this.failureRate = failureRate;
+		this.openNanos = openDuration.toNanos();
+		this.halfOpenCalls = halfOpenCalls;
+	}
+	
+	@Override
+	public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution) throws IOException {
+		boolean probe = acquire();
+		ClientHttpResponse response;
+		try {
+			response = execution.execute(request, body);
+		} catch (RateLimitExceededException e) {
+			// refused before reaching GitHub
+			if (probe) {
+				releaseProbe();
+			}
+			throw e;
+		} catch (IOException | RuntimeException e) {
+			// interrupted calls have been cancelled by the caller (e.g. a losing hedge) and calls past deadline of
+			// their request have been cut short by it, GitHub is not to blame
+			if (!Thread.currentThread().isInterrupted() && !RequestDeadline.isExpired()) {
+				onResult(false, probe);
+			} else if (probe) {
+				releaseProbe();
+			}
+			throw e;
+		}
+		onResult(!response.getStatusCode().is5xxServerError(), probe);
+		return response;
+	}
+	
+	public synchronized State state() {
+		return state;
+	}
+	
+	/**
+	 * Returns whether the call is a half-open probe, throws when the circuit is open.
+	 */
+	private synchronized boolean acquire() {
+		if (state == State.OPEN) {
+			if (System.nanoTime() - openedAt < openNanos) {
+				throw new ExternalApiErrorException("GitHub api is unavailable, try later.");
+			}
+			state = State.HALF_OPEN;
+			probesStarted = 0;
+			probesSucceeded = 0;
+			log.info("Circuit of GitHub calls is half-open, probing");
+		}
+		if (state == State.HALF_OPEN) {
+			if (probesStarted >= halfOpenCalls) {
+				throw new ExternalApiErrorException("GitHub api is unavailable, try later.");
+			}
+			probesStarted++;
+			return true;
+		}
+		return false;
+	}
+	
+	private synchronized void releaseProbe() {
+		if (state == State.HALF_OPEN) {
+			probesStarted--;
+		}
+	}
+	
+	private synchronized void onResult(boolean success, boolean probe) {
+		if (probe) {
+			if (state != State.HALF_OPEN) {
+				return;
+			}
+			if (!success) {
+				open();
+			} else if (++probesSucceeded >= halfOpenCalls) {
+				state = State.CLOSED;
+				recorded = 0;
+				failures = 0;
+				log.info("Circuit of GitHub calls is closed again");
+			}
+			return;
+		}
+		if (state != State.CLOSED) {
+			return;
+		}
+		int slot = recorded % outcomes.length;
+		if (recorded >= outcomes.length && !outcomes[slot]) {
+			failures--;
+		}
+		outcomes[slot] = success;
+		if (!success) {
+			failures++;
+		}
+		recorded++;
+		int calls = Math.min(recorded, outcomes.length);
+		if (calls >= minCalls && failures >= failureRate * calls) {
+			open();
+		}
+	}
+	
+	private void open() {
+		state = State.OPEN;
+		openedAt = System.nanoTime();
+		log.warn("Circuit of GitHub calls is open for {}ms, failing fast", openNanos / 1_000_000);
+	}
+}
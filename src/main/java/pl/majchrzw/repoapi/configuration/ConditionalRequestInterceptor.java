@@ -0,0 +1,146 @@
+package pl.majchrzw.repoapi.configuration;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.net.URI;
+import java.time.Instant;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Stores bodies of GitHub responses carrying {@code ETag} or {@code Last-Modified} per request URI and
+ * revalidates them with {@code If-None-Match}/{@code If-Modified-Since}. A {@code 304 Not Modified} answer
+ * (which does not count against GitHub rate limit) is replaced with the stored response, so callers always
+ * see a regular {@code 200}. Entries are evicted in LRU order once entry count or total body size is exceeded.
+ * Stored responses are also written to {@link PersistentResponseStore}, which is consulted on a miss, so they
+ * survive restart.
+ */
+@Component
+public class ConditionalRequestInterceptor implements ClientHttpRequestInterceptor {
+	
+	private final int maxEntries;
+	private final long maxBytes;
+	private final PersistentResponseStore persistentStore;
+	private final Map<URI, StoredResponse> entries = new LinkedHashMap<>(16, 0.75f, true);
+	private long storedBytes;
+	
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder notModified = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	
+	public ConditionalRequestInterceptor(@Value("${gh-etag-cache-max-entries:10000}") int maxEntries,
+	                                     @Value("${gh-etag-cache-max-bytes:67108864}") long maxBytes,
+	                                     PersistentResponseStore persistentStore) {
+		this.maxEntries = maxEntries;
+		this.maxBytes = maxBytes;
+		this.persistentStore = persistentStore;
+	}
+	
+	@Override
+	public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution) throws IOException {
+		if (request.getMethod() != HttpMethod.GET) {
+			return execution.execute(request, body);
+		}
+		URI uri = request.getURI();
+		StoredResponse stored = get(uri);
+		if (stored != null) {
+			hits.increment();
+			if (stored.etag() != null) {
+				request.getHeaders().setIfNoneMatch(stored.etag());
+			}
+			if (stored.lastModified() != null) {
+				request.getHeaders().set(HttpHeaders.IF_MODIFIED_SINCE, stored.lastModified());
+			}
+		} else {
+			misses.increment();
+		}
+		
+		ClientHttpResponse response = execution.execute(request, body);
+		if (stored != null && response.getStatusCode().isSameCodeAs(HttpStatus.NOT_MODIFIED)) {
+			notModified.increment();
+			response.close();
+			return stored.toResponse();
+		}
+		if (!response.getStatusCode().isSameCodeAs(HttpStatus.OK)) {
+			return response;
+		}
+		String etag = response.getHeaders().getETag();
+		String lastModified = response.getHeaders().getFirst(HttpHeaders.LAST_MODIFIED);
+		if (etag == null && lastModified == null) {
+			return response;
+		}
+		
+		HttpHeaders headers = new HttpHeaders();
+		headers.putAll(response.getHeaders());
+		byte[] responseBody;
+		try (response) {
+			responseBody = response.getBody().readAllBytes();
+		}
+		var entry = new StoredResponse(HttpHeaders.readOnlyHttpHeaders(headers), responseBody, etag, lastModified);
+		put(uri, entry);
+		persistentStore.put(uri, new PersistentResponseStore.Entry(entry.headers(), responseBody, Instant.now()));
+		return entry.toResponse();
+	}
+	
+	public Stats stats() {
+		synchronized (entries) {
+			return new Stats(hits.sum(), notModified.sum(), misses.sum(), entries.size(), storedBytes);
+		}
+	}
+	
+	private StoredResponse get(URI uri) {
+		synchronized (entries) {
+			StoredResponse stored = entries.get(uri);
+			if (stored != null) {
+				return stored;
+			}
+		}
+		var persisted = persistentStore.get(uri);
+		if (persisted == null) {
+			return null;
+		}
+		var stored = new StoredResponse(persisted.headers(), persisted.body(), persisted.headers().getETag(),
+				persisted.headers().getFirst(HttpHeaders.LAST_MODIFIED));
+		put(uri, stored);
+		return stored;
+	}
+	
+	private void put(URI uri, StoredResponse entry) {
+		if (entry.body().length > maxBytes) {
+			return;
+		}
+		synchronized (entries) {
+			StoredResponse previous = entries.put(uri, entry);
+			if (previous != null) {
+				storedBytes -= previous.body().length;
+			}
+			storedBytes += entry.body().length;
+			Iterator<StoredResponse> eldest = entries.values().iterator();
+			while (entries.size() > maxEntries || storedBytes > maxBytes) {
+				storedBytes -= eldest.next().body().length;
+				eldest.remove();
+			}
+		}
+	}
+	
+	public record Stats(long hits, long notModified, long misses, int entries, long bytes) {
+	}
+	
+	private record StoredResponse(HttpHeaders headers, byte[] body, String etag, String lastModified) {
+		
+		ClientHttpResponse toResponse() {
+			return new CachedClientHttpResponse(headers, body);
+		}
+	}
+}
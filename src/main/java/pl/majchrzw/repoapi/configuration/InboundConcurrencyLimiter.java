@@ -0,0 +1,187 @@
+package pl.majchrzw.repoapi.configuration;
+
+import io.micrometer.context.ContextRegistry;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import pl.majchrzw.repoapi.exception.OverloadedException;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Limits the number of {@code /api/{username}} requests in progress, requests above the limit are rejected at once
+ * with 503 and {@code Retry-After} instead of waiting for a servlet thread. The limit adapts to measured latency
+ * with a gradient: it grows while latency stays within {@code inbound-limit-tolerance} times the recent minimum,
+ * and shrinks in proportion when it does not, e.g. when GitHub slows down, between {@code inbound-limit-min} and
+ * {@code inbound-limit-max}. Only latency of requests which have called GitHub is measured; cache hits take well
+ * under a millisecond, so their latency would stand for a baseline which GitHub-bound requests never get near.
+ */
+@Component
+public class InboundConcurrencyLimiter implements HandlerInterceptor, WebMvcConfigurer {
+	
+	private static final String ADMISSION_ATTRIBUTE = InboundConcurrencyLimiter.class.getName() + ".admission";
+	// set while a request is handled, follows it into fan-out tasks
+	private static final ThreadLocal<AtomicBoolean> CALLED_UPSTREAM = new ThreadLocal<>();
+	private static final int BASELINE_WINDOW = 500;
+	private static final double SHORT_WINDOW = 10;
+	private static final double SMOOTHING = 0.2;
+	
+	private final boolean enabled;
+	private final int minLimit;
+	private final int maxLimit;
+	private final double tolerance;
+	private final Duration retryAfter;
+	private final AtomicInteger inFlight = new AtomicInteger();
+	
+	// guarded by this
+	private double limit;
+	private double shortRtt;
+	private long baselineRtt = Long.MAX_VALUE;
+	private long windowMinRtt = Long.MAX_VALUE;
+	private long samples;
+	
+	private final LongAdder accepted = new LongAdder();
+	private final LongAdder rejected = new LongAdder();
+	private final LongAdder measured = new LongAdder();
+	
+	static {
+		ContextRegistry.getInstance().registerThreadLocalAccessor("repoapi.inbound.upstream", CALLED_UPSTREAM::get,
+				CALLED_UPSTREAM::set, CALLED_UPSTREAM::remove);
+	}
+	
+	public InboundConcurrencyLimiter(@Value("${inbound-limit-enabled:true}") boolean enabled,
+	                                 @Value("${inbound-limit-initial:20}") int initialLimit,
+	                                 @Value("${inbound-limit-min:4}") int minLimit,
+	                                 @Value("${inbound-limit-max:200}") int maxLimit,
+	                                 @Value("${inbound-limit-tolerance:2.0}") double tolerance,
+	                                 @Value("${inbound-limit-retry-after:1s}") Duration retryAfter) {
+		if (minLimit < 1 || maxLimit < minLimit) {
+			throw new IllegalArgumentException("Inbound limits must be positive and min must not exceed max");
+		}
+		this.enabled = enabled;
+		this.minLimit = minLimit;
+		this.maxLimit = maxLimit;
+		this.tolerance = tolerance;
+		this.retryAfter = retryAfter;
+		this.limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+	}
+	
+	@Override
+	public void addInterceptors(InterceptorRegistry registry) {
+		if (enabled) {
+			registry.addInterceptor(this)
+					.addPathPatterns("/api/*")
+					.excludePathPatterns("/api/batch");
+		}
+	}
+	
+	@Override
+	public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+		if (!tryAcquire()) {
+			throw new OverloadedException("Too many requests in progress, try later.", retryAfter);
+		}
+		var calledUpstream = new AtomicBoolean();
+		CALLED_UPSTREAM.set(calledUpstream);
+		request.setAttribute(ADMISSION_ATTRIBUTE, new Admission(System.nanoTime(), calledUpstream));
+		return true;
+	}
+	
+	@Override
+	public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+		CALLED_UPSTREAM.remove();
+		if (request.getAttribute(ADMISSION_ATTRIBUTE) instanceof Admission admission) {
+			request.removeAttribute(ADMISSION_ATTRIBUTE);
+			if (admission.calledUpstream().get()) {
+				release(System.nanoTime() - admission.start());
+			} else {
+				release();
+			}
+		}
+	}
+	
+	/**
+	 * Marks the request being handled, if any, as one which has called GitHub.
+	 */
+	public static void recordUpstreamCall() {
+		AtomicBoolean calledUpstream = CALLED_UPSTREAM.get();
+		if (calledUpstream != null) {
+			calledUpstream.set(true);
+		}
+	}
+	
+	/**
+	 * Takes a slot of in-flight request, fails without waiting when all of them are taken.
+	 */
+	public boolean tryAcquire() {
+		int allowed = limit();
+		while (true) {
+			int current = inFlight.get();
+			if (current >= allowed) {
+				rejected.increment();
+				return false;
+			}
+			if (inFlight.compareAndSet(current, current + 1)) {
+				accepted.increment();
+				return true;
+			}
+		}
+	}
+	
+	/**
+	 * Returns the slot of a request which has taken given time and adjusts the limit to it.
+	 */
+	public void release(long latencyNanos) {
+		int current = inFlight.getAndDecrement();
+		measured.increment();
+		update(latencyNanos, current);
+	}
+	
+	/**
+	 * Returns the slot of a request which has not called GitHub, without measuring it.
+	 */
+	public void release() {
+		inFlight.decrementAndGet();
+	}
+	
+	public synchronized int limit() {
+		return (int) limit;
+	}
+	
+	public Stats stats() {
+		return new Stats(limit(), inFlight.get(), accepted.sum(), rejected.sum(), measured.sum());
+	}
+	
+	private synchronized void update(long rtt, int inFlightAtCompletion) {
+		shortRtt = samples == 0 ? rtt : shortRtt + (rtt - shortRtt) * 2 / (SHORT_WINDOW + 1);
+		samples++;
+		// latency without queueing is the lowest one seen recently; taking it from windows lets it rise when GitHub
+		// itself gets slower, an average would instead follow latency caused by the app's own queueing
+		baselineRtt = Math.min(baselineRtt, rtt);
+		windowMinRtt = Math.min(windowMinRtt, rtt);
+		if (samples % BASELINE_WINDOW == 0) {
+			baselineRtt = windowMinRtt;
+			windowMinRtt = Long.MAX_VALUE;
+		}
+		// while far below the limit, latency says nothing about whether more requests would be handled well
+		if (inFlightAtCompletion < limit / 2) {
+			return;
+		}
+		double gradient = Math.max(0.5, Math.min(1.0, tolerance * baselineRtt / shortRtt));
+		double queueSize = Math.sqrt(limit);
+		double newLimit = limit * gradient + queueSize;
+		limit = Math.max(minLimit, Math.min(maxLimit, limit * (1 - SMOOTHING) + newLimit * SMOOTHING));
+	}
+	
+	public record Stats(int limit, int inFlight, long accepted, long rejected, long measured) {
+	}
+	
+	private record Admission(long start, AtomicBoolean calledUpstream) {
+	}
+}
@@ -0,0 +1,18 @@
+package pl.majchrzw.repoapi.configuration;
+
+import org.apache.hc.client5.http.impl.DefaultHttpRequestRetryStrategy;
+import org.apache.hc.core5.http.HttpResponse;
+import org.apache.hc.core5.http.protocol.HttpContext;
+
+/**
+ * Retries idempotent requests which failed on I/O, e.g. on a stale pooled connection, like the default strategy of
+ * Apache HttpClient, but never re-sends a 429 or 503 response. Those are left to {@link RateLimitInterceptor}, which
+ * switches the token and bounds the wait, and to {@link CircuitBreakerInterceptor}.
+ */
+public class IoRetryStrategy extends DefaultHttpRequestRetryStrategy {
+	
+	@Override
+	public boolean retryRequest(HttpResponse response, int execCount, HttpContext context) {
+		return false;
+	}
+}
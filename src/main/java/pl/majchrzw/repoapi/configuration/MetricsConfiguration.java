@@ -0,0 +1,221 @@
+package pl.majchrzw.repoapi.configuration;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import pl.majchrzw.repoapi.service.CacheRefresher;
+import pl.majchrzw.repoapi.service.NegativeLookupCache;
+import pl.majchrzw.repoapi.service.RepositoryCacheService;
+import pl.majchrzw.repoapi.service.RequestDeadline;
+import pl.majchrzw.repoapi.service.RequestHedger;
+import pl.majchrzw.repoapi.service.SerializedResponseCache;
+
+import java.util.List;
+import java.util.function.ToDoubleFunction;
+
+@Configuration
+public class MetricsConfiguration {
+	
+	@Bean
+	public MeterBinder repositoryCacheMetrics(RepositoryCacheService repositoryCacheService) {
+		return registry -> {
+			cacheCounter(registry, "hit", repositoryCacheService, service -> service.stats().hits());
+			cacheCounter(registry, "negative_hit", repositoryCacheService, service -> service.stats().negativeHits());
+			cacheCounter(registry, "stale", repositoryCacheService, service -> service.stats().staleHits());
+			cacheCounter(registry, "miss", repositoryCacheService, service -> service.stats().misses());
+			cacheCounter(registry, "coalesced", repositoryCacheService, service -> service.stats().coalesced());
+			FunctionCounter.builder("repoapi.cache.refreshes", repositoryCacheService, service -> service.stats().refreshes())
+					.description("Misses answered by incremental refresh of expired result")
+					.register(registry);
+			Gauge.builder("repoapi.cache.size", repositoryCacheService, service -> service.stats().size())
+					.description("Users held in repository cache")
+					.register(registry);
+		};
+	}
+	
+	@Bean
+	public MeterBinder negativeLookupMetrics(NegativeLookupCache negativeLookupCache) {
+		return registry -> {
+			FunctionCounter.builder("repoapi.cache.missing.saved", negativeLookupCache, cache -> cache.stats().recentHits())
+					.description("GitHub calls saved by answering lookups of users known not to exist")
+					.tag("source", "recent")
+					.register(registry);
+			FunctionCounter.builder("repoapi.cache.missing.saved", negativeLookupCache, cache -> cache.stats().filterHits())
+					.description("GitHub calls saved by answering lookups of users known not to exist")
+					.tag("source", "filter")
+					.register(registry);
+			Gauge.builder("repoapi.cache.missing.size", negativeLookupCache, cache -> cache.stats().size())
+					.description("Recent usernames which GitHub has not found")
+					.register(registry);
+		};
+	}
+	
+	@Bean
+	public MeterBinder cacheRefresherMetrics(CacheRefresher cacheRefresher) {
+		return registry -> {
+			refreshCounter(registry, "run", cacheRefresher, refresher -> refresher.stats().runs());
+			refreshCounter(registry, "skipped", cacheRefresher, refresher -> refresher.stats().skipped());
+			refreshCounter(registry, "failed", cacheRefresher, refresher -> refresher.stats().failures());
+		};
+	}
+	
+	@Bean
+	public MeterBinder serializedResponseCacheMetrics(SerializedResponseCache serializedResponseCache) {
+		return registry -> {
+			FunctionCounter.builder("repoapi.serialized.cache.requests", serializedResponseCache, cache -> cache.stats().hits())
+					.description("Responses written from serialized bytes of cached results")
+					.tag("result", "hit")
+					.register(registry);
+			FunctionCounter.builder("repoapi.serialized.cache.requests", serializedResponseCache, cache -> cache.stats().misses())
+					.description("Responses written from serialized bytes of cached results")
+					.tag("result", "miss")
+					.register(registry);
+			Gauge.builder("repoapi.serialized.cache.bytes", serializedResponseCache, cache -> cache.stats().bytes())
+					.description("Bytes of serialized responses held, gzip variants included")
+					.baseUnit("bytes")
+					.register(registry);
+		};
+	}
+	
+	@Bean
+	public MeterBinder conditionalRequestMetrics(ConditionalRequestInterceptor conditionalRequestInterceptor) {
+		return registry -> {
+			conditionalCounter(registry, "hit", conditionalRequestInterceptor, interceptor -> interceptor.stats().hits());
+			conditionalCounter(registry, "not_modified", conditionalRequestInterceptor, interceptor -> interceptor.stats().notModified());
+			conditionalCounter(registry, "miss", conditionalRequestInterceptor, interceptor -> interceptor.stats().misses());
+			Gauge.builder("github.conditional.cache.bytes", conditionalRequestInterceptor, interceptor -> interceptor.stats().bytes())
+					.description("Bytes of GitHub responses held for conditional requests")
+					.baseUnit("bytes")
+					.register(registry);
+		};
+	}
+	
+	@Bean
+	public MeterBinder rateLimitMetrics(RateLimitInterceptor rateLimitInterceptor) {
+		return registry -> {
+			// token pool is fixed at startup, so a gauge per token can be registered upfront
+			int tokens = rateLimitInterceptor.quotas().size();
+			for (int i = 0; i < tokens; i++) {
+				int index = i;
+				String token = rateLimitInterceptor.quotas().get(i).token();
+				Gauge.builder("github.ratelimit.remaining", rateLimitInterceptor, interceptor -> interceptor.quotas().get(index).remaining())
+						.description("Remaining GitHub api quota of a token")
+						.tag("token", token)
+						.register(registry);
+				Gauge.builder("github.ratelimit.limit", rateLimitInterceptor, interceptor -> interceptor.quotas().get(index).limit())
+						.description("GitHub api quota of a token in current window")
+						.tag("token", token)
+						.register(registry);
+			}
+		};
+	}
+	
+	@Bean
+	public MeterBinder responseStoreMetrics(PersistentResponseStore persistentResponseStore) {
+		return registry -> {
+			Gauge.builder("github.response.store.entries", persistentResponseStore, store -> store.stats().entries())
+					.description("GitHub responses persisted on disk")
+					.register(registry);
+			Gauge.builder("github.response.store.bytes", persistentResponseStore, store -> store.stats().fileBytes())
+					.description("Size of file of persisted GitHub responses, superseded records included")
+					.baseUnit("bytes")
+					.register(registry);
+			FunctionCounter.builder("github.response.store.reads", persistentResponseStore, store -> store.stats().reads())
+					.description("Stored GitHub responses read back from disk")
+					.register(registry);
+		};
+	}
+	
+	@Bean
+	public MeterBinder resilienceMetrics(RequestHedger requestHedger, CircuitBreakerInterceptor circuitBreakerInterceptor) {
+		return registry -> {
+			FunctionCounter.builder("github.hedge.calls", requestHedger, hedger -> hedger.stats().calls())
+					.description("GitHub calls which could be hedged")
+					.register(registry);
+			FunctionCounter.builder("github.hedge.requests", requestHedger, hedger -> hedger.stats().hedges())
+					.description("Duplicate GitHub calls sent by hedging")
+					.register(registry);
+			FunctionCounter.builder("github.hedge.wins", requestHedger, hedger -> hedger.stats().hedgeWins())
+					.description("Hedged GitHub calls answered first by the duplicate")
+					.register(registry);
+			Gauge.builder("github.circuit.state", circuitBreakerInterceptor, interceptor -> interceptor.state().ordinal())
+					.description("State of circuit of GitHub calls, 0 closed, 1 open, 2 half-open")
+					.register(registry);
+		};
+	}
+	
+	@Bean
+	public MeterBinder requestDeadlineMetrics(RequestDeadline requestDeadline) {
+		return registry -> {
+			FunctionCounter.builder("repoapi.request.deadline.requests", requestDeadline, deadline -> deadline.stats().requests())
+					.description("Requests handled with a deadline")
+					.register(registry);
+			FunctionCounter.builder("repoapi.request.deadline.exceeded", requestDeadline, deadline -> deadline.stats().exceeded())
+					.description("Requests which have overrun their deadline, answered partially or with 504")
+					.register(registry);
+		};
+	}
+	
+	@Bean
+	public MeterBinder inboundLimitMetrics(InboundConcurrencyLimiter inboundConcurrencyLimiter) {
+		return registry -> {
+			Gauge.builder("repoapi.inbound.limit", inboundConcurrencyLimiter, limiter -> limiter.stats().limit())
+					.description("Current adaptive limit of requests in progress")
+					.register(registry);
+			Gauge.builder("repoapi.inbound.inflight", inboundConcurrencyLimiter, limiter -> limiter.stats().inFlight())
+					.description("Requests in progress")
+					.register(registry);
+			FunctionCounter.builder("repoapi.inbound.requests", inboundConcurrencyLimiter, limiter -> limiter.stats().accepted())
+					.description("Requests admitted or rejected with 503 by inbound limit")
+					.tag("result", "accepted")
+					.register(registry);
+			FunctionCounter.builder("repoapi.inbound.requests", inboundConcurrencyLimiter, limiter -> limiter.stats().rejected())
+					.description("Requests admitted or rejected with 503 by inbound limit")
+					.tag("result", "rejected")
+					.register(registry);
+		};
+	}
+	
+	@Bean
+	public WebMvcConfigurer timedJacksonConverterConfigurer(MeterRegistry meterRegistry) {
+		return new WebMvcConfigurer() {
+			@Override
+			public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+				converters.replaceAll(converter -> converter instanceof MappingJackson2HttpMessageConverter jackson
+						&& !(converter instanceof TimedJacksonHttpMessageConverter)
+						? new TimedJacksonHttpMessageConverter(jackson.getObjectMapper(), meterRegistry)
+						: converter);
+			}
+		};
+	}
+	
+	private static void refreshCounter(MeterRegistry registry, String result, CacheRefresher refresher,
+	                                   ToDoubleFunction<CacheRefresher> count) {
+		FunctionCounter.builder("repoapi.cache.background.refreshes", refresher, count)
+				.description("Background refreshes of cached results, skipped when GitHub quota is low or refresher is busy")
+				.tag("result", result)
+				.register(registry);
+	}
+	
+	private static void cacheCounter(MeterRegistry registry, String result, RepositoryCacheService service,
+	                                 ToDoubleFunction<RepositoryCacheService> count) {
+		FunctionCounter.builder("repoapi.cache.requests", service, count)
+				.description("Lookups of repository cache")
+				.tag("result", result)
+				.register(registry);
+	}
+	
+	private static void conditionalCounter(MeterRegistry registry, String result, ConditionalRequestInterceptor interceptor,
+	                                       ToDoubleFunction<ConditionalRequestInterceptor> count) {
+		FunctionCounter.builder("github.conditional.requests", interceptor, count)
+				.description("GitHub GET requests by conditional request outcome")
+				.tag("result", result)
+				.register(registry);
+	}
+}
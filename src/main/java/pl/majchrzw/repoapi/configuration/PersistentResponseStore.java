@@ -0,0 +1,431 @@
+package pl.majchrzw.repoapi.configuration;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32;
+
+/**
+ * Keeps responses stored by {@link ConditionalRequestInterceptor} in an append-only file at
+ * {@code gh-response-store-path}, so that after restart they are revalidated instead of fetched again. Every record
+ * is {@code [length][crc32][fetched at, uri, headers, body]}, a later record of a URI supersedes earlier ones.
+ * <p>
+ * Only the file offset of every URI is kept in memory, bodies are read from the file on demand. The file is indexed
+ * on a background thread after startup; a record which is incomplete or fails its checksum, e.g. torn by a crash,
+ * ends the file and is cut off. Records are appended by the same thread, off the request path, and the file is
+ * rewritten without superseded records and records older than {@code gh-response-store-max-age} once they take
+ * more than half of it. Blank path disables the store.
+ */
+@Component
+public class PersistentResponseStore implements DisposableBean {
+	
+	private static final int MAGIC = 0x47485231;
+	private static final int FILE_HEADER_BYTES = 4;
+	private static final int RECORD_HEADER_BYTES = 8;
+	private static final int MAX_RECORD_BYTES = 64 * 1024 * 1024;
+	private static final long COMPACTION_MIN_BYTES = 1024 * 1024;
+	
+	private final Logger log = LoggerFactory.getLogger(PersistentResponseStore.class);
+	private final Path path;
+	private final long maxAgeMillis;
+	// appends, loading and compaction run on this single thread, so only readers have to be synchronized with them
+	private final ThreadPoolExecutor writer;
+	private final CompletableFuture<Void> loaded = new CompletableFuture<>();
+	// guards channel and index against swap by compaction, readers share it
+	private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+	private volatile FileChannel channel;
+	private volatile Map<URI, Location> index = new ConcurrentHashMap<>();
+	private volatile boolean closed;
+	// set when compaction failed to swap the files, the channel is then no longer usable
+	private volatile boolean disabled;
+	private long end = FILE_HEADER_BYTES;
+	private long liveBytes;
+	
+	private final LongAdder reads = new LongAdder();
+	private final LongAdder dropped = new LongAdder();
+	
+	public PersistentResponseStore(@Value("${gh-response-store-path:}") String path,
+	                               @Value("${gh-response-store-max-age:7d}") Duration maxAge) {
+		this.maxAgeMillis = maxAge.toMillis();
+		this.writer = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(4096),
+				Thread.ofVirtual().name("response-store").factory());
+		if (path.isBlank()) {
+			this.path = null;
+			loaded.complete(null);
+			return;
+		}
+		this.path = Path.of(path);
+		try {
+			if (this.path.getParent() != null) {
+				Files.createDirectories(this.path.getParent());
+			}
+			channel = FileChannel.open(this.path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		} catch (IOException e) {
+			throw new IllegalStateException("Cannot open response store " + path, e);
+		}
+		writer.execute(this::load);
+	}
+	
+	/**
+	 * Returns response stored for the URI, or {@code null} when there is none, it is too old, or the file has not
+	 * been indexed up to it yet.
+	 */
+	public Entry get(URI uri) {
+		if (channel == null) {
+			return null;
+		}
+		lock.readLock().lock();
+		try {
+			Location location = index.get(uri);
+			if (location == null || closed || disabled) {
+				return null;
+			}
+			ByteBuffer record = ByteBuffer.allocate(location.length());
+			readFully(channel, record, location.offset());
+			Entry entry = decode(record.array());
+			if (entry == null || isExpired(entry.fetchedAt())) {
+				return null;
+			}
+			reads.increment();
+			return entry;
+		} catch (IOException e) {
+			log.warn("Failed to read response of {} from store: {}", uri, e.getMessage());
+			return null;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+	
+	/**
+	 * Schedules the response to be appended to the file. It is dropped when the writer is too far behind.
+	 */
+	public void put(URI uri, Entry entry) {
+		if (channel == null || closed || disabled) {
+			return;
+		}
+		try {
+			writer.execute(() -> append(uri, entry));
+		} catch (RejectedExecutionException e) {
+			dropped.increment();
+		}
+	}
+	
+	/**
+	 * Waits until the file is indexed, returns {@code false} when it has not been within given time.
+	 */
+	public boolean awaitLoaded(Duration timeout) {
+		try {
+			loaded.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+			return true;
+		} catch (TimeoutException e) {
+			return false;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		} catch (Exception e) {
+			return false;
+		}
+	}
+	
+	/**
+	 * Waits until records scheduled so far are written.
+	 */
+	public void flush() throws InterruptedException {
+		if (channel == null) {
+			return;
+		}
+		try {
+			writer.submit(() -> {
+			}).get();
+		} catch (ExecutionException | RejectedExecutionException e) {
+			log.warn("Failed to flush response store {}: {}", path, e.getMessage());
+		}
+	}
+	
+	public Stats stats() {
+		long fileBytes = 0;
+		try {
+			FileChannel current = channel;
+			fileBytes = current == null || !current.isOpen() ? 0 : current.size();
+		} catch (IOException ignored) {
+			// size of closed channel, reported as zero
+		}
+		return new Stats(index.size(), fileBytes, reads.sum(), dropped.sum(), loaded.isDone());
+	}
+	
+	/**
+	 * Writes pending records, compacting the file when they call for it, and closes the file.
+	 */
+	@Override
+	public void destroy() throws InterruptedException, IOException {
+		writer.shutdown();
+		closed = true;
+		writer.awaitTermination(30, TimeUnit.SECONDS);
+		lock.writeLock().lock();
+		try {
+			if (channel != null) {
+				channel.close();
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+	
+	private void load() {
+		long start = System.nanoTime();
+		long position = FILE_HEADER_BYTES;
+		try {
+			long size = channel.size();
+			if (size < FILE_HEADER_BYTES || readMagic() != MAGIC) {
+				// new or unknown file, start over
+				channel.truncate(0);
+				ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_BYTES).putInt(MAGIC).flip();
+				writeFully(channel, header, 0);
+				size = FILE_HEADER_BYTES;
+			}
+			try (var in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(
+					FileChannel.open(path, StandardOpenOption.READ).position(FILE_HEADER_BYTES)), 1 << 16))) {
+				while (position < size) {
+					int length = in.readInt();
+					int checksum = in.readInt();
+					if (length <= 0 || length > MAX_RECORD_BYTES || position + RECORD_HEADER_BYTES + length > size) {
+						break;
+					}
+					byte[] payload = in.readNBytes(length);
+					if (payload.length < length || checksum(payload) != checksum) {
+						break;
+					}
+					var header = new DataInputStream(new ByteArrayInputStream(payload));
+					long fetchedAt = header.readLong();
+					URI uri = URI.create(header.readUTF());
+					int recordLength = RECORD_HEADER_BYTES + length;
+					if (!isExpired(Instant.ofEpochMilli(fetchedAt))) {
+						Location previous = index.put(uri, new Location(position, recordLength));
+						liveBytes += recordLength - (previous == null ? 0 : previous.length());
+					} else {
+						Location previous = index.remove(uri);
+						liveBytes -= previous == null ? 0 : previous.length();
+					}
+					position += recordLength;
+				}
+			} catch (EOFException e) {
+				// torn header of the last record
+			}
+			if (position < size) {
+				log.warn("Response store {} ends with {} bytes of incomplete record, they are discarded", path, size - position);
+				channel.truncate(position);
+			}
+			end = position;
+			log.info("Loaded response store {} with {} responses in {}ms", path, index.size(), (System.nanoTime() - start) / 1_000_000);
+		} catch (IOException | IllegalArgumentException e) {
+			log.warn("Failed to load response store {}, it is started over: {}", path, e.getMessage());
+			index.clear();
+			liveBytes = 0;
+			end = FILE_HEADER_BYTES;
+			try {
+				channel.truncate(FILE_HEADER_BYTES);
+			} catch (IOException ignored) {
+				// appends will fail and be logged as well
+			}
+		} finally {
+			loaded.complete(null);
+		}
+		compactIfNeeded();
+	}
+	
+	private void append(URI uri, Entry entry) {
+		if (disabled) {
+			return;
+		}
+		try {
+			byte[] record = encode(uri, entry);
+			writeFully(channel, ByteBuffer.wrap(record), end);
+			Location previous = index.put(uri, new Location(end, record.length));
+			liveBytes += record.length - (previous == null ? 0 : previous.length());
+			end += record.length;
+		} catch (IOException e) {
+			log.warn("Failed to write response of {} to store: {}", uri, e.getMessage());
+			return;
+		}
+		compactIfNeeded();
+	}
+	
+	private void compactIfNeeded() {
+		if (disabled || end < COMPACTION_MIN_BYTES || end - FILE_HEADER_BYTES - liveBytes < liveBytes) {
+			return;
+		}
+		long start = System.nanoTime();
+		long before = end;
+		Path compactedPath = path.resolveSibling(path.getFileName() + ".compact");
+		Map<URI, Location> compacted = new HashMap<>();
+		long position = FILE_HEADER_BYTES;
+		try (FileChannel out = FileChannel.open(compactedPath, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+				StandardOpenOption.WRITE)) {
+			writeFully(out, ByteBuffer.allocate(FILE_HEADER_BYTES).putInt(MAGIC).flip(), 0);
+			// nothing else appends to the file while this thread compacts it, readers still use the old one
+			for (var indexed : index.entrySet()) {
+				Location location = indexed.getValue();
+				ByteBuffer record = ByteBuffer.allocate(location.length());
+				readFully(channel, record, location.offset());
+				Entry entry = decode(record.array());
+				if (entry == null || isExpired(entry.fetchedAt())) {
+					continue;
+				}
+				writeFully(out, record.flip(), position);
+				compacted.put(indexed.getKey(), new Location(position, location.length()));
+				position += location.length();
+			}
+			out.force(false);
+		} catch (IOException e) {
+			log.warn("Failed to compact response store {}: {}", path, e.getMessage());
+			return;
+		}
+		lock.writeLock().lock();
+		try {
+			channel.close();
+			Files.move(compactedPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+			index = new ConcurrentHashMap<>(compacted);
+			end = position;
+			liveBytes = position - FILE_HEADER_BYTES;
+		} catch (IOException e) {
+			log.error("Failed to replace response store {} with compacted one, it is disabled: {}", path, e.getMessage());
+			disabled = true;
+			return;
+		} finally {
+			lock.writeLock().unlock();
+		}
+		log.info("Compacted response store {} from {} to {} bytes in {}ms", path, before, end, (System.nanoTime() - start) / 1_000_000);
+	}
+	
+	private int readMagic() throws IOException {
+		ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_BYTES);
+		readFully(channel, header, 0);
+		return header.flip().getInt();
+	}
+	
+	private boolean isExpired(Instant fetchedAt) {
+		return System.currentTimeMillis() - fetchedAt.toEpochMilli() > maxAgeMillis;
+	}
+	
+	static byte[] encode(URI uri, Entry entry) throws IOException {
+		var bytes = new ByteArrayOutputStream(entry.body().length + 512);
+		var out = new DataOutputStream(bytes);
+		// length and checksum, filled in below
+		out.writeLong(0);
+		out.writeLong(entry.fetchedAt().toEpochMilli());
+		out.writeUTF(uri.toString());
+		out.writeShort(entry.headers().size());
+		for (var header : entry.headers().entrySet()) {
+			out.writeUTF(header.getKey());
+			out.writeShort(header.getValue().size());
+			for (String value : header.getValue()) {
+				out.writeUTF(value);
+			}
+		}
+		out.writeInt(entry.body().length);
+		out.write(entry.body());
+		byte[] record = bytes.toByteArray();
+		var crc = new CRC32();
+		crc.update(record, RECORD_HEADER_BYTES, record.length - RECORD_HEADER_BYTES);
+		ByteBuffer.wrap(record).putInt(record.length - RECORD_HEADER_BYTES).putInt((int) crc.getValue());
+		return record;
+	}
+	
+	/**
+	 * Returns entry of the record, or {@code null} when it fails its checksum.
+	 */
+	static Entry decode(byte[] record) throws IOException {
+		var buffer = ByteBuffer.wrap(record);
+		int length = buffer.getInt();
+		int checksum = buffer.getInt();
+		if (length != record.length - RECORD_HEADER_BYTES) {
+			return null;
+		}
+		var crc = new CRC32();
+		crc.update(record, RECORD_HEADER_BYTES, length);
+		if ((int) crc.getValue() != checksum) {
+			return null;
+		}
+		var in = new DataInputStream(new ByteArrayInputStream(record, RECORD_HEADER_BYTES, length));
+		Instant fetchedAt = Instant.ofEpochMilli(in.readLong());
+		in.readUTF();
+		HttpHeaders headers = new HttpHeaders();
+		int headerCount = in.readUnsignedShort();
+		for (int i = 0; i < headerCount; i++) {
+			String name = in.readUTF();
+			int valueCount = in.readUnsignedShort();
+			for (int j = 0; j < valueCount; j++) {
+				headers.add(name, in.readUTF());
+			}
+		}
+		byte[] body = in.readNBytes(in.readInt());
+		return new Entry(HttpHeaders.readOnlyHttpHeaders(headers), body, fetchedAt);
+	}
+	
+	private static int checksum(byte[] payload) {
+		var crc = new CRC32();
+		crc.update(payload);
+		return (int) crc.getValue();
+	}
+	
+	private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+		long offset = position;
+		while (buffer.hasRemaining()) {
+			int read = channel.read(buffer, offset);
+			if (read < 0) {
+				throw new EOFException("Record ends beyond end of response store");
+			}
+			offset += read;
+		}
+	}
+	
+	private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+		long offset = position;
+		while (buffer.hasRemaining()) {
+			offset += channel.write(buffer, offset);
+		}
+	}
+	
+	public record Entry(HttpHeaders headers, byte[] body, Instant fetchedAt) {
+	}
+	
+	public record Stats(int entries, long fileBytes, long reads, long dropped, boolean loaded) {
+	}
+	
+	private record Location(long offset, int length) {
+	}
+}
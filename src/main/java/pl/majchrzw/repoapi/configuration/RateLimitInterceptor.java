@@ -0,0 +1,291 @@
+package pl.majchrzw.repoapi.configuration;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.stereotype.Component;
+import pl.majchrzw.repoapi.exception.RateLimitExceededException;
+import pl.majchrzw.repoapi.model.TokenQuota;
+import pl.majchrzw.repoapi.service.RequestDeadline;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+/**
+ * Authorizes every GitHub call with the token from the pool which has the most quota left, based on
+ * {@code X-RateLimit-*} headers of previous responses. {@code gh-rate-limit-reserve} calls of each token are
+ * kept unused; when no token has quota above it, calls wait for the earliest reset (at most
+ * {@code gh-rate-limit-max-wait}) or fail fast. Calls rejected with 429/403 are retried with another token,
+ * honouring {@code Retry-After}. Must be the last interceptor, as a retry re-executes only the exchange itself.
+ */
+@Component
+public class RateLimitInterceptor implements ClientHttpRequestInterceptor {
+	
+	private static final String LIMIT = "X-RateLimit-Limit";
+	private static final String REMAINING = "X-RateLimit-Remaining";
+	private static final String RESET = "X-RateLimit-Reset";
+	private static final long DEFAULT_BLOCK_MILLIS = 60_000;
+	
+	private final Logger log = LoggerFactory.getLogger(RateLimitInterceptor.class);
+	private final List<TokenState> tokens = new ArrayList<>();
+	// ReentrantLock instead of synchronized, waiting callers are mostly virtual threads
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition quotaChanged = lock.newCondition();
+	private final int reserve;
+	private final long maxWaitMillis;
+	
+	public RateLimitInterceptor(@Value("${gh-access-token}") String accessToken,
+	                            @Value("${gh-access-tokens:}") String[] accessTokens,
+	                            @Value("${gh-rate-limit-reserve:0}") int reserve,
+	                            @Value("${gh-rate-limit-max-wait:5s}") Duration maxWait) {
+		Set<String> pool = new LinkedHashSet<>();
+		Stream.concat(Stream.of(accessToken), Arrays.stream(accessTokens))
+				.map(String::trim)
+				.filter(token -> !token.isEmpty())
+				.forEach(pool::add);
+		for (String token : pool) {
+			tokens.add(new TokenState("token-" + (tokens.size() + 1), token));
+		}
+		if (tokens.isEmpty()) {
+			log.info("No PAT detected, running without it. Requests may be limited.");
+			tokens.add(new TokenState("anonymous", null));
+		} else {
+			log.info("Initialized github PAT pool with {} tokens.", tokens.size());
+		}
+		this.reserve = reserve;
+		this.maxWaitMillis = maxWait.toMillis();
+	}
+	
+	@Override
+	public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution) throws IOException {
+		ClientHttpResponse response = null;
+		for (int attempt = 0; attempt < tokens.size(); attempt++) {
+			if (response != null) {
+				response.close();
+			}
+			TokenState token = acquire();
+			if (token.value() == null) {
+				request.getHeaders().remove(HttpHeaders.AUTHORIZATION);
+			} else {
+				request.getHeaders().setBearerAuth(token.value());
+			}
+			try {
+				response = execution.execute(request, body);
+			} catch (IOException | RuntimeException e) {
+				release(token);
+				throw e;
+			}
+			if (!update(token, response)) {
+				return response;
+			}
+			log.warn("GitHub has rate limited {}, status {}", token.name(), response.getStatusCode());
+		}
+		return response;
+	}
+	
+	public List<TokenQuota> quotas() {
+		lock.lock();
+		try {
+			return tokens.stream()
+					.map(token -> new TokenQuota(token.name(), token.limit, token.remaining,
+							Instant.ofEpochMilli(token.resetAtMillis), Instant.ofEpochMilli(token.blockedUntilMillis)))
+					.toList();
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	/**
+	 * Calls which can be made right now by all tokens together, above the reserve.
+	 */
+	public long availableQuota() {
+		lock.lock();
+		try {
+			long now = System.currentTimeMillis();
+			return tokens.stream().mapToLong(token -> Math.max(0, token.available(now))).sum();
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	private TokenState acquire() throws InterruptedIOException {
+		lock.lock();
+		try {
+			while (true) {
+				long now = System.currentTimeMillis();
+				TokenState best = null;
+				for (TokenState token : tokens) {
+					if (token.available(now) > 0 && (best == null || token.available(now) > best.available(now))) {
+						best = token;
+					}
+				}
+				if (best != null) {
+					best.reserveCall();
+					return best;
+				}
+				long wait = tokens.stream().mapToLong(token -> token.availableAt(now)).min().orElse(now) - now;
+				Duration remaining = RequestDeadline.remaining();
+				if (wait > maxWaitMillis || remaining != null && wait > remaining.toMillis()) {
+					log.warn("All github tokens are out of quota for next {}s", wait / 1000);
+					throw new RateLimitExceededException("Cannot realize request due to github api rate limit, try later.");
+				}
+				quotaChanged.await(Math.max(1, wait), TimeUnit.MILLISECONDS);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for github rate limit reset");
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	/**
+	 * Returns reservation of a call which has not been answered, so its quota is not counted as used.
+	 */
+	private void release(TokenState token) {
+		lock.lock();
+		try {
+			token.pending--;
+			quotaChanged.signalAll();
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	/**
+	 * Updates quota of token from response headers, which replace reservation of the call. Returns {@code true}
+	 * when the call has been rejected by rate limiting and should be retried.
+	 */
+	private boolean update(TokenState token, ClientHttpResponse response) throws IOException {
+		HttpHeaders headers = response.getHeaders();
+		long now = System.currentTimeMillis();
+		boolean limited = response.getStatusCode().isSameCodeAs(HttpStatus.TOO_MANY_REQUESTS)
+				|| response.getStatusCode().isSameCodeAs(HttpStatus.FORBIDDEN)
+				&& (headers.containsKey(HttpHeaders.RETRY_AFTER) || "0".equals(headers.getFirst(REMAINING)));
+		lock.lock();
+		try {
+			token.pending--;
+			token.update(parseLong(headers.getFirst(LIMIT)), parseLong(headers.getFirst(REMAINING)), parseLong(headers.getFirst(RESET)));
+			if (limited) {
+				long retryAfter = retryAfterMillis(headers.getFirst(HttpHeaders.RETRY_AFTER), now);
+				if (retryAfter < 0) {
+					retryAfter = token.remaining == 0 && token.resetAtMillis > now ? token.resetAtMillis - now : DEFAULT_BLOCK_MILLIS;
+				}
+				token.blockedUntilMillis = now + retryAfter;
+			}
+			quotaChanged.signalAll();
+		} finally {
+			lock.unlock();
+		}
+		return limited;
+	}
+	
+	private static long retryAfterMillis(String retryAfter, long now) {
+		if (retryAfter == null) {
+			return -1;
+		}
+		try {
+			return Long.parseLong(retryAfter.trim()) * 1000;
+		} catch (NumberFormatException e) {
+			try {
+				return Math.max(0, ZonedDateTime.parse(retryAfter, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli() - now);
+			} catch (DateTimeParseException ex) {
+				return -1;
+			}
+		}
+	}
+	
+	private static Long parseLong(String value) {
+		if (value == null) {
+			return null;
+		}
+		try {
+			return Long.parseLong(value.trim());
+		} catch (NumberFormatException e) {
+			return null;
+		}
+	}
+	
+	private final class TokenState {
+		
+		private final String name;
+		private final String value;
+		// -1 until first response carrying rate limit headers
+		private int limit = -1;
+		private int remaining = -1;
+		private long resetAtMillis;
+		private long blockedUntilMillis;
+		// calls in flight, taken from quota reported by GitHub until their responses report it again; 304 and
+		// failed calls use no quota, so reservations are not kept beyond response
+		private int pending;
+		
+		TokenState(String name, String value) {
+			this.name = name;
+			this.value = value;
+		}
+		
+		String name() {
+			return name;
+		}
+		
+		String value() {
+			return value;
+		}
+		
+		long available(long now) {
+			if (blockedUntilMillis > now) {
+				return 0;
+			}
+			if (remaining < 0 || resetAtMillis <= now) {
+				// nothing known about current window yet, prefer such token to learn its quota
+				return Integer.MAX_VALUE;
+			}
+			return remaining - pending - reserve;
+		}
+		
+		long availableAt(long now) {
+			return Math.max(blockedUntilMillis, available(now) > 0 ? now : resetAtMillis);
+		}
+		
+		void reserveCall() {
+			pending++;
+		}
+		
+		void update(Long limit, Long remaining, Long resetEpochSeconds) {
+			if (limit != null) {
+				this.limit = limit.intValue();
+			}
+			if (remaining == null || resetEpochSeconds == null) {
+				return;
+			}
+			long resetAt = resetEpochSeconds * 1000;
+			// responses of concurrent calls may arrive out of order, within one window quota only goes down
+			if (resetAt != resetAtMillis || this.remaining < 0) {
+				this.remaining = remaining.intValue();
+				this.resetAtMillis = resetAt;
+			} else {
+				this.remaining = Math.min(this.remaining, remaining.intValue());
+			}
+		}
+	}
+}
@@ -1,42 +1,125 @@
 package pl.majchrzw.repoapi.configuration;
 
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.client5.http.protocol.HttpClientContext;
+import org.apache.hc.core5.http.protocol.HttpContext;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
 import org.springframework.web.client.RestClient;
+import pl.majchrzw.repoapi.service.RequestDeadline;
+
+import java.time.Duration;
 
 @Configuration
 public class RestClientConfiguration {
 	
 	private final Logger log = LoggerFactory.getLogger(RestClientConfiguration.class);
-	@Value("${gh-access-token}")
-	private String apiKey;
 	
 	@Value("${gh-api-url}")
 	private String url;
 	
+	@Value("${gh-http-max-connections:64}")
+	private int maxConnections;
+	
+	@Value("${gh-http-connect-timeout:5s}")
+	private Duration connectTimeout;
+	
+	@Value("${gh-http-read-timeout:30s}")
+	private Duration readTimeout;
+	
+	@Value("${gh-http-pool-timeout:10s}")
+	private Duration poolTimeout;
+	
+	@Value("${gh-http-idle-timeout:30s}")
+	private Duration idleTimeout;
+	
+	@Value("${gh-http-gzip:true}")
+	private boolean gzip;
+	
 	@Bean
-	public RestClient restClient() {
+	public CloseableHttpClient githubHttpClient() {
+		var connectionManager = PoolingHttpClientConnectionManagerBuilder.create()
+				// all calls go to a single host, so the per-route limit is the real one
+				.setMaxConnTotal(maxConnections)
+				.setMaxConnPerRoute(maxConnections)
+				.setDefaultConnectionConfig(ConnectionConfig.custom()
+						.setConnectTimeout(Timeout.of(connectTimeout))
+						.setSocketTimeout(Timeout.of(readTimeout))
+						.setValidateAfterInactivity(TimeValue.ofSeconds(2))
+						.build())
+				.build();
+		var builder = HttpClients.custom()
+				.setConnectionManager(connectionManager)
+				.evictExpiredConnections()
+				.evictIdleConnections(TimeValue.of(idleTimeout))
+				.setRetryStrategy(new IoRetryStrategy())
+				.setDefaultRequestConfig(RequestConfig.custom()
+						.setConnectionRequestTimeout(Timeout.of(poolTimeout))
+						.setResponseTimeout(Timeout.of(readTimeout))
+						.build());
+		if (!gzip) {
+			// otherwise 'Accept-Encoding: gzip, x-gzip, deflate' is sent and responses are decompressed transparently
+			builder.disableContentCompression();
+		}
+		log.info("Initialized github http client with pool of {} connections, gzip {}.", maxConnections, gzip ? "enabled" : "disabled");
+		return builder.build();
+	}
+	
+	@Bean
+	public RestClient restClient(RestClient.Builder builder,
+	                             CloseableHttpClient githubHttpClient,
+	                             ConditionalRequestInterceptor conditionalRequestInterceptor,
+	                             CircuitBreakerInterceptor circuitBreakerInterceptor,
+	                             UpstreamConcurrencyInterceptor upstreamConcurrencyInterceptor,
+	                             RateLimitInterceptor rateLimitInterceptor) {
 		if (url.isBlank()) {
 			log.error("No api url provided!");
 		}
-		return RestClient.builder()
+		var requestFactory = new HttpComponentsClientHttpRequestFactory(githubHttpClient);
+		requestFactory.setHttpContextFactory((method, uri) -> deadlineContext());
+		// builder provided by Spring Boot records 'http.client.requests' observations of every exchange
+		return builder
 				.baseUrl(url)
+				.requestFactory(requestFactory)
 				.defaultHeader("X-GitHub-Api-Version", "2022-11-28")
 				.defaultHeader("Accept", "application/vnd.github+json")
-				.defaultHeader("Authorization", checkForAuthHeader())
+				.requestInterceptor(conditionalRequestInterceptor)
+				// an open circuit fails before a connection or a permit is taken
+				.requestInterceptor(circuitBreakerInterceptor)
+				.requestInterceptor(upstreamConcurrencyInterceptor)
+				// sets Authorization header and may retry the exchange, has to be the last one
+				.requestInterceptor(rateLimitInterceptor)
 				.build();
 	}
 	
-	private String checkForAuthHeader() {
-		if (!apiKey.isBlank()) {
-			log.info("Initialized webClient with github PAT.");
-			return "Bearer ".concat(apiKey);
-		} else {
-			log.info("No PAT detected, running without it. Requests may be limited.");
-			return "";
+	/**
+	 * Shortens timeouts of a call made for a request with deadline, so it does not outlive the deadline.
+	 */
+	private HttpContext deadlineContext() {
+		Duration remaining = RequestDeadline.remaining();
+		if (remaining == null) {
+			return null;
 		}
+		var context = HttpClientContext.create();
+		context.setRequestConfig(RequestConfig.custom()
+				.setConnectionRequestTimeout(Timeout.of(min(poolTimeout, remaining)))
+				.setResponseTimeout(Timeout.of(min(readTimeout, remaining)))
+				.build());
+		return context;
+	}
+	
+	private static Duration min(Duration timeout, Duration remaining) {
+		// rounded up, so the call times out after the deadline and not just before it
+		return remaining.compareTo(timeout) < 0 ? Duration.ofMillis(remaining.toMillis() + 1) : timeout;
 	}
 }
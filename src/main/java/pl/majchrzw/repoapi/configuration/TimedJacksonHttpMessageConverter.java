@@ -0,0 +1,46 @@
+package pl.majchrzw.repoapi.configuration;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.converter.HttpMessageNotWritableException;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.Collection;
+
+/**
+ * Jackson converter recording time spent on writing response bodies as {@code repoapi.serialization} timer.
+ */
+class TimedJacksonHttpMessageConverter extends MappingJackson2HttpMessageConverter {
+	
+	private final MeterRegistry meterRegistry;
+	
+	TimedJacksonHttpMessageConverter(ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+		super(objectMapper);
+		this.meterRegistry = meterRegistry;
+	}
+	
+	@Override
+	protected void writeInternal(Object object, Type type, HttpOutputMessage outputMessage) throws IOException, HttpMessageNotWritableException {
+		var sample = Timer.start(meterRegistry);
+		try {
+			super.writeInternal(object, type, outputMessage);
+		} finally {
+			sample.stop(Timer.builder("repoapi.serialization")
+					.description("Time of writing response body as json")
+					.tag("type", typeTag(object))
+					.register(meterRegistry));
+		}
+	}
+	
+	private static String typeTag(Object object) {
+		// element type of a collection is what tells the responses apart, not the collection implementation
+		if (object instanceof Collection<?> collection) {
+			return collection.isEmpty() ? "List" : "List<" + collection.iterator().next().getClass().getSimpleName() + ">";
+		}
+		return object.getClass().getSimpleName();
+	}
+}
@@ -0,0 +1,56 @@
+package pl.majchrzw.repoapi.configuration;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.stereotype.Component;
+import pl.majchrzw.repoapi.exception.DeadlineExceededException;
+import pl.majchrzw.repoapi.service.RequestDeadline;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Caps the number of GitHub calls in flight across the whole app. The permit is held only for a single
+ * HTTP exchange, so nested fan-outs (e.g. branch pages fetched from within a branch task) cannot deadlock.
+ * Calls of a request which deadline has passed are not made, nor wait for a permit longer than the deadline.
+ */
+@Component
+public class UpstreamConcurrencyInterceptor implements ClientHttpRequestInterceptor {
+	
+	private final Semaphore permits;
+	
+	public UpstreamConcurrencyInterceptor(@Value("${gh-fanout-global-limit:64}") int globalLimit) {
+		if (globalLimit < 1) {
+			throw new IllegalArgumentException("Global fan-out limit must be positive");
+		}
+		this.permits = new Semaphore(globalLimit, true);
+	}
+	
+	@Override
+	public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution) throws IOException {
+		RequestDeadline.check();
+		Duration remaining = RequestDeadline.remaining();
+		try {
+			if (remaining == null) {
+				permits.acquire();
+			} else if (!permits.tryAcquire(remaining.toNanos(), TimeUnit.NANOSECONDS)) {
+				throw new DeadlineExceededException("Request deadline has passed while waiting for upstream permit.");
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for upstream permit");
+		}
+		InboundConcurrencyLimiter.recordUpstreamCall();
+		try {
+			return execution.execute(request, body);
+		} finally {
+			permits.release();
+		}
+	}
+}
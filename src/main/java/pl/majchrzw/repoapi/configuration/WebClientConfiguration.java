@@ -0,0 +1,80 @@
+package pl.majchrzw.repoapi.configuration;
+
+import io.netty.channel.ChannelOption;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.time.Duration;
+
+/**
+ * Non-blocking GitHub client of the reactive mode. Connection pool of {@code gh-http-max-connections} is also
+ * the global cap of concurrent calls, waiting for a connection does not hold any thread.
+ */
+@Configuration
+@ConditionalOnProperty(name = "gh-reactive", havingValue = "true")
+public class WebClientConfiguration {
+	
+	private final Logger log = LoggerFactory.getLogger(WebClientConfiguration.class);
+	
+	@Value("${gh-api-url}")
+	private String url;
+	
+	@Value("${gh-access-token}")
+	private String accessToken;
+	
+	@Value("${gh-http-max-connections:64}")
+	private int maxConnections;
+	
+	@Value("${gh-http-connect-timeout:5s}")
+	private Duration connectTimeout;
+	
+	@Value("${gh-http-read-timeout:30s}")
+	private Duration readTimeout;
+	
+	@Value("${gh-http-pool-timeout:10s}")
+	private Duration poolTimeout;
+	
+	@Value("${gh-http-idle-timeout:30s}")
+	private Duration idleTimeout;
+	
+	@Value("${gh-http-gzip:true}")
+	private boolean gzip;
+	
+	@Bean(destroyMethod = "dispose")
+	public ConnectionProvider githubConnectionProvider() {
+		return ConnectionProvider.builder("github")
+				.maxConnections(maxConnections)
+				.pendingAcquireTimeout(poolTimeout)
+				// no limit of waiting calls, they are bounded by per-request fan-out limit and inbound requests
+				.pendingAcquireMaxCount(-1)
+				.maxIdleTime(idleTimeout)
+				.build();
+	}
+	
+	@Bean
+	public WebClient webClient(WebClient.Builder builder, ConnectionProvider githubConnectionProvider) {
+		var httpClient = HttpClient.create(githubConnectionProvider)
+				.compress(gzip)
+				.option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) connectTimeout.toMillis())
+				.responseTimeout(readTimeout);
+		builder.baseUrl(url)
+				.clientConnector(new ReactorClientHttpConnector(httpClient))
+				.defaultHeader("X-GitHub-Api-Version", "2022-11-28")
+				.defaultHeader("Accept", "application/vnd.github+json");
+		if (accessToken.isBlank()) {
+			log.warn("No access token provided, reactive github client will make anonymous calls.");
+		} else {
+			builder.defaultHeader(HttpHeaders.AUTHORIZATION, "Bearer " + accessToken);
+		}
+		return builder.build();
+	}
+}
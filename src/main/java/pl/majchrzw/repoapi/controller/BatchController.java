@@ -0,0 +1,68 @@
+package pl.majchrzw.repoapi.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.swagger.v3.oas.annotations.Operation;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import pl.majchrzw.repoapi.model.BatchResult;
+import pl.majchrzw.repoapi.service.BatchLookupService;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.List;
+
+@RestController
+public class BatchController {
+	
+	private final BatchLookupService batchLookupService;
+	private final ObjectMapper objectMapper;
+	private final Logger log = LoggerFactory.getLogger(BatchController.class);
+	
+	public BatchController(BatchLookupService batchLookupService, ObjectMapper objectMapper) {
+		this.batchLookupService = batchLookupService;
+		this.objectMapper = objectMapper;
+	}
+	
+	@PostMapping(value = "/api/batch", consumes = MediaType.APPLICATION_JSON_VALUE)
+	@Operation(summary = "Get repositories and branches of many users, failure of one user is reported in its result")
+	public ResponseEntity<List<BatchResult>> getRepositories(@RequestBody List<String> usernames) {
+		return ResponseEntity.ok()
+				.contentType(MediaType.APPLICATION_JSON)
+				.body(batchLookupService.lookup(batchLookupService.deduplicate(usernames)));
+	}
+	
+	// separate mapping, as the streaming return value handler is chosen by the declared return type
+	@PostMapping(value = "/api/batch", consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_NDJSON_VALUE)
+	@Operation(summary = "Stream repositories and branches of many users, each result written as soon as it is ready")
+	public ResponseEntity<StreamingResponseBody> streamRepositories(@RequestBody List<String> usernames) {
+		// invalid batch is reported before streaming starts, with regular error response
+		List<String> unique = batchLookupService.deduplicate(usernames);
+		StreamingResponseBody body = outputStream -> {
+			try {
+				batchLookupService.lookup(unique, result -> writeLine(outputStream, result));
+			} catch (UncheckedIOException e) {
+				log.info("Client of batch stream has disconnected");
+			}
+		};
+		return ResponseEntity.ok()
+				.contentType(MediaType.APPLICATION_NDJSON)
+				.body(body);
+	}
+	
+	private void writeLine(OutputStream outputStream, Object value) {
+		try {
+			outputStream.write(objectMapper.writeValueAsBytes(value));
+			outputStream.write('\n');
+			outputStream.flush();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+}
@@ -1,27 +1,217 @@
 package pl.majchrzw.repoapi.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.media.ArraySchema;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import pl.majchrzw.repoapi.exception.InvalidRequestException;
+import pl.majchrzw.repoapi.exception.UserNotFoundException;
+import pl.majchrzw.repoapi.model.ErrorResponse;
 import pl.majchrzw.repoapi.model.RepositoryDto;
+import pl.majchrzw.repoapi.model.RepositoryQuery;
+import pl.majchrzw.repoapi.model.RepositorySort;
+import pl.majchrzw.repoapi.model.StreamErrorRecord;
 import pl.majchrzw.repoapi.service.GithubApiService;
+import pl.majchrzw.repoapi.service.RepositoryCacheService;
+import pl.majchrzw.repoapi.service.RequestDeadline;
+import pl.majchrzw.repoapi.service.SerializedResponseCache;
+import pl.majchrzw.repoapi.service.SerializedResponseCache.SerializedResponse;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Locale;
 
 @RestController
 public class MainController {
 	
+	static final String DEADLINE_HEADER = "X-Request-Deadline";
+	static final String PARTIAL_RESPONSE_HEADER = "X-Partial-Response";
+	
+	private final RepositoryCacheService repositoryCacheService;
 	private final GithubApiService githubApiService;
+	private final RequestDeadline requestDeadline;
+	private final SerializedResponseCache serializedResponseCache;
+	private final ObjectMapper objectMapper;
+	private final Logger log = LoggerFactory.getLogger(MainController.class);
 	
-	public MainController(GithubApiService githubApiService) {
+	public MainController(RepositoryCacheService repositoryCacheService, GithubApiService githubApiService,
+	                      RequestDeadline requestDeadline, SerializedResponseCache serializedResponseCache, ObjectMapper objectMapper) {
+		this.repositoryCacheService = repositoryCacheService;
 		this.githubApiService = githubApiService;
+		this.requestDeadline = requestDeadline;
+		this.serializedResponseCache = serializedResponseCache;
+		this.objectMapper = objectMapper;
 	}
 	
 	@GetMapping(value = "/api/{username}", produces = MediaType.APPLICATION_JSON_VALUE)
 	@Operation(summary = "Get list of user repositories that are not forks and each repository list of branches")
-	public List<RepositoryDto> getRepository(@PathVariable String username) {
-		return githubApiService.getRepositoriesAndBranchesOfUser(username);
+	@ApiResponse(responseCode = "200", content = @Content(array = @ArraySchema(schema = @Schema(implementation = RepositoryDto.class))))
+	public ResponseEntity<?> getRepository(@PathVariable String username,
+	                                       @Parameter(description = "Whether branches of repositories are fetched")
+	                                       @RequestParam(defaultValue = "true") boolean includeBranches,
+	                                       @Parameter(description = "Maximum number of repositories")
+	                                       @RequestParam(required = false) Integer limit,
+	                                       @Parameter(description = "Order of repositories: pushed, updated (most recent first) or name")
+	                                       @RequestParam(required = false) String sort,
+	                                       @Parameter(description = "Only repositories which name starts with it, case-insensitive")
+	                                       @RequestParam(required = false) String namePrefix,
+	                                       @Parameter(description = "Latency budget of the request in milliseconds, at most the configured one. "
+	                                               + "Repositories which branches are not fetched in time are returned with 'branchesComplete: false'")
+	                                       @RequestHeader(value = DEADLINE_HEADER, required = false) Long deadline,
+	                                       @Parameter(hidden = true)
+	                                       @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+	                                       WebRequest webRequest) {
+		var query = new RepositoryQuery(includeBranches, validLimit(limit), parseSort(sort), namePrefix);
+		var repositories = requestDeadline.within(validDeadline(deadline), () -> repositoryCacheService.getRepositoriesOfUser(username, query));
+		if (!RepositoryDto.allBranchesComplete(repositories)) {
+			return ResponseEntity.ok().header(PARTIAL_RESPONSE_HEADER, "true").body(repositories);
+		}
+		boolean serialized = query.isDefault() && repositoryCacheService.isCached(username, repositories);
+		boolean gzip = serialized && acceptsGzip(acceptEncoding);
+		String etag = RepositoryDto.etag(repositories);
+		// gzip variant has bytes of its own, so a strong tag of its own as well; it is picked before serialization,
+		// so also for tiny results which are sent uncompressed
+		if (gzip) {
+			etag = etag.substring(0, etag.length() - 1) + "-gz\"";
+		}
+		// sets ETag header, and 304 status when client has the same result, so nothing is serialized for it
+		if (webRequest.checkNotModified(etag)) {
+			return null;
+		}
+		if (serialized) {
+			return serialized(serializedResponseCache.get(username, repositories), gzip);
+		}
+		return ResponseEntity.ok(repositories);
+	}
+	
+	// no 'produces' here, so errors thrown before streaming starts are still negotiated as JSON
+	@GetMapping(value = "/api/{username}/stream")
+	@Operation(summary = "Stream user repositories that are not forks as newline delimited JSON, each one written as soon as its branches are fetched")
+	public ResponseEntity<StreamingResponseBody> streamRepository(@PathVariable String username) {
+		var cached = repositoryCacheService.getIfPresent(username);
+		// errors of repository listing are reported before streaming starts, with regular error response
+		List<RepositoryDto> repositories = cached.isPresent() ? cached.get() : githubApiService.getNonForkRepositoriesOfUser(username);
+		
+		StreamingResponseBody body = outputStream -> {
+			try {
+				if (cached.isPresent()) {
+					for (RepositoryDto repository : repositories) {
+						writeLine(outputStream, repository);
+					}
+				} else {
+					githubApiService.streamBranchesOfRepositories(repositories, repository -> writeLine(outputStream, repository));
+				}
+			} catch (UncheckedIOException e) {
+				log.info("Client of user '{}' stream has disconnected", username);
+			} catch (RuntimeException e) {
+				int status = e instanceof UserNotFoundException ? HttpStatus.NOT_FOUND.value() : HttpStatus.INTERNAL_SERVER_ERROR.value();
+				writeLine(outputStream, new StreamErrorRecord(new ErrorResponse(status, e.getMessage())));
+			}
+		};
+		return ResponseEntity.ok()
+				.contentType(MediaType.APPLICATION_NDJSON)
+				.body(body);
+	}
+	
+	/**
+	 * Writes JSON serialized (and compressed) once per cached result, neither Jackson nor compression runs per request.
+	 */
+	private ResponseEntity<byte[]> serialized(SerializedResponse serialized, boolean gzip) {
+		var response = ResponseEntity.ok()
+				.contentType(MediaType.APPLICATION_JSON)
+				.header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+		if (gzip && serialized.gzip() != null) {
+			return response.header(HttpHeaders.CONTENT_ENCODING, "gzip").body(serialized.gzip());
+		}
+		return response.body(serialized.json());
+	}
+	
+	/**
+	 * Tells whether Accept-Encoding allows gzip, named or by {@code *}, with non-zero quality.
+	 */
+	static boolean acceptsGzip(String acceptEncoding) {
+		if (acceptEncoding == null) {
+			return false;
+		}
+		boolean wildcard = false;
+		for (String coding : acceptEncoding.split(",")) {
+			String[] parameters = coding.split(";");
+			String name = parameters[0].trim().toLowerCase(Locale.ROOT);
+			double quality = 1;
+			for (int i = 1; i < parameters.length; i++) {
+				String parameter = parameters[i].trim();
+				if (parameter.regionMatches(true, 0, "q=", 0, 2)) {
+					try {
+						quality = Double.parseDouble(parameter.substring(2).trim());
+					} catch (NumberFormatException e) {
+						quality = 0;
+					}
+				}
+			}
+			if (name.equals("gzip") || name.equals("x-gzip")) {
+				return quality > 0;
+			}
+			if (name.equals("*")) {
+				wildcard = quality > 0;
+			}
+		}
+		return wildcard;
+	}
+	
+	private Integer validLimit(Integer limit) {
+		if (limit != null && limit < 1) {
+			throw new InvalidRequestException("Limit must be positive");
+		}
+		return limit;
+	}
+	
+	private Duration validDeadline(Long deadline) {
+		if (deadline == null) {
+			return null;
+		}
+		if (deadline < 1) {
+			throw new InvalidRequestException("Deadline must be positive");
+		}
+		return Duration.ofMillis(deadline);
+	}
+	
+	private RepositorySort parseSort(String sort) {
+		if (sort == null) {
+			return null;
+		}
+		return Arrays.stream(RepositorySort.values())
+				.filter(value -> value.name().equalsIgnoreCase(sort))
+				.findFirst()
+				.orElseThrow(() -> new InvalidRequestException("Sort must be one of pushed, updated, name"));
+	}
+	
+	private void writeLine(OutputStream outputStream, Object value) {
+		try {
+			outputStream.write(objectMapper.writeValueAsBytes(value));
+			outputStream.write('\n');
+			outputStream.flush();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
 	}
 }
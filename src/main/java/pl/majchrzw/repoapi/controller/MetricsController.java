@@ -0,0 +1,36 @@
+package pl.majchrzw.repoapi.controller;
+
+import io.swagger.v3.oas.annotations.Operation;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+import pl.majchrzw.repoapi.configuration.RateLimitInterceptor;
+import pl.majchrzw.repoapi.model.CacheStats;
+import pl.majchrzw.repoapi.model.TokenQuota;
+import pl.majchrzw.repoapi.service.RepositoryCacheService;
+
+import java.util.List;
+
+@RestController
+public class MetricsController {
+	
+	private final RepositoryCacheService repositoryCacheService;
+	private final RateLimitInterceptor rateLimitInterceptor;
+	
+	public MetricsController(RepositoryCacheService repositoryCacheService, RateLimitInterceptor rateLimitInterceptor) {
+		this.repositoryCacheService = repositoryCacheService;
+		this.rateLimitInterceptor = rateLimitInterceptor;
+	}
+	
+	@GetMapping(value = "/metrics/cache", produces = MediaType.APPLICATION_JSON_VALUE)
+	@Operation(summary = "Get hit, miss and coalesced request counters of repository cache")
+	public CacheStats getCacheStats() {
+		return repositoryCacheService.stats();
+	}
+	
+	@GetMapping(value = "/metrics/rate-limit", produces = MediaType.APPLICATION_JSON_VALUE)
+	@Operation(summary = "Get remaining GitHub api quota of every configured token")
+	public List<TokenQuota> getRateLimitQuotas() {
+		return rateLimitInterceptor.quotas();
+	}
+}
@@ -0,0 +1,41 @@
+package pl.majchrzw.repoapi.controller;
+
+import io.swagger.v3.oas.annotations.Operation;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RestController;
+import pl.majchrzw.repoapi.model.RepositoryDto;
+import pl.majchrzw.repoapi.service.ReactiveGithubApiService;
+import pl.majchrzw.repoapi.service.RepositoryCacheService;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+/**
+ * Equivalent of
+ * {@link MainController#getRepository(String, boolean, Integer, String, String, Long, String, org.springframework.web.context.request.WebRequest)}
+ * with default parameters, which does not hold a servlet thread while GitHub is queried. Results cached by the
+ * blocking endpoint are served, results of this one are not cached.
+ */
+@RestController
+@ConditionalOnProperty(name = "gh-reactive", havingValue = "true")
+public class ReactiveController {
+	
+	private final RepositoryCacheService repositoryCacheService;
+	private final ReactiveGithubApiService reactiveGithubApiService;
+	
+	public ReactiveController(RepositoryCacheService repositoryCacheService, ReactiveGithubApiService reactiveGithubApiService) {
+		this.repositoryCacheService = repositoryCacheService;
+		this.reactiveGithubApiService = reactiveGithubApiService;
+	}
+	
+	@GetMapping(value = "/reactive/api/{username}", produces = MediaType.APPLICATION_JSON_VALUE)
+	@Operation(summary = "Get list of user repositories that are not forks and each repository list of branches, without blocking a servlet thread")
+	public Mono<List<RepositoryDto>> getRepository(@PathVariable String username) {
+		return repositoryCacheService.getIfPresent(username)
+				.map(Mono::just)
+				.orElseGet(() -> reactiveGithubApiService.getRepositoriesAndBranchesOfUser(username));
+	}
+}
@@ -0,0 +1,10 @@
+package pl.majchrzw.repoapi.exception;
+
+public class DeadlineExceededException extends RuntimeException {
+	String message;
+	
+	public DeadlineExceededException(String message) {
+		super(message);
+		this.message = message;
+	}
+}
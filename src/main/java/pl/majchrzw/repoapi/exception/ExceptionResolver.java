@@ -1,6 +1,8 @@
 package pl.majchrzw.repoapi.exception;
 
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.ResponseBody;
@@ -23,4 +25,27 @@ public class ExceptionResolver {
 	public ErrorResponse handleExternalApiErrorException(ExternalApiErrorException exception) {
 		return new ErrorResponse(HttpStatus.INTERNAL_SERVER_ERROR.value(), exception.getMessage());
 	}
+	
+	@ResponseBody
+	@ResponseStatus(HttpStatus.GATEWAY_TIMEOUT)
+	@ExceptionHandler(DeadlineExceededException.class)
+	public ErrorResponse handleDeadlineExceededException(DeadlineExceededException exception) {
+		return new ErrorResponse(HttpStatus.GATEWAY_TIMEOUT.value(), exception.getMessage());
+	}
+	
+	@ExceptionHandler(OverloadedException.class)
+	public ResponseEntity<ErrorResponse> handleOverloadedException(OverloadedException exception) {
+		// rounded up, so clients do not come back before the advised time
+		long retryAfterSeconds = (exception.getRetryAfter().toMillis() + 999) / 1000;
+		return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+				.header(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds))
+				.body(new ErrorResponse(HttpStatus.SERVICE_UNAVAILABLE.value(), exception.getMessage()));
+	}
+	
+	@ResponseBody
+	@ResponseStatus(HttpStatus.BAD_REQUEST)
+	@ExceptionHandler(InvalidRequestException.class)
+	public ErrorResponse handleInvalidRequestException(InvalidRequestException exception) {
+		return new ErrorResponse(HttpStatus.BAD_REQUEST.value(), exception.getMessage());
+	}
 }
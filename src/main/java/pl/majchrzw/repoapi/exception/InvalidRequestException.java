@@ -0,0 +1,10 @@
+package pl.majchrzw.repoapi.exception;
+
+public class InvalidRequestException extends RuntimeException {
+	String message;
+	
+	public InvalidRequestException(String message) {
+		super(message);
+		this.message = message;
+	}
+}
@@ -0,0 +1,18 @@
+package pl.majchrzw.repoapi.exception;
+
+import java.time.Duration;
+
+public class OverloadedException extends RuntimeException {
+	String message;
+	Duration retryAfter;
+	
+	public OverloadedException(String message, Duration retryAfter) {
+		super(message);
+		this.message = message;
+		this.retryAfter = retryAfter;
+	}
+	
+	public Duration getRetryAfter() {
+		return retryAfter;
+	}
+}
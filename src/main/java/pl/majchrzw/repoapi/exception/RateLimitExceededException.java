@@ -0,0 +1,8 @@
+package pl.majchrzw.repoapi.exception;
+
+public class RateLimitExceededException extends ExternalApiErrorException {
+	
+	public RateLimitExceededException(String message) {
+		super(message);
+	}
+}
@@ -0,0 +1,16 @@
+package pl.majchrzw.repoapi.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.util.List;
+
+/**
+ * Result of a single username of a batch, either its repositories or the error which occurred.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record BatchResult(
+		String username,
+		List<RepositoryDto> repositories,
+		ErrorResponse error
+) {
+}
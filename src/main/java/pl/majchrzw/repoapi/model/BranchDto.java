@@ -4,7 +4,7 @@ import com.fasterxml.jackson.annotation.JsonAlias;
 
 public record BranchDto(
 		String name,
-		@JsonAlias({"commit"})
+		@JsonAlias({"commit", "target"})
 		CommitDto lastCommit
 ) {
 }
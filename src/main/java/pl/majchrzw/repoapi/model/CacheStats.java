@@ -0,0 +1,12 @@
+package pl.majchrzw.repoapi.model;
+
+public record CacheStats(
+		long hits,
+		long negativeHits,
+		long staleHits,
+		long misses,
+		long coalesced,
+		long refreshes,
+		int size
+) {
+}
@@ -1,6 +1,9 @@
 package pl.majchrzw.repoapi.model;
 
+import com.fasterxml.jackson.annotation.JsonAlias;
+
 public record CommitDto(
+		@JsonAlias({"oid"})
 		String sha
 ) {
 }
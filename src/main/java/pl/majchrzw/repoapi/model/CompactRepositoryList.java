@@ -0,0 +1,194 @@
+package pl.majchrzw.repoapi.model;
+
+import java.time.Instant;
+import java.util.AbstractList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.RandomAccess;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Immutable list of repositories held in flat arrays, which is how cached results are kept. Commit SHAs are packed
+ * into 20 bytes each, owners and branch names are shared within the list and common branch names across all lists.
+ * Elements are {@link RepositoryDto}s created on access, equal to the ones the list has been built from.
+ */
+public final class CompactRepositoryList extends AbstractList<RepositoryDto> implements RandomAccess {
+	
+	private static final Map<String, String> COMMON_BRANCH_NAMES = Stream.of("main", "master", "develop", "dev",
+					"development", "gh-pages", "staging", "release", "production", "next", "trunk", "test")
+			.collect(Collectors.toUnmodifiableMap(Function.identity(), Function.identity()));
+	private static final int SHA_LENGTH = 40;
+	private static final int SHA_BYTES = SHA_LENGTH / 2;
+	private static final char[] HEX = "0123456789abcdef".toCharArray();
+	
+	private static final byte FORK = 1;
+	private static final byte NO_BRANCHES = 2;
+	private static final byte COMPLETE = 4;
+	private static final byte INCOMPLETE = 8;
+	private static final long NO_PUSH = Long.MIN_VALUE;
+	
+	private final String[] names;
+	private final OwnerDto[] owners;
+	private final byte[] flags;
+	private final long[] pushedAtSeconds;
+	// null when every push time is a whole second, as GitHub reports them
+	private final int[] pushedAtNanos;
+	// branches of repository i are at [branchOffsets[i], branchOffsets[i + 1])
+	private final int[] branchOffsets;
+	private final String[] branchNames;
+	private final byte[] shas;
+	// branches which commit is not a lowercase hex SHA are kept as they are, usually there are none
+	private final BitSet unpacked;
+	private final CommitDto[] unpackedCommits;
+	
+	private CompactRepositoryList(List<RepositoryDto> repositories) {
+		int size = repositories.size();
+		int branchCount = 0;
+		boolean wholeSeconds = true;
+		for (RepositoryDto repository : repositories) {
+			if (repository.branches() != null) {
+				branchCount += repository.branches().size();
+			}
+			if (repository.pushedAt() != null && repository.pushedAt().getNano() != 0) {
+				wholeSeconds = false;
+			}
+		}
+		names = new String[size];
+		owners = new OwnerDto[size];
+		flags = new byte[size];
+		pushedAtSeconds = new long[size];
+		pushedAtNanos = wholeSeconds ? null : new int[size];
+		branchOffsets = new int[size + 1];
+		branchNames = new String[branchCount];
+		shas = new byte[branchCount * SHA_BYTES];
+		unpacked = new BitSet();
+		CommitDto[] others = null;
+		
+		Map<OwnerDto, OwnerDto> sharedOwners = new HashMap<>();
+		Map<String, String> sharedNames = new HashMap<>();
+		int branch = 0;
+		for (int i = 0; i < size; i++) {
+			RepositoryDto repository = repositories.get(i);
+			names[i] = repository.name();
+			owners[i] = repository.owner() == null ? null : sharedOwners.computeIfAbsent(repository.owner(), Function.identity());
+			flags[i] = flags(repository);
+			pushedAtSeconds[i] = repository.pushedAt() == null ? NO_PUSH : repository.pushedAt().getEpochSecond();
+			if (pushedAtNanos != null && repository.pushedAt() != null) {
+				pushedAtNanos[i] = repository.pushedAt().getNano();
+			}
+			branchOffsets[i] = branch;
+			if (repository.branches() == null) {
+				continue;
+			}
+			for (BranchDto dto : repository.branches()) {
+				String name = dto.name();
+				String common = name == null ? null : COMMON_BRANCH_NAMES.get(name);
+				branchNames[branch] = common != null || name == null ? common : sharedNames.computeIfAbsent(name, Function.identity());
+				if (!pack(dto.lastCommit(), branch)) {
+					if (others == null) {
+						others = new CommitDto[branchCount];
+					}
+					unpacked.set(branch);
+					others[branch] = dto.lastCommit();
+				}
+				branch++;
+			}
+		}
+		branchOffsets[size] = branch;
+		unpackedCommits = others;
+	}
+	
+	/**
+	 * Returns compact copy of the list, or the list itself when it already is one.
+	 */
+	public static CompactRepositoryList of(List<RepositoryDto> repositories) {
+		if (repositories instanceof CompactRepositoryList compact) {
+			return compact;
+		}
+		return new CompactRepositoryList(repositories);
+	}
+	
+	@Override
+	public RepositoryDto get(int index) {
+		Objects.checkIndex(index, names.length);
+		byte flag = flags[index];
+		List<BranchDto> branches = null;
+		if ((flag & NO_BRANCHES) == 0) {
+			int from = branchOffsets[index];
+			var array = new BranchDto[branchOffsets[index + 1] - from];
+			for (int i = 0; i < array.length; i++) {
+				int branch = from + i;
+				array[i] = new BranchDto(branchNames[branch], unpacked.get(branch) ? unpackedCommits[branch] : new CommitDto(sha(branch)));
+			}
+			branches = List.of(array);
+		}
+		Boolean branchesComplete = (flag & COMPLETE) != 0 ? Boolean.TRUE : (flag & INCOMPLETE) != 0 ? Boolean.FALSE : null;
+		Instant pushedAt = pushedAtSeconds[index] == NO_PUSH ? null
+				: Instant.ofEpochSecond(pushedAtSeconds[index], pushedAtNanos == null ? 0 : pushedAtNanos[index]);
+		return new RepositoryDto(names[index], owners[index], (flag & FORK) != 0, branches, branchesComplete, pushedAt);
+	}
+	
+	@Override
+	public int size() {
+		return names.length;
+	}
+	
+	private static byte flags(RepositoryDto repository) {
+		byte flag = 0;
+		if (repository.fork()) {
+			flag |= FORK;
+		}
+		if (repository.branches() == null) {
+			flag |= NO_BRANCHES;
+		}
+		if (Boolean.TRUE.equals(repository.branchesComplete())) {
+			flag |= COMPLETE;
+		} else if (Boolean.FALSE.equals(repository.branchesComplete())) {
+			flag |= INCOMPLETE;
+		}
+		return flag;
+	}
+	
+	private boolean pack(CommitDto commit, int branch) {
+		if (commit == null || commit.sha() == null || commit.sha().length() != SHA_LENGTH) {
+			return false;
+		}
+		String sha = commit.sha();
+		int offset = branch * SHA_BYTES;
+		for (int i = 0; i < SHA_BYTES; i++) {
+			int high = digit(sha.charAt(2 * i));
+			int low = digit(sha.charAt(2 * i + 1));
+			if (high < 0 || low < 0) {
+				return false;
+			}
+			shas[offset + i] = (byte) (high << 4 | low);
+		}
+		return true;
+	}
+	
+	private String sha(int branch) {
+		char[] chars = new char[SHA_LENGTH];
+		int offset = branch * SHA_BYTES;
+		for (int i = 0; i < SHA_BYTES; i++) {
+			chars[2 * i] = HEX[shas[offset + i] >> 4 & 0xf];
+			chars[2 * i + 1] = HEX[shas[offset + i] & 0xf];
+		}
+		return new String(chars);
+	}
+	
+	// lowercase only, so that the SHA is written back exactly as it has been read
+	private static int digit(char c) {
+		if (c >= '0' && c <= '9') {
+			return c - '0';
+		}
+		if (c >= 'a' && c <= 'f') {
+			return c - 'a' + 10;
+		}
+		return -1;
+	}
+}
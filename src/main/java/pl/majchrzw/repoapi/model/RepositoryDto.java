@@ -1,7 +1,9 @@
 package pl.majchrzw.repoapi.model;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
+import java.time.Instant;
 import java.util.List;
 
 public record RepositoryDto(
@@ -9,6 +11,75 @@ public record RepositoryDto(
 		OwnerDto owner,
 		@JsonProperty(access = JsonProperty.Access.WRITE_ONLY)
 		boolean fork,
-		List<BranchDto> branches
+		// absent when branches have not been requested
+		@JsonInclude(JsonInclude.Include.NON_NULL)
+		List<BranchDto> branches,
+		// present only as false, when branches could not be fetched within deadline of the request
+		@JsonInclude(JsonInclude.Include.NON_NULL)
+		Boolean branchesComplete,
+		// time of the last push to any branch, kept only to tell whether branches may have changed
+		@JsonProperty(value = "pushed_at", access = JsonProperty.Access.WRITE_ONLY)
+		Instant pushedAt
 ) {
+	
+	private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+	private static final long FNV_PRIME = 0x100000001b3L;
+	
+	public RepositoryDto(String name, OwnerDto owner, boolean fork, List<BranchDto> branches) {
+		this(name, owner, fork, branches, null, null);
+	}
+	
+	public RepositoryDto withBranches(List<BranchDto> branches) {
+		return new RepositoryDto(name, owner, fork, branches, null, pushedAt);
+	}
+	
+	public RepositoryDto withIncompleteBranches() {
+		return new RepositoryDto(name, owner, fork, null, false, pushedAt);
+	}
+	
+	public static boolean allBranchesComplete(List<RepositoryDto> repositories) {
+		return repositories.stream().noneMatch(repository -> Boolean.FALSE.equals(repository.branchesComplete()));
+	}
+	
+	/**
+	 * Strong entity tag of the list as it is serialized, a 64-bit FNV-1a hash of every serialized field, so it is
+	 * computed without serializing the list.
+	 */
+	public static String etag(List<RepositoryDto> repositories) {
+		long hash = hash(FNV_OFFSET, repositories.size());
+		for (RepositoryDto repository : repositories) {
+			hash = hash(hash, repository.name());
+			hash = hash(hash, repository.owner() == null ? null : repository.owner().login());
+			hash = hash(hash, repository.branchesComplete() == null ? -1 : repository.branchesComplete() ? 1 : 0);
+			if (repository.branches() == null) {
+				hash = hash(hash, -1);
+				continue;
+			}
+			hash = hash(hash, repository.branches().size());
+			for (BranchDto branch : repository.branches()) {
+				hash = hash(hash, branch.name());
+				hash = hash(hash, branch.lastCommit() == null ? null : branch.lastCommit().sha());
+			}
+		}
+		return "\"%016x\"".formatted(hash);
+	}
+	
+	private static long hash(long hash, String value) {
+		if (value == null) {
+			return hash(hash, -1);
+		}
+		// length first, so that neighbouring fields cannot shift characters between each other
+		hash = hash(hash, value.length());
+		for (int i = 0; i < value.length(); i++) {
+			hash = (hash ^ value.charAt(i)) * FNV_PRIME;
+		}
+		return hash;
+	}
+	
+	private static long hash(long hash, int value) {
+		for (int shift = 0; shift < 32; shift += 8) {
+			hash = (hash ^ (value >>> shift & 0xff)) * FNV_PRIME;
+		}
+		return hash;
+	}
 }
@@ -0,0 +1,57 @@
+package pl.majchrzw.repoapi.model;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Stream;
+
+/**
+ * Options of a repositories lookup which are pushed down to GitHub queries. {@code limit} and {@code namePrefix}
+ * may be {@code null}, sort defaults to {@link RepositorySort#NAME}, the order of unrestricted lookups.
+ */
+public record RepositoryQuery(
+		boolean includeBranches,
+		Integer limit,
+		RepositorySort sort,
+		String namePrefix
+) {
+	
+	public static final RepositoryQuery ALL = new RepositoryQuery(true, null, RepositorySort.NAME, null);
+	
+	public RepositoryQuery {
+		if (sort == null) {
+			sort = RepositorySort.NAME;
+		}
+		if (namePrefix != null && namePrefix.isEmpty()) {
+			namePrefix = null;
+		}
+	}
+	
+	public boolean isDefault() {
+		return equals(ALL);
+	}
+	
+	/**
+	 * Whether the repository passes the name filter, GitHub names are case-insensitive.
+	 */
+	public boolean matches(RepositoryDto repository) {
+		return namePrefix == null || repository.name().toLowerCase(Locale.ROOT).startsWith(namePrefix.toLowerCase(Locale.ROOT));
+	}
+	
+	public boolean isFull(int count) {
+		return limit != null && count >= limit;
+	}
+	
+	/**
+	 * Applies the query to result of an unrestricted lookup, which is ordered by name.
+	 */
+	public List<RepositoryDto> applyTo(List<RepositoryDto> repositories) {
+		Stream<RepositoryDto> stream = repositories.stream().filter(this::matches);
+		if (limit != null) {
+			stream = stream.limit(limit);
+		}
+		if (!includeBranches) {
+			stream = stream.map(repository -> repository.withBranches(null));
+		}
+		return stream.toList();
+	}
+}
@@ -0,0 +1,37 @@
+package pl.majchrzw.repoapi.model;
+
+/**
+ * Order of repositories, with its GitHub REST ({@code sort}, {@code direction}) and GraphQL ({@code orderBy})
+ * counterparts. Most recently pushed and updated repositories come first.
+ */
+public enum RepositorySort {
+	PUSHED("pushed", "desc", "PUSHED_AT"),
+	UPDATED("updated", "desc", "UPDATED_AT"),
+	NAME("full_name", "asc", "NAME");
+	
+	private final String restSort;
+	private final String restDirection;
+	private final String graphQlField;
+	
+	RepositorySort(String restSort, String restDirection, String graphQlField) {
+		this.restSort = restSort;
+		this.restDirection = restDirection;
+		this.graphQlField = graphQlField;
+	}
+	
+	public String restSort() {
+		return restSort;
+	}
+	
+	public String restDirection() {
+		return restDirection;
+	}
+	
+	public String graphQlField() {
+		return graphQlField;
+	}
+	
+	public String graphQlDirection() {
+		return restDirection.toUpperCase();
+	}
+}
@@ -0,0 +1,6 @@
+package pl.majchrzw.repoapi.model;
+
+public record StreamErrorRecord(
+		ErrorResponse error
+) {
+}
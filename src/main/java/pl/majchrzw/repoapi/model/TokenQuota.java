@@ -0,0 +1,12 @@
+package pl.majchrzw.repoapi.model;
+
+import java.time.Instant;
+
+public record TokenQuota(
+		String token,
+		int limit,
+		int remaining,
+		Instant reset,
+		Instant blockedUntil
+) {
+}
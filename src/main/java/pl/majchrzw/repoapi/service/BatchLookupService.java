@@ -0,0 +1,93 @@
+package pl.majchrzw.repoapi.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import pl.majchrzw.repoapi.exception.InvalidRequestException;
+import pl.majchrzw.repoapi.exception.UserNotFoundException;
+import pl.majchrzw.repoapi.model.BatchResult;
+import pl.majchrzw.repoapi.model.ErrorResponse;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.function.Consumer;
+
+/**
+ * Looks up many usernames at once. At most {@code gh-batch-concurrency} users are looked up at a time, and fan-out
+ * of all of them shares the permits of a single request, besides the app-wide concurrency cap and token pool.
+ * Lookups go through {@link RepositoryCacheService}, so cached users cost nothing and users requested concurrently
+ * by other requests are fetched once.
+ */
+@Service
+public class BatchLookupService {
+	
+	private final RepositoryCacheService repositoryCacheService;
+	private final FanOutExecutor fanOutExecutor;
+	private final int concurrency;
+	private final int maxSize;
+	private final Logger log = LoggerFactory.getLogger(BatchLookupService.class);
+	
+	public BatchLookupService(RepositoryCacheService repositoryCacheService, FanOutExecutor fanOutExecutor,
+	                          @Value("${gh-batch-concurrency:4}") int concurrency,
+	                          @Value("${gh-batch-max-size:100}") int maxSize) {
+		this.repositoryCacheService = repositoryCacheService;
+		this.fanOutExecutor = fanOutExecutor;
+		this.concurrency = concurrency;
+		this.maxSize = maxSize;
+	}
+	
+	/**
+	 * Returns results of usernames returned by {@link #deduplicate(List)}, in their order.
+	 */
+	public List<BatchResult> lookup(List<String> usernames) {
+		var budget = fanOutExecutor.newRequestPermits();
+		return fanOutExecutor.map(usernames, concurrency, username -> lookupUser(username, budget));
+	}
+	
+	/**
+	 * Hands result of every username returned by {@link #deduplicate(List)} to {@code sink} as soon as it is ready,
+	 * calls to {@code sink} are serialized.
+	 */
+	public void lookup(List<String> usernames, Consumer<BatchResult> sink) {
+		var budget = fanOutExecutor.newRequestPermits();
+		fanOutExecutor.forEachCompleted(usernames, concurrency, username -> lookupUser(username, budget), sink);
+	}
+	
+	/**
+	 * Validates the batch and removes duplicates, GitHub usernames are case-insensitive.
+	 */
+	public List<String> deduplicate(List<String> usernames) {
+		if (usernames == null) {
+			throw new InvalidRequestException("List of usernames is required");
+		}
+		Map<String, String> unique = new LinkedHashMap<>();
+		for (String username : usernames) {
+			if (username == null || username.isBlank()) {
+				throw new InvalidRequestException("Usernames cannot be blank");
+			}
+			unique.putIfAbsent(username.strip().toLowerCase(Locale.ROOT), username.strip());
+		}
+		if (unique.size() > maxSize) {
+			throw new InvalidRequestException("Batch can contain at most " + maxSize + " distinct usernames");
+		}
+		return new ArrayList<>(unique.values());
+	}
+	
+	private BatchResult lookupUser(String username, Semaphore budget) {
+		try {
+			var repositories = fanOutExecutor.withPermits(budget, () -> repositoryCacheService.getRepositoriesAndBranchesOfUser(username));
+			return new BatchResult(username, repositories, null);
+		} catch (UserNotFoundException e) {
+			return new BatchResult(username, null, new ErrorResponse(HttpStatus.NOT_FOUND.value(), e.getMessage()));
+		} catch (RuntimeException e) {
+			log.warn("Batch lookup of user '{}' has failed", username, e);
+			return new BatchResult(username, null, new ErrorResponse(HttpStatus.INTERNAL_SERVER_ERROR.value(), e.getMessage()));
+		}
+	}
+}
@@ -0,0 +1,132 @@
+package pl.majchrzw.repoapi.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import pl.majchrzw.repoapi.configuration.RateLimitInterceptor;
+import pl.majchrzw.repoapi.exception.UserNotFoundException;
+
+import java.time.Duration;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps results of hot usernames fresh. Lookups of the cache are counted by {@link HotKeySketch}; every
+ * {@code cache-refresh-interval} the {@code cache-refresh-top-k} most requested usernames which results expire
+ * within {@code cache-refresh-ahead} are fetched again in background. Stale results served by the cache are
+ * revalidated the same way, once per username at a time. Refreshes run on {@code cache-refresh-concurrency}
+ * threads and are skipped when GitHub quota above reserve is below {@code cache-refresh-min-quota}, so that
+ * they never take quota needed by requests.
+ */
+@Component
+public class CacheRefresher implements DisposableBean {
+	
+	private final RepositoryCacheService repositoryCacheService;
+	private final RateLimitInterceptor rateLimitInterceptor;
+	private final HotKeySketch sketch;
+	private final int topK;
+	private final Duration refreshAhead;
+	private final long minQuota;
+	private final ThreadPoolExecutor executor;
+	private final ScheduledExecutorService scheduler;
+	private final Set<String> pending = ConcurrentHashMap.newKeySet();
+	private final Logger log = LoggerFactory.getLogger(CacheRefresher.class);
+	
+	private final LongAdder runs = new LongAdder();
+	private final LongAdder skipped = new LongAdder();
+	private final LongAdder failures = new LongAdder();
+	
+	public CacheRefresher(RepositoryCacheService repositoryCacheService, RateLimitInterceptor rateLimitInterceptor,
+	                      @Value("${cache-refresh-interval:30s}") Duration interval,
+	                      @Value("${cache-refresh-ahead:1m}") Duration refreshAhead,
+	                      @Value("${cache-refresh-top-k:20}") int topK,
+	                      @Value("${cache-refresh-concurrency:2}") int concurrency,
+	                      @Value("${cache-refresh-min-quota:100}") long minQuota) {
+		this.repositoryCacheService = repositoryCacheService;
+		this.rateLimitInterceptor = rateLimitInterceptor;
+		this.sketch = new HotKeySketch(Math.max(1, topK) * 64, Math.max(1, topK) * 4);
+		this.topK = topK;
+		this.refreshAhead = refreshAhead;
+		this.minQuota = minQuota;
+		this.executor = new ThreadPoolExecutor(concurrency, concurrency, 0, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<>(Math.max(1, topK)), Thread.ofVirtual().name("cache-refresh-", 0).factory());
+		this.scheduler = Executors.newSingleThreadScheduledExecutor(Thread.ofVirtual().name("cache-refresh-scheduler").factory());
+		repositoryCacheService.onAccess(sketch::record);
+		repositoryCacheService.onStale(this::submit);
+		if (interval.isPositive() && topK > 0) {
+			scheduler.scheduleWithFixedDelay(this::refreshHotUsers, interval.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS);
+		}
+	}
+	
+	/**
+	 * Schedules refresh of results of the most requested usernames which are about to expire.
+	 */
+	public void refreshHotUsers() {
+		try {
+			for (String username : sketch.hottest(topK)) {
+				if (repositoryCacheService.expiresWithin(username, refreshAhead)) {
+					submit(username);
+				}
+			}
+		} catch (RuntimeException e) {
+			log.warn("Failed to schedule refresh of hot users", e);
+		}
+	}
+	
+	public Stats stats() {
+		return new Stats(runs.sum(), skipped.sum(), failures.sum());
+	}
+	
+	@Override
+	public void destroy() {
+		scheduler.shutdownNow();
+		executor.shutdownNow();
+	}
+	
+	private void submit(String username) {
+		String key = username.toLowerCase(Locale.ROOT);
+		if (!pending.add(key)) {
+			return;
+		}
+		if (rateLimitInterceptor.availableQuota() < minQuota) {
+			log.debug("Not enough github quota left to refresh result of user {}", username);
+			pending.remove(key);
+			skipped.increment();
+			return;
+		}
+		try {
+			executor.execute(() -> refresh(username, key));
+		} catch (RejectedExecutionException e) {
+			pending.remove(key);
+			skipped.increment();
+		}
+	}
+	
+	private void refresh(String username, String key) {
+		try {
+			if (repositoryCacheService.refresh(username)) {
+				runs.increment();
+			}
+		} catch (UserNotFoundException e) {
+			runs.increment();
+		} catch (RuntimeException e) {
+			failures.increment();
+			log.warn("Background refresh of user {} has failed: {}", username, e.getMessage());
+		} finally {
+			pending.remove(key);
+		}
+	}
+	
+	public record Stats(long runs, long skipped, long failures) {
+	}
+}
@@ -0,0 +1,182 @@
+package pl.majchrzw.repoapi.service;
+
+import io.micrometer.context.ContextExecutorService;
+import io.micrometer.context.ContextSnapshotFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import pl.majchrzw.repoapi.exception.ExternalApiErrorException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Runs independent upstream calls concurrently on virtual threads, at most {@code limit} at a time for
+ * a single request. The application-wide cap is enforced per HTTP exchange by
+ * {@link pl.majchrzw.repoapi.configuration.UpstreamConcurrencyInterceptor}. Results are returned in the
+ * order of the input list. Fan-out started by the source of {@link #mapAsProduced(Consumer, Function)}, e.g. for
+ * further pages of the listing, shares permits of that call, as does all fan-out started within
+ * {@link #withPermits(Semaphore, Supplier)}.
+ */
+@Component
+public class FanOutExecutor {
+	
+	// permits of the call whose source runs on this thread, or of the budget it runs within, so that fan-out started
+	// from it counts against them
+	private static final ThreadLocal<Semaphore> SOURCE_PERMITS = new ThreadLocal<>();
+	
+	private final Logger log = LoggerFactory.getLogger(FanOutExecutor.class);
+	private final int perRequestLimit;
+	// carries current observation (trace) into virtual threads, so upstream calls are children of request span
+	private final ContextSnapshotFactory contextSnapshotFactory = ContextSnapshotFactory.builder().build();
+	
+	public FanOutExecutor(@Value("${gh-fanout-per-request-limit:8}") int perRequestLimit) {
+		if (perRequestLimit < 1) {
+			throw new IllegalArgumentException("Fan-out limit must be positive");
+		}
+		this.perRequestLimit = perRequestLimit;
+	}
+	
+	/**
+	 * Returns permits of a single request, for calls which are made separately but share one budget.
+	 */
+	public Semaphore newRequestPermits() {
+		return new Semaphore(perRequestLimit);
+	}
+	
+	/**
+	 * Runs the call so that fan-out it starts on this thread takes {@code permits} instead of permits of its own.
+	 * Tasks holding one of them must not start fan-out within the same permits, as they could wait for each other.
+	 */
+	public <R> R withPermits(Semaphore permits, Supplier<R> call) {
+		Semaphore previous = SOURCE_PERMITS.get();
+		SOURCE_PERMITS.set(permits);
+		try {
+			return call.get();
+		} finally {
+			if (previous == null) {
+				SOURCE_PERMITS.remove();
+			} else {
+				SOURCE_PERMITS.set(previous);
+			}
+		}
+	}
+	
+	public <T, R> List<R> map(List<T> items, Function<T, R> task) {
+		return map(items, perRequestLimit, task);
+	}
+	
+	public <T, R> List<R> map(List<T> items, int limit, Function<T, R> task) {
+		if (items.isEmpty()) {
+			return List.of();
+		}
+		return mapProduced(items::forEach, limit, task);
+	}
+	
+	/**
+	 * Like {@link #map(List, Function)}, but every task is started as soon as {@code source} hands its item over,
+	 * e.g. while the rest of the items is still parsed from upstream response. {@code source} runs on the caller
+	 * thread, results are returned in the order items have been produced.
+	 */
+	public <T, R> List<R> mapAsProduced(Consumer<Consumer<T>> source, Function<T, R> task) {
+		return mapProduced(source, perRequestLimit, task);
+	}
+	
+	private <T, R> List<R> mapProduced(Consumer<Consumer<T>> source, int limit, Function<T, R> task) {
+		Semaphore sharedPermits = SOURCE_PERMITS.get();
+		var requestPermits = sharedPermits != null ? sharedPermits : new Semaphore(limit);
+		try (ExecutorService executor = newExecutor()) {
+			List<Future<R>> futures = new ArrayList<>();
+			SOURCE_PERMITS.set(requestPermits);
+			try {
+				source.accept(item -> futures.add(executor.submit(() -> runWithPermit(requestPermits, () -> task.apply(item)))));
+			} catch (RuntimeException e) {
+				executor.shutdownNow();
+				throw e;
+			} finally {
+				if (sharedPermits == null) {
+					SOURCE_PERMITS.remove();
+				}
+			}
+			List<R> results = new ArrayList<>(futures.size());
+			for (Future<R> future : futures) {
+				results.add(await(future, executor));
+			}
+			return results;
+		}
+	}
+	
+	/**
+	 * Like {@link #map(List, Function)}, but hands every result to {@code sink} as soon as it is ready instead of
+	 * collecting them. Calls to {@code sink} are serialized, their order follows completion of the tasks.
+	 */
+	public <T, R> void forEachCompleted(List<T> items, Function<T, R> task, Consumer<R> sink) {
+		forEachCompleted(items, perRequestLimit, task, sink);
+	}
+	
+	public <T, R> void forEachCompleted(List<T> items, int limit, Function<T, R> task, Consumer<R> sink) {
+		if (items.isEmpty()) {
+			return;
+		}
+		var requestPermits = new Semaphore(limit);
+		var sinkLock = new ReentrantLock();
+		try (ExecutorService executor = newExecutor()) {
+			List<Future<R>> futures = new ArrayList<>(items.size());
+			for (T item : items) {
+				futures.add(executor.submit(() -> {
+					R result = runWithPermit(requestPermits, () -> task.apply(item));
+					sinkLock.lock();
+					try {
+						sink.accept(result);
+					} finally {
+						sinkLock.unlock();
+					}
+					return null;
+				}));
+			}
+			for (Future<R> future : futures) {
+				await(future, executor);
+			}
+		}
+	}
+	
+	private ExecutorService newExecutor() {
+		return ContextExecutorService.wrap(Executors.newVirtualThreadPerTaskExecutor(), contextSnapshotFactory::captureAll);
+	}
+	
+	private <R> R runWithPermit(Semaphore requestPermits, Supplier<R> call) throws InterruptedException {
+		requestPermits.acquire();
+		try {
+			return call.get();
+		} finally {
+			requestPermits.release();
+		}
+	}
+	
+	private <R> R await(Future<R> future, ExecutorService executor) {
+		try {
+			return future.get();
+		} catch (ExecutionException e) {
+			executor.shutdownNow();
+			if (e.getCause() instanceof RuntimeException runtimeException) {
+				throw runtimeException;
+			}
+			log.warn("Concurrent upstream call failed", e.getCause());
+			throw new ExternalApiErrorException("Cannot realize request due to github api error, try later.");
+		} catch (InterruptedException e) {
+			executor.shutdownNow();
+			Thread.currentThread().interrupt();
+			throw new ExternalApiErrorException("Request has been interrupted, try later.");
+		}
+	}
+}
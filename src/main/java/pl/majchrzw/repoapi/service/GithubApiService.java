@@ -1,84 +1,42 @@
 package pl.majchrzw.repoapi.service;
 
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-import org.springframework.core.ParameterizedTypeReference;
-import org.springframework.http.HttpStatusCode;
-import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestClient;
-import pl.majchrzw.repoapi.exception.ExternalApiErrorException;
-import pl.majchrzw.repoapi.exception.UserNotFoundException;
-import pl.majchrzw.repoapi.model.BranchDto;
 import pl.majchrzw.repoapi.model.RepositoryDto;
+import pl.majchrzw.repoapi.model.RepositoryQuery;
 
-import java.nio.charset.StandardCharsets;
 import java.util.List;
-import java.util.function.Predicate;
+import java.util.function.Consumer;
 
-@Service
-public class GithubApiService {
+/**
+ * Source of GitHub repositories and branches. Implementation is chosen with {@code gh-backend} property:
+ * {@code rest} (default) or {@code graphql}.
+ */
+public interface GithubApiService {
 	
-	private final RestClient restClient;
-	private final Logger log = LoggerFactory.getLogger(GithubApiService.class);
+	List<RepositoryDto> getRepositoriesAndBranchesOfUser(String username);
 	
-	public GithubApiService(RestClient restClient) {
-		this.restClient = restClient;
+	/**
+	 * Same as {@link #getRepositoriesAndBranchesOfUser(String)}, but branches of repositories which have not been
+	 * pushed to since {@code snapshot} (previous result for the user) was fetched may be taken from it. Backends
+	 * which fetch branches together with repositories have nothing to save and make a full lookup.
+	 */
+	default List<RepositoryDto> refreshRepositoriesOfUser(String username, List<RepositoryDto> snapshot) {
+		return getRepositoriesAndBranchesOfUser(username);
 	}
 	
-	public List<RepositoryDto> getRepositoriesAndBranchesOfUser(String username) {
-		log.info("GET request for repositories and branches of user {}", username);
-		var repositories = getRepositoriesOfUser(username).stream()
-				.filter(Predicate.not(RepositoryDto::fork))
-				.map(repo -> {
-					List<BranchDto> branches = getBranchesForRepository(repo.owner().login(), repo.name()).stream()
-							.toList();
-					
-					return new RepositoryDto(repo.name(), repo.owner(), repo.fork(), branches);
-				}).toList();
-		log.info("Successfully got repositories and branches of user {}, repositories count {}", username, repositories.size());
-		
-		return repositories;
-	}
+	/**
+	 * Returns repositories of user that are not forks, restricted, ordered and with branches according to the
+	 * query. Branches are fetched only for repositories which end up in the result.
+	 */
+	List<RepositoryDto> getRepositoriesOfUser(String username, RepositoryQuery query);
 	
-	private List<RepositoryDto> getRepositoriesOfUser(String username) {
-		var repositories = restClient.get()
-				.uri("/users/{owner}/repos", username)
-				.retrieve()
-				.onStatus(status -> status.value() == 404, ((request, response) -> {
-					log.info("No user with username '{}' found on github", username);
-					throw new UserNotFoundException("No user with username '" + username + "', has been found!");
-				}))
-				.onStatus(HttpStatusCode::is4xxClientError, ((request, response) -> {
-					log.warn("Request for user '{}' repositories has returned error {}: {}", username, response.getStatusCode(), new String(response.getBody().readAllBytes(), StandardCharsets.UTF_8));
-					throw new ExternalApiErrorException("Cannot realize request due to github api error, try later.");
-				}))
-				.body(new ParameterizedTypeReference<List<RepositoryDto>>() {
-				});
-		
-		if (repositories == null) {
-			log.warn("Failed to retrieve repositories for user '{}'", username);
-			throw new ExternalApiErrorException("Failed to retrieve repositories for user '" + username + "'");
-		}
-		
-		return repositories;
-	}
+	/**
+	 * Returns repositories of user that are not forks. Backends which can fetch branches together with
+	 * repositories return them already filled, otherwise {@link RepositoryDto#branches()} is {@code null}.
+	 */
+	List<RepositoryDto> getNonForkRepositoriesOfUser(String username);
 	
-	private List<BranchDto> getBranchesForRepository(String username, String repository) {
-		var branches = restClient.get()
-				.uri("/repos/{owner}/{repo}/branches", username, repository)
-				.retrieve()
-				.onStatus(HttpStatusCode::is4xxClientError, ((request, response) -> {
-					log.warn("Request for repository '{}' branches has returned error {}: {}", repository, response.getStatusCode(), new String(response.getBody().readAllBytes(), StandardCharsets.UTF_8));
-					throw new ExternalApiErrorException("Cannot realize request due to github api error, try later.");
-				}))
-				.body(new ParameterizedTypeReference<List<BranchDto>>() {
-				});
-		
-		if (branches == null) {
-			log.warn("Failed to retrieve branch info for repository '{}'", repository);
-			throw new ExternalApiErrorException("Failed to retrieve branch info for repository '" + repository + "'");
-		}
-		
-		return branches;
-	}
+	/**
+	 * Hands every repository, with branches resolved, to {@code sink} as soon as it is ready.
+	 */
+	void streamBranchesOfRepositories(List<RepositoryDto> repositories, Consumer<RepositoryDto> sink);
 }
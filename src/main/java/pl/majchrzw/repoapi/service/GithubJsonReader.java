@@ -0,0 +1,136 @@
+package pl.majchrzw.repoapi.service;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import pl.majchrzw.repoapi.model.BranchDto;
+import pl.majchrzw.repoapi.model.CommitDto;
+import pl.majchrzw.repoapi.model.OwnerDto;
+import pl.majchrzw.repoapi.model.RepositoryDto;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.function.Consumer;
+
+/**
+ * Token-streaming reader of GitHub REST listings. Only fields present in the DTOs are read, all other values
+ * (most of ~90 fields of a repository) are skipped without being materialized, forks are dropped while parsing.
+ */
+public final class GithubJsonReader {
+	
+	private static final JsonFactory JSON_FACTORY = new JsonFactory();
+	
+	private GithubJsonReader() {
+	}
+	
+	/**
+	 * Reads array of repositories handing every non-fork one to {@code sink} as soon as it is parsed.
+	 *
+	 * @return number of forks which have been skipped
+	 */
+	public static int readNonForkRepositories(InputStream body, Consumer<RepositoryDto> sink) throws IOException {
+		int forks = 0;
+		try (JsonParser parser = JSON_FACTORY.createParser(body)) {
+			expectArray(parser);
+			while (parser.nextToken() == JsonToken.START_OBJECT) {
+				String name = null;
+				OwnerDto owner = null;
+				boolean fork = false;
+				Instant pushedAt = null;
+				while (parser.nextToken() == JsonToken.FIELD_NAME) {
+					String field = parser.currentName();
+					parser.nextToken();
+					switch (field) {
+						case "name" -> name = parser.getValueAsString();
+						case "fork" -> fork = parser.getValueAsBoolean();
+						case "owner" -> owner = readOwner(parser);
+						case "pushed_at" -> pushedAt = readInstant(parser);
+						default -> parser.skipChildren();
+					}
+				}
+				if (fork) {
+					forks++;
+				} else {
+					sink.accept(new RepositoryDto(name, owner, false, null, null, pushedAt));
+				}
+			}
+		}
+		return forks;
+	}
+	
+	public static void readBranches(InputStream body, Consumer<BranchDto> sink) throws IOException {
+		try (JsonParser parser = JSON_FACTORY.createParser(body)) {
+			expectArray(parser);
+			while (parser.nextToken() == JsonToken.START_OBJECT) {
+				String name = null;
+				CommitDto commit = null;
+				while (parser.nextToken() == JsonToken.FIELD_NAME) {
+					String field = parser.currentName();
+					parser.nextToken();
+					switch (field) {
+						case "name" -> name = parser.getValueAsString();
+						case "commit" -> commit = readCommit(parser);
+						default -> parser.skipChildren();
+					}
+				}
+				sink.accept(new BranchDto(name, commit));
+			}
+		}
+	}
+	
+	private static OwnerDto readOwner(JsonParser parser) throws IOException {
+		String login = readField(parser, "login");
+		return parser.currentToken() == JsonToken.VALUE_NULL ? null : new OwnerDto(login);
+	}
+	
+	private static CommitDto readCommit(JsonParser parser) throws IOException {
+		String sha = readField(parser, "sha");
+		return parser.currentToken() == JsonToken.VALUE_NULL ? null : new CommitDto(sha);
+	}
+	
+	/**
+	 * Returns {@code null} for repositories without any commit and for values which are not a valid timestamp, in
+	 * both cases branches are fetched again on refresh.
+	 */
+	private static Instant readInstant(JsonParser parser) throws IOException {
+		String value = parser.getValueAsString();
+		if (value == null) {
+			parser.skipChildren();
+			return null;
+		}
+		try {
+			return Instant.parse(value);
+		} catch (DateTimeParseException e) {
+			return null;
+		}
+	}
+	
+	/**
+	 * Reads single string field of current object, leaving the parser at its end. Does nothing for non-object values.
+	 */
+	private static String readField(JsonParser parser, String name) throws IOException {
+		if (parser.currentToken() != JsonToken.START_OBJECT) {
+			parser.skipChildren();
+			return null;
+		}
+		String value = null;
+		while (parser.nextToken() == JsonToken.FIELD_NAME) {
+			String field = parser.currentName();
+			parser.nextToken();
+			if (field.equals(name)) {
+				value = parser.getValueAsString();
+			} else {
+				parser.skipChildren();
+			}
+		}
+		return value;
+	}
+	
+	private static void expectArray(JsonParser parser) throws IOException {
+		if (parser.nextToken() != JsonToken.START_ARRAY) {
+			throw new IOException("Expected json array, got " + parser.currentToken());
+		}
+	}
+}
@@ -0,0 +1,55 @@
+package pl.majchrzw.repoapi.service;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import org.springframework.stereotype.Component;
+
+import java.util.function.Supplier;
+
+/**
+ * Per-request metrics of GitHub lookups. Latency of single upstream calls is recorded by {@code RestClient}
+ * observation as {@code http.client.requests}, tagged with uri template and status.
+ */
+@Component
+public class GithubMetrics {
+	
+	private final ObservationRegistry observationRegistry;
+	private final DistributionSummary repositories;
+	private final DistributionSummary forks;
+	private final DistributionSummary branchCalls;
+	
+	public GithubMetrics(MeterRegistry meterRegistry, ObservationRegistry observationRegistry) {
+		this.observationRegistry = observationRegistry;
+		this.repositories = DistributionSummary.builder("repoapi.request.repositories")
+				.description("Repositories fetched from GitHub per request, forks included")
+				.register(meterRegistry);
+		this.forks = DistributionSummary.builder("repoapi.request.forks")
+				.description("Fork repositories filtered out per request")
+				.register(meterRegistry);
+		this.branchCalls = DistributionSummary.builder("repoapi.request.branch.calls")
+				.description("GitHub calls made for branches per request")
+				.register(meterRegistry);
+	}
+	
+	/**
+	 * Runs whole lookup of a user inside {@code repoapi.github.lookup} observation, which is both a timer and
+	 * a span parenting every upstream call made by the lookup.
+	 */
+	public <T> T observeLookup(String backend, Supplier<T> lookup) {
+		return Observation.createNotStarted("repoapi.github.lookup", observationRegistry)
+				.contextualName("github-lookup")
+				.lowCardinalityKeyValue("backend", backend)
+				.observe(lookup);
+	}
+	
+	public void recordRepositories(int fetched, int forksFiltered) {
+		repositories.record(fetched);
+		forks.record(forksFiltered);
+	}
+	
+	public void recordBranchCalls(int calls) {
+		branchCalls.record(calls);
+	}
+}
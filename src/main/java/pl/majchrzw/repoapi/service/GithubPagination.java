@@ -0,0 +1,37 @@
+package pl.majchrzw.repoapi.service;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+final class GithubPagination {
+	
+	private static final Pattern LAST_LINK = Pattern.compile("<([^>]+)>\\s*;\\s*rel=\"last\"");
+	
+	private GithubPagination() {
+	}
+	
+	/**
+	 * Reads number of the last page from GitHub {@code Link} header, e.g.
+	 * {@code <https://api.github.com/user/1/repos?per_page=100&page=3>; rel="last"}. Returns 1 when the
+	 * response is not paginated.
+	 */
+	static int lastPage(HttpHeaders headers) {
+		String link = headers.getFirst(HttpHeaders.LINK);
+		if (link == null) {
+			return 1;
+		}
+		Matcher matcher = LAST_LINK.matcher(link);
+		if (!matcher.find()) {
+			return 1;
+		}
+		String page = UriComponentsBuilder.fromUriString(matcher.group(1)).build().getQueryParams().getFirst("page");
+		try {
+			return page == null ? 1 : Math.max(1, Integer.parseInt(page));
+		} catch (NumberFormatException e) {
+			return 1;
+		}
+	}
+}
@@ -0,0 +1,239 @@
+package pl.majchrzw.repoapi.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.RestClient;
+import pl.majchrzw.repoapi.exception.ExternalApiErrorException;
+import pl.majchrzw.repoapi.exception.UserNotFoundException;
+import pl.majchrzw.repoapi.model.BranchDto;
+import pl.majchrzw.repoapi.model.OwnerDto;
+import pl.majchrzw.repoapi.model.RepositoryDto;
+import pl.majchrzw.repoapi.model.RepositoryQuery;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Fetches non-fork repositories together with their branches using GitHub GraphQL API, 100 repositories per
+ * call instead of one REST call per repository. Only repositories with more than 100 branches need extra calls.
+ * Ordering (repositories and branches by name) matches the REST backend. GraphQL API always requires a token.
+ */
+@Service
+@ConditionalOnProperty(name = "gh-backend", havingValue = "graphql")
+public class GraphQlGithubApiService implements GithubApiService {
+	
+	private static final String BRANCHES_FRAGMENT = """
+			refs(refPrefix: "refs/heads/", first: 100, after: $refsCursor, orderBy: {field: ALPHABETICAL, direction: ASC}) %s {
+			  pageInfo { hasNextPage endCursor }
+			  nodes { name target { oid } }
+			}
+			""";
+	private static final String REPOSITORIES_QUERY = """
+			query($login: String!, $first: Int!, $cursor: String, $orderField: RepositoryOrderField!, $direction: OrderDirection!, $withBranches: Boolean!, $refsCursor: String) {
+			  repositoryOwner(login: $login) {
+			    repositories(first: $first, after: $cursor, isFork: false, privacy: PUBLIC, ownerAffiliations: [OWNER], orderBy: {field: $orderField, direction: $direction}) {
+			      pageInfo { hasNextPage endCursor }
+			      nodes {
+			        name
+			        owner { login }
+			        pushedAt
+			        %s
+			      }
+			    }
+			  }
+			}
+			""".formatted(BRANCHES_FRAGMENT.formatted("@include(if: $withBranches)"));
+	private static final String BRANCHES_QUERY = """
+			query($owner: String!, $name: String!, $refsCursor: String) {
+			  repository(owner: $owner, name: $name) {
+			    %s
+			  }
+			}
+			""".formatted(BRANCHES_FRAGMENT.formatted(""));
+	
+	private final RestClient restClient;
+	private final FanOutExecutor fanOutExecutor;
+	private final GithubMetrics githubMetrics;
+	private final int maxPages;
+	private final Logger log = LoggerFactory.getLogger(GraphQlGithubApiService.class);
+	
+	public GraphQlGithubApiService(RestClient restClient, FanOutExecutor fanOutExecutor, GithubMetrics githubMetrics,
+	                               @Value("${gh-max-pages:10}") int maxPages) {
+		this.restClient = restClient;
+		this.fanOutExecutor = fanOutExecutor;
+		this.githubMetrics = githubMetrics;
+		this.maxPages = maxPages;
+	}
+	
+	@Override
+	public List<RepositoryDto> getRepositoriesAndBranchesOfUser(String username) {
+		log.info("GET request for repositories and branches of user {}", username);
+		var repositories = getRepositoriesOfUser(username, RepositoryQuery.ALL);
+		log.info("Successfully got repositories and branches of user {}, repositories count {}", username, repositories.size());
+		
+		return repositories;
+	}
+	
+	@Override
+	public List<RepositoryDto> getNonForkRepositoriesOfUser(String username) {
+		return getRepositoriesOfUser(username, RepositoryQuery.ALL);
+	}
+	
+	@Override
+	public List<RepositoryDto> getRepositoriesOfUser(String username, RepositoryQuery query) {
+		return githubMetrics.observeLookup("graphql", () -> {
+			List<RepositoryNode> nodes = new ArrayList<>();
+			String cursor = null;
+			int page = 0;
+			do {
+				Map<String, Object> variables = new HashMap<>();
+				variables.put("login", username);
+				variables.put("cursor", cursor);
+				// without name filter, a limited lookup needs no more repositories than the limit
+				variables.put("first", query.limit() != null && query.namePrefix() == null ? Math.min(100, query.limit()) : 100);
+				variables.put("orderField", query.sort().graphQlField());
+				variables.put("direction", query.sort().graphQlDirection());
+				variables.put("withBranches", query.includeBranches());
+				var owner = query(REPOSITORIES_QUERY, variables, new ParameterizedTypeReference<GraphQlResponse<OwnerData>>() {
+				}, "repositories of user '" + username + "'").repositoryOwner();
+				if (owner == null) {
+					log.info("No user with username '{}' found on github", username);
+					throw new UserNotFoundException("No user with username '" + username + "', has been found!");
+				}
+				owner.repositories().nodes().stream()
+						.filter(node -> query.matches(new RepositoryDto(node.name(), node.owner(), false, null)))
+						.forEach(nodes::add);
+				cursor = owner.repositories().pageInfo().nextCursor();
+			} while (cursor != null && !query.isFull(nodes.size()) && ++page < maxPages);
+			if (cursor != null && !query.isFull(nodes.size())) {
+				log.warn("Listing of repositories of user '{}' has more than {} pages, rest will not be fetched", username, maxPages);
+			}
+			if (query.limit() != null && nodes.size() > query.limit()) {
+				nodes = nodes.subList(0, query.limit());
+			}
+			
+			// forks are filtered by GitHub, branches of most repositories come with the listing
+			var branchCalls = new AtomicInteger();
+			var repositories = fanOutExecutor.map(nodes, node -> toRepository(node, branchCalls));
+			githubMetrics.recordRepositories(nodes.size(), 0);
+			githubMetrics.recordBranchCalls(branchCalls.get());
+			return repositories;
+		});
+	}
+	
+	@Override
+	public void streamBranchesOfRepositories(List<RepositoryDto> repositories, Consumer<RepositoryDto> sink) {
+		repositories.forEach(sink);
+	}
+	
+	private RepositoryDto toRepository(RepositoryNode node, AtomicInteger branchCalls) {
+		if (node.refs() == null) {
+			return node.toRepository(null);
+		}
+		List<BranchDto> branches = new ArrayList<>(node.refs().nodes());
+		String cursor = node.refs().pageInfo().nextCursor();
+		int page = 1;
+		while (cursor != null && page++ < maxPages) {
+			if (RequestDeadline.isExpired()) {
+				log.info("Branches of repository '{}' have not been fetched within request deadline", node.name());
+				return node.toRepository(null).withIncompleteBranches();
+			}
+			Map<String, Object> variables = new HashMap<>();
+			variables.put("owner", node.owner().login());
+			variables.put("name", node.name());
+			variables.put("refsCursor", cursor);
+			branchCalls.incrementAndGet();
+			var repository = query(BRANCHES_QUERY, variables, new ParameterizedTypeReference<GraphQlResponse<RepositoryData>>() {
+			}, "branches of repository '" + node.name() + "'").repository();
+			if (repository == null) {
+				log.warn("Failed to retrieve branch info for repository '{}'", node.name());
+				throw new ExternalApiErrorException("Failed to retrieve branch info for repository '" + node.name() + "'");
+			}
+			branches.addAll(repository.refs().nodes());
+			cursor = repository.refs().pageInfo().nextCursor();
+		}
+		
+		return node.toRepository(branches);
+	}
+	
+	private <T> T query(String query, Map<String, Object> variables, ParameterizedTypeReference<GraphQlResponse<T>> type, String description) {
+		var response = restClient.post()
+				.uri("/graphql")
+				.contentType(MediaType.APPLICATION_JSON)
+				.body(new GraphQlRequest(query, variables))
+				.retrieve()
+				.onStatus(HttpStatusCode::is4xxClientError, ((request, res) -> {
+					log.warn("GraphQL request for {} has returned error {}: {}", description, res.getStatusCode(), new String(res.getBody().readAllBytes(), StandardCharsets.UTF_8));
+					throw new ExternalApiErrorException("Cannot realize request due to github api error, try later.");
+				}))
+				.body(type);
+		
+		if (response == null) {
+			log.warn("Failed to retrieve {}", description);
+			throw new ExternalApiErrorException("Failed to retrieve " + description);
+		}
+		if (response.errors() != null && !response.errors().isEmpty()) {
+			boolean notFound = response.errors().stream().anyMatch(error -> "NOT_FOUND".equals(error.type()));
+			// GitHub reports missing owner both as NOT_FOUND error and null field, the latter is handled by caller
+			if (!notFound || response.data() == null) {
+				log.warn("GraphQL request for {} has returned errors: {}", description, response.errors());
+				throw new ExternalApiErrorException("Cannot realize request due to github api error, try later.");
+			}
+		}
+		if (response.data() == null) {
+			log.warn("Failed to retrieve {}", description);
+			throw new ExternalApiErrorException("Failed to retrieve " + description);
+		}
+		return response.data();
+	}
+	
+	record GraphQlRequest(String query, Map<String, Object> variables) {
+	}
+	
+	record GraphQlResponse<T>(T data, List<GraphQlError> errors) {
+	}
+	
+	record GraphQlError(String type, String message) {
+	}
+	
+	record OwnerData(RepositoryOwner repositoryOwner) {
+	}
+	
+	record RepositoryOwner(Connection<RepositoryNode> repositories) {
+	}
+	
+	record RepositoryData(RepositoryRefs repository) {
+	}
+	
+	record RepositoryRefs(Connection<BranchDto> refs) {
+	}
+	
+	record RepositoryNode(String name, OwnerDto owner, Instant pushedAt, Connection<BranchDto> refs) {
+		
+		RepositoryDto toRepository(List<BranchDto> branches) {
+			return new RepositoryDto(name, owner, false, branches, null, pushedAt);
+		}
+	}
+	
+	record Connection<T>(PageInfo pageInfo, List<T> nodes) {
+	}
+	
+	record PageInfo(boolean hasNextPage, String endCursor) {
+		
+		String nextCursor() {
+			return hasNextPage ? endCursor : null;
+		}
+	}
+}
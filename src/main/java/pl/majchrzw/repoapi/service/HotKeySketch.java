@@ -0,0 +1,96 @@
+package pl.majchrzw.repoapi.service;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Estimates how often keys are requested with a count-min sketch, which counters are halved every
+ * {@code 10 * width} records so that estimates follow recent traffic. Keys with the highest estimates are kept
+ * as candidates for {@link #hottest(int)}.
+ */
+public class HotKeySketch {
+	
+	private static final long[] SEEDS = {0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
+	
+	private final int[][] table;
+	private final int mask;
+	private final int sampleSize;
+	private final int maxCandidates;
+	private final Map<String, Integer> candidates = new HashMap<>();
+	private int samples;
+	
+	public HotKeySketch(int width, int maxCandidates) {
+		int size = Integer.highestOneBit(Math.max(16, width - 1)) << 1;
+		this.table = new int[SEEDS.length][size];
+		this.mask = size - 1;
+		this.sampleSize = 10 * size;
+		this.maxCandidates = maxCandidates;
+	}
+	
+	public synchronized void record(String key) {
+		int hash = key.hashCode();
+		int estimate = Integer.MAX_VALUE;
+		for (int i = 0; i < SEEDS.length; i++) {
+			int index = index(hash, i);
+			if (table[i][index] < Integer.MAX_VALUE) {
+				table[i][index]++;
+			}
+			estimate = Math.min(estimate, table[i][index]);
+		}
+		offer(key, estimate);
+		if (++samples >= sampleSize) {
+			age();
+		}
+	}
+	
+	public synchronized int estimate(String key) {
+		int hash = key.hashCode();
+		int estimate = Integer.MAX_VALUE;
+		for (int i = 0; i < SEEDS.length; i++) {
+			estimate = Math.min(estimate, table[i][index(hash, i)]);
+		}
+		return estimate;
+	}
+	
+	/**
+	 * Returns at most given number of keys with the highest estimates, the most frequent first.
+	 */
+	public synchronized List<String> hottest(int count) {
+		return candidates.entrySet().stream()
+				.sorted(Map.Entry.<String, Integer>comparingByValue().reversed())
+				.limit(count)
+				.map(Map.Entry::getKey)
+				.toList();
+	}
+	
+	private void offer(String key, int estimate) {
+		if (candidates.containsKey(key) || candidates.size() < maxCandidates) {
+			candidates.put(key, estimate);
+			return;
+		}
+		var coldest = candidates.entrySet().stream().min(Comparator.comparingInt(Map.Entry::getValue)).orElseThrow();
+		if (estimate > coldest.getValue()) {
+			candidates.remove(coldest.getKey());
+			candidates.put(key, estimate);
+		}
+	}
+	
+	private void age() {
+		for (int[] row : table) {
+			for (int i = 0; i < row.length; i++) {
+				row[i] >>>= 1;
+			}
+		}
+		candidates.replaceAll((key, count) -> count >>> 1);
+		candidates.values().removeIf(count -> count == 0);
+		samples /= 2;
+	}
+	
+	private int index(int hash, int row) {
+		long h = (hash + SEEDS[row]) * SEEDS[row];
+		h += h >>> 32;
+		return (int) h & mask;
+	}
+}
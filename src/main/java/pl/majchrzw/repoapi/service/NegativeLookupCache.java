@@ -0,0 +1,113 @@
+package pl.majchrzw.repoapi.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import pl.majchrzw.repoapi.exception.UserNotFoundException;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Remembers usernames which GitHub has answered with 404, so that repeated lookups of them are answered without a call.
+ * Recent ones are kept for {@code cache-negative-ttl} in an LRU map of their own, bounded by
+ * {@code cache-negative-max-size}, so a flood of missing names does not evict cached results. Behind it, a
+ * {@link RotatingBloomFilter} keeps missing names of the last {@code cache-missing-filter-ttl} in about two bytes each.
+ * As the filter has false positives and names get registered, a name it reports is not rejected when it has been found
+ * to exist since, which is remembered for as many names as the LRU map holds.
+ */
+@Service
+public class NegativeLookupCache {
+	
+	private final long ttlNanos;
+	private final int maxSize;
+	private final RotatingBloomFilter filter;
+	private final Map<String, Missing> recent = new LinkedHashMap<>(16, 0.75f, true);
+	private final Map<String, Boolean> found = new LinkedHashMap<>(16, 0.75f, true);
+	
+	private final LongAdder recentHits = new LongAdder();
+	private final LongAdder filterHits = new LongAdder();
+	
+	public NegativeLookupCache(@Value("${cache-negative-ttl:1m}") Duration ttl,
+	                           @Value("${cache-negative-max-size:10000}") int maxSize,
+	                           @Value("${cache-missing-filter-size:100000}") int filterSize,
+	                           @Value("${cache-missing-filter-ttl:1h}") Duration filterTtl) {
+		this.ttlNanos = ttl.toNanos();
+		this.maxSize = maxSize;
+		this.filter = ttlNanos > 0 && filterSize > 0 && filterTtl.isPositive()
+				? new RotatingBloomFilter(filterSize, filterTtl.toNanos())
+				: null;
+	}
+	
+	/**
+	 * Returns exception to answer the lookup with, when the username is known not to exist, otherwise {@code null}.
+	 */
+	public UserNotFoundException lookup(String key, String username) {
+		if (ttlNanos <= 0) {
+			return null;
+		}
+		synchronized (this) {
+			Missing missing = recent.get(key);
+			if (missing != null) {
+				if (missing.expiresAt() - System.nanoTime() > 0) {
+					recentHits.increment();
+					return missing.exception();
+				}
+				recent.remove(key);
+			}
+			if (filter == null || found.containsKey(key) || !filter.mightContain(key)) {
+				return null;
+			}
+		}
+		filterHits.increment();
+		return new UserNotFoundException("No user with username '" + username + "', has been found!");
+	}
+	
+	public void recordMissing(String key, UserNotFoundException exception) {
+		if (ttlNanos <= 0) {
+			return;
+		}
+		synchronized (this) {
+			found.remove(key);
+			recent.put(key, new Missing(exception, System.nanoTime() + ttlNanos));
+			evict(recent);
+			if (filter != null) {
+				filter.add(key);
+			}
+		}
+	}
+	
+	/**
+	 * Records that the username exists, so that the filter does not reject it.
+	 */
+	public synchronized void recordFound(String key) {
+		if (ttlNanos <= 0) {
+			return;
+		}
+		recent.remove(key);
+		found.put(key, Boolean.TRUE);
+		evict(found);
+	}
+	
+	public synchronized Stats stats() {
+		return new Stats(recentHits.sum(), filterHits.sum(), recent.size(), filter == null ? 0 : filter.sizeInBytes());
+	}
+	
+	private void evict(Map<String, ?> map) {
+		var eldest = map.keySet().iterator();
+		while (map.size() > maxSize) {
+			eldest.next();
+			eldest.remove();
+		}
+	}
+	
+	private record Missing(UserNotFoundException exception, long expiresAt) {
+	}
+	
+	/**
+	 * Lookups answered from recent 404s and from the filter, each of them is a GitHub call saved.
+	 */
+	public record Stats(long recentHits, long filterHits, int size, long filterBytes) {
+	}
+}
@@ -0,0 +1,141 @@
+package pl.majchrzw.repoapi.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.codec.DecodingException;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.client.WebClient;
+import pl.majchrzw.repoapi.exception.ExternalApiErrorException;
+import pl.majchrzw.repoapi.exception.UserNotFoundException;
+import pl.majchrzw.repoapi.model.BranchDto;
+import pl.majchrzw.repoapi.model.RepositoryDto;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
+
+/**
+ * Non-blocking counterpart of {@link RestGithubApiService}. Branches are fetched with {@code flatMapSequential}
+ * bounded by {@code gh-fanout-per-request-limit}, so the output order is the same as of the blocking backend.
+ * Calls are authorized with {@code gh-access-token} only, token rotation and ETag revalidation apply to the
+ * blocking client.
+ */
+@Service
+@ConditionalOnProperty(name = "gh-reactive", havingValue = "true")
+public class ReactiveGithubApiService {
+	
+	private final WebClient webClient;
+	private final GithubMetrics githubMetrics;
+	private final int perRequestLimit;
+	private final int pageSize;
+	private final int maxPages;
+	private final Logger log = LoggerFactory.getLogger(ReactiveGithubApiService.class);
+	
+	public ReactiveGithubApiService(WebClient webClient, GithubMetrics githubMetrics,
+	                                @Value("${gh-fanout-per-request-limit:8}") int perRequestLimit,
+	                                @Value("${gh-page-size:100}") int pageSize,
+	                                @Value("${gh-max-pages:10}") int maxPages) {
+		this.webClient = webClient;
+		this.githubMetrics = githubMetrics;
+		this.perRequestLimit = perRequestLimit;
+		this.pageSize = pageSize;
+		this.maxPages = maxPages;
+	}
+	
+	public Mono<List<RepositoryDto>> getRepositoriesAndBranchesOfUser(String username) {
+		return Mono.defer(() -> {
+			log.info("GET request for repositories and branches of user {}", username);
+			var branchCalls = new AtomicInteger();
+			return getNonForkRepositoriesOfUser(username)
+					.flatMapSequential(repo -> withBranches(repo, branchCalls), perRequestLimit)
+					.collectList()
+					.doOnNext(repositories -> {
+						githubMetrics.recordBranchCalls(branchCalls.get());
+						log.info("Successfully got repositories and branches of user {}, repositories count {}", username, repositories.size());
+					});
+		});
+	}
+	
+	public Flux<RepositoryDto> getNonForkRepositoriesOfUser(String username) {
+		return Flux.defer(() -> {
+			var fetched = new AtomicInteger();
+			var forks = new AtomicInteger();
+			return getAllPages(page -> getRepositoriesPage(username, page), "repositories of user '" + username + "'")
+					.doOnNext(repo -> {
+						fetched.incrementAndGet();
+						if (repo.fork()) {
+							forks.incrementAndGet();
+						}
+					})
+					.filter(repo -> !repo.fork())
+					.doOnComplete(() -> githubMetrics.recordRepositories(fetched.get(), forks.get()));
+		});
+	}
+	
+	private Mono<RepositoryDto> withBranches(RepositoryDto repo, AtomicInteger branchCalls) {
+		return getAllPages(page -> {
+			branchCalls.incrementAndGet();
+			return getBranchesPage(repo.owner().login(), repo.name(), page);
+		}, "branches of repository '" + repo.name() + "'")
+				.collectList()
+				.map(repo::withBranches);
+	}
+	
+	private <T> Flux<T> getAllPages(IntFunction<Mono<ResponseEntity<List<T>>>> pageFetcher, String description) {
+		return pageFetcher.apply(1).flatMapMany(firstPage -> {
+			int lastPage = GithubPagination.lastPage(firstPage.getHeaders());
+			if (lastPage > maxPages) {
+				log.warn("Listing of {} has {} pages, only first {} will be fetched", description, lastPage, maxPages);
+				lastPage = maxPages;
+			}
+			var remainingPages = Flux.range(2, Math.max(0, lastPage - 1))
+					.flatMapSequential(pageFetcher::apply, perRequestLimit)
+					.flatMapIterable(ResponseEntity::getBody);
+			return Flux.fromIterable(firstPage.getBody()).concatWith(remainingPages);
+		});
+	}
+	
+	private Mono<ResponseEntity<List<RepositoryDto>>> getRepositoriesPage(String username, int page) {
+		return webClient.get()
+				.uri("/users/{owner}/repos?per_page={perPage}&page={page}", username, pageSize, page)
+				.retrieve()
+				.onStatus(status -> status.value() == 404, response -> {
+					log.info("No user with username '{}' found on github", username);
+					return Mono.error(new UserNotFoundException("No user with username '" + username + "', has been found!"));
+				})
+				.onStatus(HttpStatusCode::isError, response -> response.bodyToMono(String.class)
+						.defaultIfEmpty("")
+						.flatMap(body -> {
+							log.warn("Request for user '{}' repositories has returned error {}: {}", username, response.statusCode(), body);
+							return Mono.error(new ExternalApiErrorException("Cannot realize request due to github api error, try later."));
+						}))
+				.toEntityList(RepositoryDto.class)
+				.onErrorMap(DecodingException.class, e -> {
+					log.warn("Failed to retrieve repositories for user '{}'", username, e);
+					return new ExternalApiErrorException("Failed to retrieve repositories for user '" + username + "'");
+				});
+	}
+	
+	private Mono<ResponseEntity<List<BranchDto>>> getBranchesPage(String username, String repository, int page) {
+		return webClient.get()
+				.uri("/repos/{owner}/{repo}/branches?per_page={perPage}&page={page}", username, repository, pageSize, page)
+				.retrieve()
+				.onStatus(HttpStatusCode::isError, response -> response.bodyToMono(String.class)
+						.defaultIfEmpty("")
+						.flatMap(body -> {
+							log.warn("Request for repository '{}' branches has returned error {}: {}", repository, response.statusCode(), body);
+							return Mono.error(new ExternalApiErrorException("Cannot realize request due to github api error, try later."));
+						}))
+				.toEntityList(BranchDto.class)
+				.onErrorMap(DecodingException.class, e -> {
+					log.warn("Failed to retrieve branch info for repository '{}'", repository, e);
+					return new ExternalApiErrorException("Failed to retrieve branch info for repository '" + repository + "'");
+				});
+	}
+}
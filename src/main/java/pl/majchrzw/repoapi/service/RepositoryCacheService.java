@@ -0,0 +1,338 @@
+package pl.majchrzw.repoapi.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import pl.majchrzw.repoapi.exception.DeadlineExceededException;
+import pl.majchrzw.repoapi.exception.ExternalApiErrorException;
+import pl.majchrzw.repoapi.exception.UserNotFoundException;
+import pl.majchrzw.repoapi.model.CacheStats;
+import pl.majchrzw.repoapi.model.CompactRepositoryList;
+import pl.majchrzw.repoapi.model.RepositoryDto;
+import pl.majchrzw.repoapi.model.RepositoryQuery;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Caches results of {@link GithubApiService} per username. Users that do not exist are remembered by
+ * {@link NegativeLookupCache}, other errors and results missing branches due to request deadline are never cached.
+ * Concurrent misses for the same username wait for a single upstream computation instead of starting their own,
+ * but no longer than their own {@link RequestDeadline}. With
+ * {@code cache-incremental-refresh} an expired result is kept as a snapshot, so the next lookup of the user
+ * re-fetches only branches of repositories which have changed since. For {@code cache-stale-while-revalidate}
+ * after expiry the result is still served, while the stale listener (see {@link CacheRefresher}) revalidates it.
+ * Results are held as {@link CompactRepositoryList}, which is also what callers get.
+ */
+@Service
+public class RepositoryCacheService {
+	
+	private final GithubApiService githubApiService;
+	private final NegativeLookupCache negativeLookupCache;
+	private final Logger log = LoggerFactory.getLogger(RepositoryCacheService.class);
+	private final int maxSize;
+	private final long ttlNanos;
+	private final long staleNanos;
+	private final boolean incrementalRefresh;
+	private final Map<String, CachedResult> entries = new LinkedHashMap<>(16, 0.75f, true);
+	private final Map<String, CompletableFuture<List<RepositoryDto>>> inFlight = new ConcurrentHashMap<>();
+	private volatile Consumer<String> accessListener = key -> {
+	};
+	private volatile Consumer<String> staleListener = username -> {
+	};
+	
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder negativeHits = new LongAdder();
+	private final LongAdder staleHits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder coalesced = new LongAdder();
+	private final LongAdder refreshes = new LongAdder();
+	
+	public RepositoryCacheService(GithubApiService githubApiService,
+	                              @Value("${cache-max-size:1000}") int maxSize,
+	                              @Value("${cache-ttl:5m}") Duration ttl,
+	                              NegativeLookupCache negativeLookupCache,
+	                              @Value("${cache-stale-while-revalidate:1m}") Duration staleWhileRevalidate,
+	                              @Value("${cache-incremental-refresh:true}") boolean incrementalRefresh) {
+		this.githubApiService = githubApiService;
+		this.maxSize = maxSize;
+		this.ttlNanos = ttl.toNanos();
+		this.negativeLookupCache = negativeLookupCache;
+		this.staleNanos = staleWhileRevalidate.toNanos();
+		this.incrementalRefresh = incrementalRefresh;
+	}
+	
+	public List<RepositoryDto> getRepositoriesAndBranchesOfUser(String username) {
+		String key = username.toLowerCase(Locale.ROOT);
+		accessListener.accept(key);
+		CachedResult cached = lookup(key);
+		if (cached != null) {
+			return cached.repositories();
+		}
+		List<RepositoryDto> stale = stale(key);
+		if (stale != null) {
+			if (!inFlight.containsKey(key)) {
+				staleListener.accept(username);
+			}
+			return stale;
+		}
+		rejectIfMissing(key, username);
+		
+		var own = new CompletableFuture<List<RepositoryDto>>();
+		var running = inFlight.putIfAbsent(key, own);
+		if (running != null) {
+			coalesced.increment();
+			log.debug("Joining in-flight request for user {}", username);
+			return join(running);
+		}
+		try {
+			cached = lookup(key);
+			if (cached != null) {
+				List<RepositoryDto> repositories = cached.repositories();
+				own.complete(repositories);
+				return repositories;
+			}
+			misses.increment();
+			return load(username, key, own);
+		} catch (RuntimeException e) {
+			own.completeExceptionally(e);
+			throw e;
+		} finally {
+			inFlight.remove(key, own);
+		}
+	}
+	
+	/**
+	 * Fetches result for the username again, regardless of whether cached one has expired. Returns {@code false}
+	 * without doing anything when a computation for the username is already running.
+	 */
+	public boolean refresh(String username) {
+		String key = username.toLowerCase(Locale.ROOT);
+		var own = new CompletableFuture<List<RepositoryDto>>();
+		if (inFlight.putIfAbsent(key, own) != null) {
+			return false;
+		}
+		try {
+			load(username, key, own);
+			return true;
+		} catch (RuntimeException e) {
+			own.completeExceptionally(e);
+			throw e;
+		} finally {
+			inFlight.remove(key, own);
+		}
+	}
+	
+	/**
+	 * Tells whether the username has a cached result, possibly already expired, which expires within given time.
+	 */
+	public boolean expiresWithin(String username, Duration time) {
+		synchronized (entries) {
+			CachedResult cached = entries.get(username.toLowerCase(Locale.ROOT));
+			return cached != null && cached.expiresAt() - System.nanoTime() <= time.toNanos();
+		}
+	}
+	
+	/**
+	 * Registers listener of every lookup of a username, given in lower case.
+	 */
+	public void onAccess(Consumer<String> listener) {
+		this.accessListener = listener;
+	}
+	
+	/**
+	 * Registers listener called when an expired result is served and no computation for the username is running.
+	 */
+	public void onStale(Consumer<String> listener) {
+		this.staleListener = listener;
+	}
+	
+	/**
+	 * Unrestricted lookups are cached. Restricted ones are answered from cached unrestricted result when its order
+	 * allows it, otherwise they go to GitHub uncached, as they are cheaper than unrestricted lookup.
+	 */
+	public List<RepositoryDto> getRepositoriesOfUser(String username, RepositoryQuery query) {
+		if (query.isDefault()) {
+			return getRepositoriesAndBranchesOfUser(username);
+		}
+		if (query.sort() == RepositoryQuery.ALL.sort()) {
+			var cached = getIfPresent(username);
+			if (cached.isPresent()) {
+				return query.applyTo(cached.get());
+			}
+		}
+		String key = username.toLowerCase(Locale.ROOT);
+		rejectIfMissing(key, username);
+		try {
+			List<RepositoryDto> repositories = githubApiService.getRepositoriesOfUser(username, query);
+			negativeLookupCache.recordFound(key);
+			return repositories;
+		} catch (UserNotFoundException e) {
+			negativeLookupCache.recordMissing(key, e);
+			throw e;
+		}
+	}
+	
+	/**
+	 * Returns cached result of the user, throws {@link UserNotFoundException} when the user is known not to exist.
+	 */
+	public Optional<List<RepositoryDto>> getIfPresent(String username) {
+		String key = username.toLowerCase(Locale.ROOT);
+		CachedResult cached = lookup(key);
+		if (cached != null) {
+			return Optional.of(cached.repositories());
+		}
+		rejectIfMissing(key, username);
+		return Optional.empty();
+	}
+	
+	/**
+	 * Tells whether the list is the result held in cache for the username, without counting it as a lookup.
+	 */
+	public boolean isCached(String username, List<RepositoryDto> repositories) {
+		synchronized (entries) {
+			CachedResult cached = entries.get(username.toLowerCase(Locale.ROOT));
+			return cached != null && cached.repositories() == repositories;
+		}
+	}
+	
+	public CacheStats stats() {
+		synchronized (entries) {
+			return new CacheStats(hits.sum(), negativeHits.sum(), staleHits.sum(), misses.sum(), coalesced.sum(), refreshes.sum(),
+					entries.size());
+		}
+	}
+	
+	private CachedResult lookup(String key) {
+		synchronized (entries) {
+			CachedResult cached = entries.get(key);
+			if (cached == null) {
+				return null;
+			}
+			long remaining = cached.expiresAt() - System.nanoTime();
+			if (remaining <= 0) {
+				// expired result is served stale or stays as snapshot for refresh until it is replaced or evicted
+				if (!incrementalRefresh && -remaining >= staleNanos) {
+					entries.remove(key);
+				}
+				return null;
+			}
+			hits.increment();
+			return cached;
+		}
+	}
+	
+	private List<RepositoryDto> stale(String key) {
+		synchronized (entries) {
+			CachedResult cached = entries.get(key);
+			if (cached == null || System.nanoTime() - cached.expiresAt() >= staleNanos) {
+				return null;
+			}
+			staleHits.increment();
+			return cached.repositories();
+		}
+	}
+	
+	private List<RepositoryDto> load(String username, String key, CompletableFuture<List<RepositoryDto>> own) {
+		try {
+			List<RepositoryDto> snapshot = snapshot(key);
+			List<RepositoryDto> repositories;
+			if (snapshot != null) {
+				refreshes.increment();
+				repositories = githubApiService.refreshRepositoriesOfUser(username, snapshot);
+			} else {
+				repositories = githubApiService.getRepositoriesAndBranchesOfUser(username);
+			}
+			// result degraded by request deadline is returned to waiting callers, but not cached
+			if (ttlNanos > 0 && RepositoryDto.allBranchesComplete(repositories)) {
+				repositories = CompactRepositoryList.of(repositories);
+				store(key, new CachedResult(repositories, System.nanoTime() + ttlNanos));
+			}
+			negativeLookupCache.recordFound(key);
+			own.complete(repositories);
+			return repositories;
+		} catch (UserNotFoundException e) {
+			// the user is gone, so is its snapshot
+			synchronized (entries) {
+				entries.remove(key);
+			}
+			negativeLookupCache.recordMissing(key, e);
+			throw e;
+		}
+	}
+	
+	/**
+	 * Throws {@link UserNotFoundException} without calling GitHub when the user is known not to exist. A user which
+	 * has any result cached, even an expired one, is not checked, as it has been found to exist.
+	 */
+	private void rejectIfMissing(String key, String username) {
+		synchronized (entries) {
+			if (entries.containsKey(key)) {
+				return;
+			}
+		}
+		UserNotFoundException missing = negativeLookupCache.lookup(key, username);
+		if (missing != null) {
+			negativeHits.increment();
+			throw missing;
+		}
+	}
+	
+	private List<RepositoryDto> snapshot(String key) {
+		if (!incrementalRefresh) {
+			return null;
+		}
+		synchronized (entries) {
+			CachedResult cached = entries.get(key);
+			return cached == null ? null : cached.repositories();
+		}
+	}
+	
+	private void store(String key, CachedResult result) {
+		if (result.expiresAt() - System.nanoTime() <= 0) {
+			return;
+		}
+		synchronized (entries) {
+			entries.put(key, result);
+			var eldest = entries.keySet().iterator();
+			while (entries.size() > maxSize) {
+				eldest.next();
+				eldest.remove();
+			}
+		}
+	}
+	
+	// waits for the computation of another request at most until the deadline of the current one
+	private List<RepositoryDto> join(CompletableFuture<List<RepositoryDto>> future) {
+		Duration remaining = RequestDeadline.remaining();
+		try {
+			return remaining == null ? future.get() : future.get(remaining.toNanos(), TimeUnit.NANOSECONDS);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException cause) {
+				throw cause;
+			}
+			throw new CompletionException(e.getCause());
+		} catch (TimeoutException e) {
+			throw new DeadlineExceededException("Request deadline has passed while waiting for in-flight lookup of the same user.");
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new ExternalApiErrorException("Request has been interrupted, try later.");
+		}
+	}
+	
+	private record CachedResult(List<RepositoryDto> repositories, long expiresAt) {
+	}
+}
@@ -0,0 +1,114 @@
+package pl.majchrzw.repoapi.service;
+
+import io.micrometer.context.ContextRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import pl.majchrzw.repoapi.exception.DeadlineExceededException;
+import pl.majchrzw.repoapi.exception.UserNotFoundException;
+
+import java.io.InterruptedIOException;
+import java.time.Duration;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Latency budget of a request, {@code request-deadline} or shorter one asked for by the client. The deadline is
+ * held in a thread local registered for context propagation, so it follows the request into fan-out tasks and
+ * every upstream call made on its behalf fails fast or times out once it has passed.
+ */
+@Component
+public class RequestDeadline {
+	
+	private static final ThreadLocal<Long> DEADLINE = new ThreadLocal<>();
+	
+	static {
+		ContextRegistry.getInstance().registerThreadLocalAccessor("repoapi.request.deadline", DEADLINE::get, DEADLINE::set, DEADLINE::remove);
+	}
+	
+	private final Duration maxBudget;
+	private final LongAdder requests = new LongAdder();
+	private final LongAdder exceeded = new LongAdder();
+	
+	public RequestDeadline(@Value("${request-deadline:10s}") Duration maxBudget) {
+		this.maxBudget = maxBudget;
+	}
+	
+	/**
+	 * Runs the call with deadline {@code requested} (if given) or {@code request-deadline} from now, whichever
+	 * is sooner. Failures caused by the deadline are reported as {@link DeadlineExceededException}.
+	 */
+	public <T> T within(Duration requested, Supplier<T> call) {
+		Duration budget = requested == null || (!maxBudget.isZero() && requested.compareTo(maxBudget) > 0) ? maxBudget : requested;
+		if (budget.isZero()) {
+			return call.get();
+		}
+		Long previous = DEADLINE.get();
+		DEADLINE.set(System.nanoTime() + budget.toNanos());
+		requests.increment();
+		try {
+			return call.get();
+		} catch (DeadlineExceededException | UserNotFoundException e) {
+			throw e;
+		} catch (RuntimeException e) {
+			if (causedFailure(e)) {
+				throw new DeadlineExceededException("Request has not been completed within " + budget.toMillis() + "ms, try later.");
+			}
+			throw e;
+		} finally {
+			if (isExpired()) {
+				exceeded.increment();
+			}
+			if (previous == null) {
+				DEADLINE.remove();
+			} else {
+				DEADLINE.set(previous);
+			}
+		}
+	}
+	
+	public Stats stats() {
+		return new Stats(requests.sum(), exceeded.sum());
+	}
+	
+	/**
+	 * Returns time left to the deadline of current request, {@code null} when it has no deadline.
+	 */
+	public static Duration remaining() {
+		Long deadline = DEADLINE.get();
+		return deadline == null ? null : Duration.ofNanos(Math.max(0, deadline - System.nanoTime()));
+	}
+	
+	public static boolean isExpired() {
+		Long deadline = DEADLINE.get();
+		return deadline != null && deadline - System.nanoTime() <= 0;
+	}
+	
+	/**
+	 * Whether the failure has been caused by deadline of current request: the upstream call has not been made, or it has
+	 * timed out once the deadline passed. Other failures, e.g. an error status of GitHub, are not.
+	 */
+	public static boolean causedFailure(RuntimeException e) {
+		if (e instanceof DeadlineExceededException) {
+			return true;
+		}
+		if (!isExpired()) {
+			return false;
+		}
+		for (Throwable cause = e.getCause(); cause != null; cause = cause.getCause()) {
+			// socket and connection pool timeouts
+			if (cause instanceof InterruptedIOException) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	public static void check() {
+		if (isExpired()) {
+			throw new DeadlineExceededException("Request deadline has passed, upstream call has not been made.");
+		}
+	}
+	
+	public record Stats(long requests, long exceeded) {
+	}
+}
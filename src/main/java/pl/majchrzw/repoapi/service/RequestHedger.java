@@ -0,0 +1,157 @@
+package pl.majchrzw.repoapi.service;
+
+import io.micrometer.context.ContextExecutorService;
+import io.micrometer.context.ContextSnapshotFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import pl.majchrzw.repoapi.exception.ExternalApiErrorException;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Hedges idempotent upstream calls: when a call has not answered within the {@code gh-hedge-percentile} of
+ * recent call latencies (but not sooner than {@code gh-hedge-min-delay}), a duplicate is sent and whichever
+ * succeeds first wins, the other one is interrupted. Duplicates are limited by a budget, every call earns
+ * {@code gh-hedge-budget} of a hedge, so at most that fraction of calls is doubled.
+ */
+@Component
+public class RequestHedger implements DisposableBean {
+	
+	private static final int WINDOW = 1024;
+	private static final int MIN_SAMPLES = 20;
+	private static final double MAX_BUDGET = 10;
+	
+	private final boolean enabled;
+	private final double percentile;
+	private final long minDelayNanos;
+	private final double budgetPerCall;
+	private final ExecutorService executor;
+	
+	// ring of recent latencies of successful calls, percentile is recomputed every WINDOW / 8 samples
+	private final long[] latencies = new long[WINDOW];
+	private int samples;
+	private long delayNanos;
+	private double budget;
+	
+	private final LongAdder calls = new LongAdder();
+	private final LongAdder hedges = new LongAdder();
+	private final LongAdder hedgeWins = new LongAdder();
+	
+	public RequestHedger(@Value("${gh-hedge-enabled:false}") boolean enabled,
+	                     @Value("${gh-hedge-percentile:0.95}") double percentile,
+	                     @Value("${gh-hedge-min-delay:50ms}") Duration minDelay,
+	                     @Value("${gh-hedge-budget:0.1}") double budgetPerCall) {
+		this.enabled = enabled;
+		this.percentile = percentile;
+		this.minDelayNanos = minDelay.toNanos();
+		this.budgetPerCall = budgetPerCall;
+		this.delayNanos = minDelayNanos;
+		this.executor = ContextExecutorService.wrap(Executors.newVirtualThreadPerTaskExecutor(),
+				ContextSnapshotFactory.builder().build()::captureAll);
+	}
+	
+	public <T> T call(Supplier<T> call) {
+		calls.increment();
+		if (!enabled) {
+			return timed(call);
+		}
+		CompletionService<T> completion = new ExecutorCompletionService<>(executor);
+		List<Future<T>> attempts = new ArrayList<>(2);
+		attempts.add(completion.submit(() -> timed(call)));
+		try {
+			Future<T> first = completion.poll(earnBudgetAndGetDelay(), TimeUnit.NANOSECONDS);
+			if (first == null && trySpendBudget()) {
+				hedges.increment();
+				attempts.add(completion.submit(() -> timed(call)));
+			}
+			if (first == null) {
+				first = completion.take();
+			}
+			try {
+				T result = first.get();
+				if (attempts.size() > 1 && first == attempts.get(1)) {
+					hedgeWins.increment();
+				}
+				return result;
+			} catch (ExecutionException e) {
+				if (attempts.size() == 1) {
+					throw unwrap(e);
+				}
+				// the other attempt may still succeed
+				return completion.take().get();
+			}
+		} catch (ExecutionException e) {
+			throw unwrap(e);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new ExternalApiErrorException("Request has been interrupted, try later.");
+		} finally {
+			attempts.forEach(attempt -> attempt.cancel(true));
+		}
+	}
+	
+	public HedgeStats stats() {
+		synchronized (this) {
+			return new HedgeStats(calls.sum(), hedges.sum(), hedgeWins.sum(), Duration.ofNanos(delayNanos));
+		}
+	}
+	
+	@Override
+	public void destroy() {
+		executor.shutdownNow();
+	}
+	
+	private <T> T timed(Supplier<T> call) {
+		long start = System.nanoTime();
+		T result = call.get();
+		record(System.nanoTime() - start);
+		return result;
+	}
+	
+	private synchronized void record(long latencyNanos) {
+		latencies[samples % WINDOW] = latencyNanos;
+		samples++;
+		if (samples >= MIN_SAMPLES && (samples < WINDOW ? samples % MIN_SAMPLES == 0 : samples % (WINDOW / 8) == 0)) {
+			long[] sorted = Arrays.copyOf(latencies, Math.min(samples, WINDOW));
+			Arrays.sort(sorted);
+			delayNanos = Math.max(minDelayNanos, sorted[(int) Math.min(sorted.length - 1, Math.ceil(percentile * sorted.length) - 1)]);
+		}
+	}
+	
+	private synchronized long earnBudgetAndGetDelay() {
+		budget = Math.min(MAX_BUDGET, budget + budgetPerCall);
+		// nothing is known about latency of upstream yet, so there is no point to hedge at
+		return samples < MIN_SAMPLES ? Long.MAX_VALUE : delayNanos;
+	}
+	
+	private synchronized boolean trySpendBudget() {
+		if (budget < 1) {
+			return false;
+		}
+		budget--;
+		return true;
+	}
+	
+	private RuntimeException unwrap(ExecutionException e) {
+		if (e.getCause() instanceof RuntimeException runtimeException) {
+			return runtimeException;
+		}
+		return new ExternalApiErrorException("Cannot realize request due to github api error, try later.");
+	}
+	
+	public record HedgeStats(long calls, long hedges, long hedgeWins, Duration delay) {
+	}
+}
@@ -0,0 +1,257 @@
+package pl.majchrzw.repoapi.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.RestClient;
+import pl.majchrzw.repoapi.exception.ExternalApiErrorException;
+import pl.majchrzw.repoapi.exception.UserNotFoundException;
+import pl.majchrzw.repoapi.model.BranchDto;
+import pl.majchrzw.repoapi.model.RepositoryDto;
+import pl.majchrzw.repoapi.model.RepositoryQuery;
+import pl.majchrzw.repoapi.model.RepositorySort;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+
+@Service
+@ConditionalOnProperty(name = "gh-backend", havingValue = "rest", matchIfMissing = true)
+public class RestGithubApiService implements GithubApiService {
+	
+	private final RestClient restClient;
+	private final FanOutExecutor fanOutExecutor;
+	private final GithubMetrics githubMetrics;
+	private final RequestHedger requestHedger;
+	private final int pageSize;
+	private final int maxPages;
+	private final Logger log = LoggerFactory.getLogger(RestGithubApiService.class);
+	
+	public RestGithubApiService(RestClient restClient, FanOutExecutor fanOutExecutor, GithubMetrics githubMetrics,
+	                            RequestHedger requestHedger,
+	                            @Value("${gh-page-size:100}") int pageSize,
+	                            @Value("${gh-max-pages:10}") int maxPages) {
+		this.restClient = restClient;
+		this.fanOutExecutor = fanOutExecutor;
+		this.githubMetrics = githubMetrics;
+		this.requestHedger = requestHedger;
+		this.pageSize = pageSize;
+		this.maxPages = maxPages;
+	}
+	
+	@Override
+	public List<RepositoryDto> getRepositoriesAndBranchesOfUser(String username) {
+		log.info("GET request for repositories and branches of user {}", username);
+		var repositories = getRepositoriesOfUser(username, RepositoryQuery.ALL);
+		log.info("Successfully got repositories and branches of user {}, repositories count {}", username, repositories.size());
+		
+		return repositories;
+	}
+	
+	@Override
+	public List<RepositoryDto> getRepositoriesOfUser(String username, RepositoryQuery query) {
+		return githubMetrics.observeLookup("rest", () -> {
+			if (!query.includeBranches()) {
+				List<RepositoryDto> repositories = new ArrayList<>();
+				forEachNonForkRepositoryOfUser(username, query, repositories::add);
+				return repositories;
+			}
+			var branchCalls = new AtomicInteger();
+			// branches of a repository are requested as soon as it is parsed from the listing
+			var result = fanOutExecutor.<RepositoryDto, RepositoryDto>mapAsProduced(sink -> forEachNonForkRepositoryOfUser(username, query, sink),
+					repo -> withBranches(repo, branchCalls));
+			githubMetrics.recordBranchCalls(branchCalls.get());
+			return result;
+		});
+	}
+	
+	/**
+	 * Fetches the listing only, branches are fetched for new repositories and ones which {@code pushed_at} has
+	 * moved. Repositories which are gone from the listing are dropped.
+	 */
+	@Override
+	public List<RepositoryDto> refreshRepositoriesOfUser(String username, List<RepositoryDto> snapshot) {
+		log.info("Refreshing repositories and branches of user {}, {} repositories known", username, snapshot.size());
+		Map<String, RepositoryDto> known = new HashMap<>();
+		snapshot.forEach(repo -> known.put(repo.name(), repo));
+		return githubMetrics.observeLookup("rest", () -> {
+			var branchCalls = new AtomicInteger();
+			var result = fanOutExecutor.<RepositoryDto, RepositoryDto>mapAsProduced(sink -> forEachNonForkRepositoryOfUser(username, RepositoryQuery.ALL, sink), repo -> {
+				RepositoryDto previous = known.get(repo.name());
+				if (previous != null && previous.branches() != null && repo.pushedAt() != null && repo.pushedAt().equals(previous.pushedAt())) {
+					return repo.withBranches(previous.branches());
+				}
+				return withBranches(repo, branchCalls);
+			});
+			githubMetrics.recordBranchCalls(branchCalls.get());
+			return result;
+		});
+	}
+	
+	@Override
+	public List<RepositoryDto> getNonForkRepositoriesOfUser(String username) {
+		List<RepositoryDto> repositories = new ArrayList<>();
+		forEachNonForkRepositoryOfUser(username, RepositoryQuery.ALL, repositories::add);
+		return repositories;
+	}
+	
+	@Override
+	public void streamBranchesOfRepositories(List<RepositoryDto> repositories, Consumer<RepositoryDto> sink) {
+		var branchCalls = new AtomicInteger();
+		fanOutExecutor.forEachCompleted(repositories, repo -> withBranches(repo, branchCalls), sink);
+		githubMetrics.recordBranchCalls(branchCalls.get());
+	}
+	
+	private RepositoryDto withBranches(RepositoryDto repo, AtomicInteger branchCalls) {
+		List<BranchDto> branches;
+		try {
+			branches = getBranchesForRepository(repo.owner().login(), repo.name(), branchCalls);
+		} catch (RuntimeException e) {
+			if (!RequestDeadline.causedFailure(e)) {
+				throw e;
+			}
+			// rest of the response is still worth returning
+			log.info("Branches of repository '{}' have not been fetched within request deadline", repo.name());
+			return repo.withIncompleteBranches();
+		}
+		
+		return repo.withBranches(branches);
+	}
+	
+	private void forEachNonForkRepositoryOfUser(String username, RepositoryQuery query, Consumer<RepositoryDto> sink) {
+		var nonForks = new AtomicInteger();
+		var forks = new AtomicInteger();
+		var accepted = new AtomicInteger();
+		PageFetcher<RepositoryDto> pageFetcher = (page, pageSink) -> getRepositoriesPage(username, query.sort(), page, pageSink, forks);
+		Consumer<RepositoryDto> filter = repo -> {
+			nonForks.incrementAndGet();
+			if (query.matches(repo) && !query.isFull(accepted.get())) {
+				accepted.incrementAndGet();
+				sink.accept(repo);
+			}
+		};
+		String description = "repositories of user '" + username + "'";
+		if (query.limit() == null) {
+			forEachOfAllPages(pageFetcher, filter, description);
+		} else {
+			forEachOfPagesUntil(pageFetcher, filter, () -> query.isFull(accepted.get()), description);
+		}
+		githubMetrics.recordRepositories(nonForks.get() + forks.get(), forks.get());
+	}
+	
+	private List<BranchDto> getBranchesForRepository(String username, String repository, AtomicInteger branchCalls) {
+		List<BranchDto> branches = new ArrayList<>();
+		// runs in a fan-out task holding one of the request's permits, so further pages are not fanned out again
+		this.<BranchDto>forEachOfPagesUntil((page, pageSink) -> {
+			branchCalls.incrementAndGet();
+			// a hedged attempt may be abandoned halfway, so the page is collected before it is handed over
+			var branchesPage = requestHedger.call(() -> {
+				List<BranchDto> items = new ArrayList<>();
+				int lastPage = getBranchesPage(username, repository, page, items::add);
+				return new BranchesPage(items, lastPage);
+			});
+			branchesPage.branches().forEach(pageSink);
+			return branchesPage.lastPage();
+		}, branches::add, () -> false, "branches of repository '" + repository + "'");
+		return branches;
+	}
+	
+	/**
+	 * Hands items of the first page to {@code sink} while it is parsed, remaining pages are fetched concurrently
+	 * and handed over in page order.
+	 */
+	private <T> void forEachOfAllPages(PageFetcher<T> pageFetcher, Consumer<T> sink, String description) {
+		int lastPage = pageFetcher.fetch(1, sink);
+		if (lastPage <= 1) {
+			return;
+		}
+		if (lastPage > maxPages) {
+			log.warn("Listing of {} has {} pages, only first {} will be fetched", description, lastPage, maxPages);
+			lastPage = maxPages;
+		}
+		var remainingPages = fanOutExecutor.map(IntStream.rangeClosed(2, lastPage).boxed().toList(), page -> {
+			List<T> items = new ArrayList<>();
+			pageFetcher.fetch(page, items::add);
+			return items;
+		});
+		
+		remainingPages.forEach(items -> items.forEach(sink));
+	}
+	
+	/**
+	 * Fetches pages one by one until {@code done} or the last page, for lookups which need only the first items.
+	 */
+	private <T> void forEachOfPagesUntil(PageFetcher<T> pageFetcher, Consumer<T> sink, BooleanSupplier done, String description) {
+		int page = 1;
+		int lastPage = pageFetcher.fetch(page, sink);
+		while (!done.getAsBoolean() && page < lastPage) {
+			if (page == maxPages) {
+				log.warn("Listing of {} has {} pages, only first {} will be fetched", description, lastPage, maxPages);
+				return;
+			}
+			lastPage = pageFetcher.fetch(++page, sink);
+		}
+	}
+	
+	private int getRepositoriesPage(String username, RepositorySort sort, int page, Consumer<RepositoryDto> sink, AtomicInteger forks) {
+		return restClient.get()
+				.uri("/users/{owner}/repos?per_page={perPage}&page={page}&sort={sort}&direction={direction}",
+						username, pageSize, page, sort.restSort(), sort.restDirection())
+				.exchange((request, response) -> {
+					if (response.getStatusCode().value() == 404) {
+						log.info("No user with username '{}' found on github", username);
+						throw new UserNotFoundException("No user with username '" + username + "', has been found!");
+					}
+					if (response.getStatusCode().isError()) {
+						log.warn("Request for user '{}' repositories has returned error {}: {}", username, response.getStatusCode(), new String(response.getBody().readAllBytes(), StandardCharsets.UTF_8));
+						throw new ExternalApiErrorException("Cannot realize request due to github api error, try later.");
+					}
+					try {
+						forks.addAndGet(GithubJsonReader.readNonForkRepositories(response.getBody(), sink));
+					} catch (IOException e) {
+						log.warn("Failed to retrieve repositories for user '{}'", username, e);
+						throw new ExternalApiErrorException("Failed to retrieve repositories for user '" + username + "'");
+					}
+					return GithubPagination.lastPage(response.getHeaders());
+				});
+	}
+	
+	private int getBranchesPage(String username, String repository, int page, Consumer<BranchDto> sink) {
+		return restClient.get()
+				.uri("/repos/{owner}/{repo}/branches?per_page={perPage}&page={page}", username, repository, pageSize, page)
+				.exchange((request, response) -> {
+					if (response.getStatusCode().isError()) {
+						log.warn("Request for repository '{}' branches has returned error {}: {}", repository, response.getStatusCode(), new String(response.getBody().readAllBytes(), StandardCharsets.UTF_8));
+						throw new ExternalApiErrorException("Cannot realize request due to github api error, try later.");
+					}
+					try {
+						GithubJsonReader.readBranches(response.getBody(), sink);
+					} catch (IOException e) {
+						log.warn("Failed to retrieve branch info for repository '{}'", repository, e);
+						throw new ExternalApiErrorException("Failed to retrieve branch info for repository '" + repository + "'");
+					}
+					return GithubPagination.lastPage(response.getHeaders());
+				});
+	}
+	
+	private record BranchesPage(List<BranchDto> branches, int lastPage) {
+	}
+	
+	/**
+	 * Fetches a single page handing its items to the sink, returns number of the last page of the listing.
+	 */
+	@FunctionalInterface
+	private interface PageFetcher<T> {
+		
+		int fetch(int page, Consumer<T> sink);
+	}
+}
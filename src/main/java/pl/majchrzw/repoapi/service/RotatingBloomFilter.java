@@ -0,0 +1,100 @@
+package pl.majchrzw.repoapi.service;
+
+import java.util.Arrays;
+
+/**
+ * Bloom filter of strings which forgets them: keys are added to the current of two generations, which becomes the
+ * previous one once it holds {@code capacity} keys or is older than half of {@code ttl}. A key is thus remembered for
+ * at most the ttl, and at least half of it unless more than {@code capacity} keys are added meanwhile. Sized for a
+ * false positive rate of about 0.1% per generation.
+ */
+public class RotatingBloomFilter {
+	
+	// -ln(0.001) / ln(2)^2 bits and ln(2) * bits hashes per key
+	private static final double BITS_PER_KEY = 14.4;
+	private static final int HASHES = 10;
+	private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+	private static final long FNV_PRIME = 0x100000001b3L;
+	
+	private final int capacity;
+	private final long generationNanos;
+	private final int bits;
+	private long[] current;
+	private long[] previous;
+	private int currentKeys;
+	private long currentStartedAt;
+	
+	public RotatingBloomFilter(int capacity, long ttlNanos) {
+		this.capacity = capacity;
+		this.generationNanos = ttlNanos / 2;
+		this.bits = (int) Math.min(Integer.MAX_VALUE - 63, Math.max(64, (long) Math.ceil(capacity * BITS_PER_KEY)));
+		this.current = new long[(bits + 63) / 64];
+		this.previous = new long[current.length];
+		this.currentStartedAt = System.nanoTime();
+	}
+	
+	public synchronized void add(String key) {
+		rotateIfDue();
+		long hash = hash(key);
+		int h1 = (int) hash;
+		int h2 = (int) (hash >>> 32);
+		for (int i = 0; i < HASHES; i++) {
+			int bit = index(h1 + i * h2);
+			current[bit >>> 6] |= 1L << bit;
+		}
+		currentKeys++;
+	}
+	
+	public synchronized boolean mightContain(String key) {
+		rotateIfDue();
+		long hash = hash(key);
+		int h1 = (int) hash;
+		int h2 = (int) (hash >>> 32);
+		return contains(current, h1, h2) || contains(previous, h1, h2);
+	}
+	
+	/**
+	 * Heap taken by both generations.
+	 */
+	public long sizeInBytes() {
+		return 2L * current.length * Long.BYTES;
+	}
+	
+	private boolean contains(long[] generation, int h1, int h2) {
+		for (int i = 0; i < HASHES; i++) {
+			int bit = index(h1 + i * h2);
+			if ((generation[bit >>> 6] & 1L << bit) == 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	private void rotateIfDue() {
+		if (currentKeys < capacity && System.nanoTime() - currentStartedAt < generationNanos) {
+			return;
+		}
+		long[] emptied = previous;
+		Arrays.fill(emptied, 0);
+		previous = current;
+		current = emptied;
+		currentKeys = 0;
+		currentStartedAt = System.nanoTime();
+	}
+	
+	private int index(int hash) {
+		return (int) ((hash & 0xffffffffL) % bits);
+	}
+	
+	private static long hash(String key) {
+		long hash = FNV_OFFSET;
+		for (int i = 0; i < key.length(); i++) {
+			hash = (hash ^ key.charAt(i)) * FNV_PRIME;
+		}
+		// FNV-1a mixes low bits poorly into high ones, both halves are used as hashes
+		hash ^= hash >>> 33;
+		hash *= 0xff51afd7ed558ccdL;
+		hash ^= hash >>> 33;
+		return hash;
+	}
+}
@@ -0,0 +1,113 @@
+package pl.majchrzw.repoapi.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import pl.majchrzw.repoapi.model.RepositoryDto;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Holds response JSON of results cached by {@link RepositoryCacheService}, serialized once together with its gzip
+ * variant, so cache hits are written out as they are. An entry belongs to the exact result list it has been
+ * serialized from and is replaced as soon as a newer result is cached for the username. Entries are evicted in LRU
+ * order once their total size exceeds {@code cache-serialized-max-bytes}.
+ */
+@Service
+public class SerializedResponseCache {
+	
+	private final ObjectWriter writer;
+	private final long maxBytes;
+	private final Map<String, SerializedResponse> entries = new LinkedHashMap<>(16, 0.75f, true);
+	private long storedBytes;
+	
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	
+	public SerializedResponseCache(ObjectMapper objectMapper,
+	                               @Value("${cache-serialized-max-bytes:33554432}") long maxBytes) {
+		this.writer = objectMapper.writerFor(new TypeReference<List<RepositoryDto>>() {
+		});
+		this.maxBytes = maxBytes;
+	}
+	
+	public SerializedResponse get(String username, List<RepositoryDto> repositories) {
+		String key = username.toLowerCase(Locale.ROOT);
+		synchronized (entries) {
+			SerializedResponse entry = entries.get(key);
+			if (entry != null && entry.source() == repositories) {
+				hits.increment();
+				return entry;
+			}
+		}
+		misses.increment();
+		var entry = serialize(repositories);
+		put(key, entry);
+		return entry;
+	}
+	
+	public Stats stats() {
+		synchronized (entries) {
+			return new Stats(hits.sum(), misses.sum(), entries.size(), storedBytes);
+		}
+	}
+	
+	private SerializedResponse serialize(List<RepositoryDto> repositories) {
+		try {
+			byte[] json = writer.writeValueAsBytes(repositories);
+			var compressed = new ByteArrayOutputStream(json.length / 4);
+			try (var gzip = new GZIPOutputStream(compressed)) {
+				gzip.write(json);
+			}
+			// tiny bodies may grow when compressed
+			return new SerializedResponse(repositories, json, compressed.size() < json.length ? compressed.toByteArray() : null);
+		} catch (JsonProcessingException e) {
+			throw new IllegalStateException("Failed to serialize repositories", e);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+	
+	private void put(String key, SerializedResponse entry) {
+		if (entry.weight() > maxBytes) {
+			return;
+		}
+		synchronized (entries) {
+			SerializedResponse previous = entries.put(key, entry);
+			if (previous != null) {
+				storedBytes -= previous.weight();
+			}
+			storedBytes += entry.weight();
+			Iterator<SerializedResponse> eldest = entries.values().iterator();
+			while (storedBytes > maxBytes) {
+				storedBytes -= eldest.next().weight();
+				eldest.remove();
+			}
+		}
+	}
+	
+	public record Stats(long hits, long misses, int entries, long bytes) {
+	}
+	
+	/**
+	 * JSON of {@code source} and its gzip variant, {@code null} when compression does not make it smaller.
+	 */
+	public record SerializedResponse(List<RepositoryDto> source, byte[] json, byte[] gzip) {
+		
+		long weight() {
+			return json.length + (gzip == null ? 0 : gzip.length);
+		}
+	}
+}
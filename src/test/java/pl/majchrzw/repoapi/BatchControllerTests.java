@@ -0,0 +1,105 @@
+package pl.majchrzw.repoapi;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.ResultActions;
+import pl.majchrzw.repoapi.controller.BatchController;
+import pl.majchrzw.repoapi.exception.ExternalApiErrorException;
+import pl.majchrzw.repoapi.exception.UserNotFoundException;
+import pl.majchrzw.repoapi.model.BranchDto;
+import pl.majchrzw.repoapi.model.CommitDto;
+import pl.majchrzw.repoapi.model.OwnerDto;
+import pl.majchrzw.repoapi.model.RepositoryDto;
+import pl.majchrzw.repoapi.service.BatchLookupService;
+import pl.majchrzw.repoapi.service.FanOutExecutor;
+import pl.majchrzw.repoapi.service.GithubApiService;
+import pl.majchrzw.repoapi.service.NegativeLookupCache;
+import pl.majchrzw.repoapi.service.RepositoryCacheService;
+
+import java.util.List;
+
+import static org.hamcrest.Matchers.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@WebMvcTest(controllers = BatchController.class, properties = {"cache-ttl=0s", "cache-negative-ttl=0s", "gh-batch-max-size=3"})
+@Import({BatchLookupService.class, RepositoryCacheService.class, NegativeLookupCache.class, FanOutExecutor.class})
+public class BatchControllerTests {
+	
+	@MockBean
+	private GithubApiService apiService;
+	
+	@Autowired
+	private MockMvc mockMvc;
+	
+	private final List<RepositoryDto> repos = List.of(
+			new RepositoryDto("repo", new OwnerDto("user"), false, List.of(new BranchDto("main", new CommitDto("sha of commit"))))
+	);
+	
+	@Test
+	void resultsAndErrorsAreReturnedPerUserTest() throws Exception {
+		// given
+		Mockito.when(apiService.getRepositoriesAndBranchesOfUser("user")).thenReturn(repos);
+		Mockito.when(apiService.getRepositoriesAndBranchesOfUser("missing")).thenThrow(new UserNotFoundException("Not found"));
+		Mockito.when(apiService.getRepositoriesAndBranchesOfUser("broken")).thenThrow(new ExternalApiErrorException("External api error"));
+		// when
+		ResultActions res = mockMvc.perform(post("/api/batch")
+				.contentType(MediaType.APPLICATION_JSON)
+				.content("[\"user\", \"missing\", \"USER\", \"broken\"]"));
+		// then
+		res.andExpect(status().isOk())
+				.andExpect(content().contentType(MediaType.APPLICATION_JSON))
+				.andExpect(jsonPath("$[*].username", contains("user", "missing", "broken")))
+				.andExpect(jsonPath("$[0].repositories[0].name").value("repo"))
+				.andExpect(jsonPath("$[0].error").doesNotExist())
+				.andExpect(jsonPath("$[1].repositories").doesNotExist())
+				.andExpect(jsonPath("$[1].error.status").value(404))
+				.andExpect(jsonPath("$[2].error.status").value(500))
+				.andExpect(jsonPath("$[2].error.message").value("External api error"));
+		Mockito.verify(apiService, Mockito.times(1)).getRepositoriesAndBranchesOfUser("user");
+	}
+	
+	@Test
+	void resultsAreStreamedAsNdjsonTest() throws Exception {
+		// given
+		Mockito.when(apiService.getRepositoriesAndBranchesOfUser("user")).thenReturn(repos);
+		Mockito.when(apiService.getRepositoriesAndBranchesOfUser("missing")).thenThrow(new UserNotFoundException("Not found"));
+		// when
+		MvcResult started = mockMvc.perform(post("/api/batch")
+						.contentType(MediaType.APPLICATION_JSON)
+						.accept(MediaType.APPLICATION_NDJSON)
+						.content("[\"user\", \"missing\"]"))
+				.andExpect(request().asyncStarted())
+				.andReturn();
+		ResultActions res = mockMvc.perform(asyncDispatch(started));
+		// then
+		res.andExpect(status().isOk())
+				.andExpect(content().contentType(MediaType.APPLICATION_NDJSON))
+				.andExpect(content().string(containsString(
+						"{\"username\":\"user\",\"repositories\":[{\"name\":\"repo\",\"owner\":{\"login\":\"user\"},\"branches\":[{\"name\":\"main\",\"lastCommit\":{\"sha\":\"sha of commit\"}}]}]}\n")))
+				.andExpect(content().string(containsString(
+						"{\"username\":\"missing\",\"error\":{\"status\":404,\"message\":\"Not found\"}}\n")));
+	}
+	
+	@Test
+	void tooLargeBatchIsRejectedTest() throws Exception {
+		// when
+		ResultActions res = mockMvc.perform(post("/api/batch")
+				.contentType(MediaType.APPLICATION_JSON)
+				.accept(MediaType.APPLICATION_NDJSON, MediaType.APPLICATION_JSON)
+				.content("[\"a\", \"b\", \"c\", \"d\"]"));
+		// then
+		res.andExpect(status().is(400))
+				.andExpect(content().contentType(MediaType.APPLICATION_JSON))
+				.andExpect(jsonPath("$.status").value("400"));
+		Mockito.verifyNoInteractions(apiService);
+	}
+}
@@ -0,0 +1,77 @@
+package pl.majchrzw.repoapi;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import pl.majchrzw.repoapi.configuration.RateLimitInterceptor;
+import pl.majchrzw.repoapi.model.OwnerDto;
+import pl.majchrzw.repoapi.model.RepositoryDto;
+import pl.majchrzw.repoapi.service.CacheRefresher;
+import pl.majchrzw.repoapi.service.GithubApiService;
+import pl.majchrzw.repoapi.service.HotKeySketch;
+import pl.majchrzw.repoapi.service.NegativeLookupCache;
+import pl.majchrzw.repoapi.service.RepositoryCacheService;
+
+import java.time.Duration;
+import java.util.List;
+
+public class CacheRefresherTests {
+	
+	private final GithubApiService apiService = Mockito.mock(GithubApiService.class);
+	private final List<RepositoryDto> repos = List.of(new RepositoryDto("repo", new OwnerDto("user"), false, List.of()));
+	private final NegativeLookupCache negativeLookupCache = new NegativeLookupCache(Duration.ofMinutes(1), 100, 1000, Duration.ofHours(1));
+	private final RateLimitInterceptor rateLimitInterceptor = new RateLimitInterceptor("", new String[0], 0, Duration.ofSeconds(1));
+	
+	@Test
+	void mostRequestedKeysAreHottestTest() {
+		// given
+		var sketch = new HotKeySketch(1024, 8);
+		// when
+		for (int i = 0; i < 100; i++) {
+			sketch.record("user-" + i);
+			sketch.record("hot");
+			if (i % 2 == 0) {
+				sketch.record("warm");
+			}
+		}
+		// then
+		Assertions.assertEquals(List.of("hot", "warm"), sketch.hottest(2));
+		Assertions.assertTrue(sketch.estimate("hot") >= 100);
+	}
+	
+	@Test
+	void hotUserIsRefreshedBeforeExpiryTest() throws InterruptedException {
+		// given
+		var cache = new RepositoryCacheService(apiService, 10, Duration.ofMinutes(1), negativeLookupCache, Duration.ZERO, false);
+		var refresher = new CacheRefresher(cache, rateLimitInterceptor, Duration.ZERO, Duration.ofMinutes(2), 1, 1, 0);
+		Mockito.when(apiService.getRepositoriesAndBranchesOfUser(Mockito.anyString())).thenReturn(repos);
+		cache.getRepositoriesAndBranchesOfUser("hot");
+		cache.getRepositoriesAndBranchesOfUser("hot");
+		cache.getRepositoriesAndBranchesOfUser("cold");
+		// when
+		refresher.refreshHotUsers();
+		for (int i = 0; i < 100 && refresher.stats().runs() == 0; i++) {
+			Thread.sleep(10);
+		}
+		refresher.destroy();
+		// then
+		Assertions.assertEquals(1, refresher.stats().runs());
+		Mockito.verify(apiService, Mockito.times(2)).getRepositoriesAndBranchesOfUser("hot");
+		Mockito.verify(apiService, Mockito.times(1)).getRepositoriesAndBranchesOfUser("cold");
+	}
+	
+	@Test
+	void refreshIsSkippedWithoutQuotaTest() {
+		// given
+		var cache = new RepositoryCacheService(apiService, 10, Duration.ofMinutes(1), negativeLookupCache, Duration.ZERO, false);
+		var refresher = new CacheRefresher(cache, rateLimitInterceptor, Duration.ZERO, Duration.ofMinutes(2), 1, 1, Long.MAX_VALUE);
+		Mockito.when(apiService.getRepositoriesAndBranchesOfUser(Mockito.anyString())).thenReturn(repos);
+		cache.getRepositoriesAndBranchesOfUser("hot");
+		// when
+		refresher.refreshHotUsers();
+		refresher.destroy();
+		// then
+		Assertions.assertEquals(1, refresher.stats().skipped());
+		Mockito.verify(apiService, Mockito.times(1)).getRepositoriesAndBranchesOfUser("hot");
+	}
+}
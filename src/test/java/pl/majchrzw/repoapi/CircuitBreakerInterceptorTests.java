@@ -0,0 +1,132 @@
+package pl.majchrzw.repoapi;
+
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.client.RestClient;
+import pl.majchrzw.repoapi.configuration.CircuitBreakerInterceptor;
+import pl.majchrzw.repoapi.exception.ExternalApiErrorException;
+import pl.majchrzw.repoapi.exception.RateLimitExceededException;
+
+import java.io.IOException;
+import java.time.Duration;
+
+public class CircuitBreakerInterceptorTests {
+	
+	private MockWebServer webServer;
+	private volatile int status;
+	private CircuitBreakerInterceptor interceptor;
+	private RestClient client;
+	
+	@BeforeEach
+	void beforeEach() throws IOException {
+		webServer = new MockWebServer();
+		webServer.setDispatcher(new Dispatcher() {
+			@Override
+			public MockResponse dispatch(RecordedRequest request) {
+				return new MockResponse().setResponseCode(status).setBody("[]");
+			}
+		});
+		webServer.start();
+		interceptor = new CircuitBreakerInterceptor(10, 4, 0.5, Duration.ofMillis(300), 2);
+		client = RestClient.builder()
+				.baseUrl("http://localhost:" + webServer.getPort())
+				.requestInterceptor(interceptor)
+				.build();
+	}
+	
+	@AfterEach
+	void afterEach() throws IOException {
+		webServer.shutdown();
+	}
+	
+	@Test
+	void serverErrorsOpenCircuitTest() {
+		// given
+		status = 500;
+		// when
+		for (int i = 0; i < 4; i++) {
+			Assertions.assertEquals(500, call());
+		}
+		// then
+		Assertions.assertEquals(CircuitBreakerInterceptor.State.OPEN, interceptor.state());
+		Assertions.assertThrows(ExternalApiErrorException.class, this::call);
+		Assertions.assertEquals(4, webServer.getRequestCount());
+	}
+	
+	@Test
+	void clientErrorsDoNotOpenCircuitTest() {
+		// given
+		status = 404;
+		// when
+		for (int i = 0; i < 10; i++) {
+			call();
+		}
+		// then
+		Assertions.assertEquals(CircuitBreakerInterceptor.State.CLOSED, interceptor.state());
+		Assertions.assertEquals(10, webServer.getRequestCount());
+	}
+	
+	@Test
+	void exhaustedQuotaDoesNotOpenCircuitTest() {
+		// given
+		var limited = RestClient.builder()
+				.baseUrl("http://localhost:" + webServer.getPort())
+				.requestInterceptor(interceptor)
+				.requestInterceptor((request, body, execution) -> {
+					throw new RateLimitExceededException("Cannot realize request due to github api rate limit, try later.");
+				})
+				.build();
+		// when
+		for (int i = 0; i < 10; i++) {
+			Assertions.assertThrows(RateLimitExceededException.class,
+					() -> limited.get().uri("/repos/octocat/hello/branches").retrieve().toBodilessEntity());
+		}
+		// then
+		Assertions.assertEquals(CircuitBreakerInterceptor.State.CLOSED, interceptor.state());
+		Assertions.assertEquals(0, webServer.getRequestCount());
+	}
+	
+	@Test
+	void successfulProbesCloseCircuitTest() throws InterruptedException {
+		// given
+		status = 500;
+		for (int i = 0; i < 4; i++) {
+			call();
+		}
+		status = 200;
+		Thread.sleep(400);
+		// when
+		call();
+		Assertions.assertEquals(CircuitBreakerInterceptor.State.HALF_OPEN, interceptor.state());
+		call();
+		// then
+		Assertions.assertEquals(CircuitBreakerInterceptor.State.CLOSED, interceptor.state());
+		Assertions.assertEquals(200, call());
+	}
+	
+	@Test
+	void failedProbeOpensCircuitAgainTest() throws InterruptedException {
+		// given
+		status = 500;
+		for (int i = 0; i < 4; i++) {
+			call();
+		}
+		Thread.sleep(400);
+		// when
+		call();
+		// then
+		Assertions.assertEquals(CircuitBreakerInterceptor.State.OPEN, interceptor.state());
+		Assertions.assertThrows(ExternalApiErrorException.class, this::call);
+		Assertions.assertEquals(5, webServer.getRequestCount());
+	}
+	
+	private int call() {
+		return client.get().uri("/repos/octocat/hello/branches").exchange((request, response) -> response.getStatusCode().value());
+	}
+}
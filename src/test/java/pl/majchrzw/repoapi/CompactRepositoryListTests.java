@@ -0,0 +1,80 @@
+package pl.majchrzw.repoapi;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import pl.majchrzw.repoapi.model.BranchDto;
+import pl.majchrzw.repoapi.model.CommitDto;
+import pl.majchrzw.repoapi.model.CompactRepositoryList;
+import pl.majchrzw.repoapi.model.OwnerDto;
+import pl.majchrzw.repoapi.model.RepositoryDto;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.stream.IntStream;
+
+public class CompactRepositoryListTests {
+	
+	private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+	
+	@Test
+	void compactListEqualsSourceListTest() throws Exception {
+		// given
+		List<RepositoryDto> repositories = IntStream.range(0, 20)
+				.mapToObj(repo -> new RepositoryDto("repo-" + repo, new OwnerDto(new String("octocat")), repo % 3 == 0,
+						IntStream.range(0, repo % 4)
+								.mapToObj(branch -> new BranchDto(branch == 0 ? "main" : "feature-" + branch,
+										new CommitDto("%040x".formatted(repo * 1000L + branch))))
+								.toList(),
+						null, Instant.parse("2024-05-01T10:15:30Z").plusSeconds(repo)))
+				.toList();
+		// when
+		var compact = CompactRepositoryList.of(repositories);
+		// then
+		Assertions.assertEquals(repositories, compact);
+		Assertions.assertEquals(repositories.hashCode(), compact.hashCode());
+		Assertions.assertEquals(objectMapper.writeValueAsString(repositories), objectMapper.writeValueAsString(compact));
+		Assertions.assertEquals(RepositoryDto.etag(repositories), RepositoryDto.etag(compact));
+		Assertions.assertSame(compact, CompactRepositoryList.of(compact));
+	}
+	
+	@Test
+	void unusualValuesAreKeptAsTheyAreTest() {
+		// given
+		List<RepositoryDto> repositories = List.of(
+				new RepositoryDto("no branches", null, false, null, false, null),
+				new RepositoryDto("empty", new OwnerDto("user"), false, List.of(), true, Instant.parse("2024-05-01T10:15:30.123456789Z")),
+				new RepositoryDto("odd commits", new OwnerDto("user"), true, List.of(
+						new BranchDto("uppercase", new CommitDto("C5B97D5AE6C19D5C5DF71A34C7FBEEDA2479CCBC")),
+						new BranchDto("short", new CommitDto("sha of commit")),
+						new BranchDto("no sha", new CommitDto(null)),
+						new BranchDto("no commit", null),
+						new BranchDto(null, new CommitDto("c5b97d5ae6c19d5c5df71a34c7fbeeda2479ccbc"))
+				))
+		);
+		// when
+		var compact = CompactRepositoryList.of(repositories);
+		// then
+		Assertions.assertEquals(repositories, compact);
+		Assertions.assertEquals(3, compact.size());
+		Assertions.assertThrows(IndexOutOfBoundsException.class, () -> compact.get(3));
+		Assertions.assertThrows(UnsupportedOperationException.class, () -> compact.add(repositories.getFirst()));
+	}
+	
+	@Test
+	void repeatedValuesAreSharedTest() {
+		// given
+		List<RepositoryDto> repositories = IntStream.range(0, 3)
+				.mapToObj(repo -> new RepositoryDto("repo-" + repo, new OwnerDto(new String("octocat")), false, List.of(
+						new BranchDto(new String("master"), new CommitDto("%040x".formatted(repo))),
+						new BranchDto(new String("feature"), new CommitDto("%040x".formatted(repo))))))
+				.toList();
+		// when
+		var compact = CompactRepositoryList.of(repositories);
+		// then
+		Assertions.assertSame(compact.get(0).owner(), compact.get(2).owner());
+		Assertions.assertSame(compact.get(0).branches().get(0).name(), compact.get(2).branches().get(0).name());
+		Assertions.assertSame(compact.get(0).branches().get(1).name(), compact.get(2).branches().get(1).name());
+	}
+}
@@ -0,0 +1,158 @@
+package pl.majchrzw.repoapi;
+
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.client.RestClient;
+import pl.majchrzw.repoapi.configuration.ConditionalRequestInterceptor;
+import pl.majchrzw.repoapi.configuration.PersistentResponseStore;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+
+public class ConditionalRequestInterceptorTests {
+	
+	private MockWebServer webServer;
+	private ConditionalRequestInterceptor interceptor;
+	private RestClient restClient;
+	
+	@BeforeEach
+	void beforeEach() throws IOException {
+		webServer = new MockWebServer();
+		webServer.setDispatcher(new EtagDispatcher());
+		webServer.start();
+		interceptor = new ConditionalRequestInterceptor(2, 1024 * 1024, new PersistentResponseStore("", Duration.ofDays(7)));
+		restClient = RestClient.builder()
+				.baseUrl("http://localhost:" + webServer.getPort())
+				.requestInterceptor(interceptor)
+				.build();
+	}
+	
+	@AfterEach
+	void afterEach() throws IOException {
+		webServer.shutdown();
+	}
+	
+	@Test
+	void notModifiedResponseIsServedFromStoreTest() throws InterruptedException {
+		// when
+		String first = get("/a");
+		String second = get("/a");
+		// then
+		Assertions.assertEquals("[\"/a\"]", first);
+		Assertions.assertEquals(first, second);
+		Assertions.assertNull(webServer.takeRequest().getHeader(HttpHeaders.IF_NONE_MATCH));
+		Assertions.assertEquals("\"etag-/a\"", webServer.takeRequest().getHeader(HttpHeaders.IF_NONE_MATCH));
+		var stats = interceptor.stats();
+		Assertions.assertEquals(1, stats.misses());
+		Assertions.assertEquals(1, stats.hits());
+		Assertions.assertEquals(1, stats.notModified());
+	}
+	
+	@Test
+	void storedHeadersAreKeptOnNotModifiedTest() {
+		// when
+		get("/a");
+		ResponseEntity<String> second = restClient.get().uri("/a").retrieve().toEntity(String.class);
+		// then
+		Assertions.assertEquals(200, second.getStatusCode().value());
+		Assertions.assertEquals("\"etag-/a\"", second.getHeaders().getETag());
+		Assertions.assertEquals("<http://localhost/a?page=2>; rel=\"last\"", second.getHeaders().getFirst(HttpHeaders.LINK));
+	}
+	
+	@Test
+	void responseWithoutValidatorsIsNotStoredTest() throws InterruptedException {
+		// when
+		get("/no-etag");
+		get("/no-etag");
+		// then
+		webServer.takeRequest();
+		Assertions.assertNull(webServer.takeRequest().getHeader(HttpHeaders.IF_NONE_MATCH));
+		Assertions.assertEquals(0, interceptor.stats().entries());
+	}
+	
+	@Test
+	void leastRecentlyUsedEntryIsEvictedTest() throws InterruptedException {
+		// when
+		get("/a");
+		get("/b");
+		get("/a");
+		get("/c");
+		get("/b");
+		// then
+		for (int i = 0; i < 4; i++) {
+			webServer.takeRequest();
+		}
+		Assertions.assertNull(webServer.takeRequest().getHeader(HttpHeaders.IF_NONE_MATCH));
+		Assertions.assertEquals(2, interceptor.stats().entries());
+		Assertions.assertEquals(1, interceptor.stats().notModified());
+	}
+	
+	@Test
+	void persistedResponseIsRevalidatedAfterRestartTest(@TempDir Path directory) throws Exception {
+		// given
+		String path = directory.resolve("responses.bin").toString();
+		var store = new PersistentResponseStore(path, Duration.ofDays(7));
+		var client = client(new ConditionalRequestInterceptor(10, 1024 * 1024, store));
+		client.get().uri("/a").retrieve().body(String.class);
+		store.destroy();
+		// when
+		var restarted = new PersistentResponseStore(path, Duration.ofDays(7));
+		restarted.awaitLoaded(Duration.ofSeconds(5));
+		ResponseEntity<String> response = client(new ConditionalRequestInterceptor(10, 1024 * 1024, restarted))
+				.get().uri("/a").retrieve().toEntity(String.class);
+		restarted.destroy();
+		// then
+		webServer.takeRequest();
+		Assertions.assertEquals("\"etag-/a\"", webServer.takeRequest().getHeader(HttpHeaders.IF_NONE_MATCH));
+		Assertions.assertEquals("[\"/a\"]", response.getBody());
+		Assertions.assertEquals("<http://localhost/a?page=2>; rel=\"last\"", response.getHeaders().getFirst(HttpHeaders.LINK));
+	}
+	
+	private RestClient client(ConditionalRequestInterceptor interceptor) {
+		return RestClient.builder()
+				.baseUrl("http://localhost:" + webServer.getPort())
+				.requestInterceptor(interceptor)
+				.build();
+	}
+	
+	private String get(String path) {
+		return restClient.get().uri(path).retrieve().body(String.class);
+	}
+	
+	private static class EtagDispatcher extends Dispatcher {
+		
+		@Override
+		public MockResponse dispatch(RecordedRequest request) {
+			String path = request.getRequestUrl().encodedPath();
+			String etag = "\"etag-" + path + "\"";
+			if (path.equals("/no-etag")) {
+				return new MockResponse()
+						.setResponseCode(200)
+						.addHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+						.setBody("[]");
+			}
+			if (etag.equals(request.getHeader(HttpHeaders.IF_NONE_MATCH))) {
+				return new MockResponse()
+						.setResponseCode(304)
+						.addHeader(HttpHeaders.ETAG, etag);
+			}
+			return new MockResponse()
+					.setResponseCode(200)
+					.addHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+					.addHeader(HttpHeaders.ETAG, etag)
+					.addHeader(HttpHeaders.LINK, "<http://localhost" + path + "?page=2>; rel=\"last\"")
+					.setBody("[\"" + path + "\"]");
+		}
+	}
+}
@@ -0,0 +1,96 @@
+package pl.majchrzw.repoapi;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.web.servlet.MockMvc;
+import pl.majchrzw.repoapi.controller.MainController;
+import pl.majchrzw.repoapi.model.BranchDto;
+import pl.majchrzw.repoapi.model.CommitDto;
+import pl.majchrzw.repoapi.model.OwnerDto;
+import pl.majchrzw.repoapi.model.RepositoryDto;
+import pl.majchrzw.repoapi.model.RepositoryQuery;
+import pl.majchrzw.repoapi.service.GithubApiService;
+import pl.majchrzw.repoapi.service.NegativeLookupCache;
+import pl.majchrzw.repoapi.service.RepositoryCacheService;
+import pl.majchrzw.repoapi.service.RequestDeadline;
+import pl.majchrzw.repoapi.service.SerializedResponseCache;
+
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@WebMvcTest(controllers = MainController.class)
+@Import({RepositoryCacheService.class, NegativeLookupCache.class, RequestDeadline.class, SerializedResponseCache.class})
+public class ConditionalResponseTests {
+	
+	@MockBean
+	private GithubApiService apiService;
+	
+	@Autowired
+	private MockMvc mockMvc;
+	@Autowired
+	private SerializedResponseCache serializedResponseCache;
+	
+	@Test
+	void unchangedResultIsAnsweredWithNotModifiedTest() throws Exception {
+		// given
+		Mockito.when(apiService.getRepositoriesAndBranchesOfUser("poller")).thenReturn(repositories("poller", "a"));
+		var first = mockMvc.perform(get("/api/poller"))
+				.andExpect(status().isOk())
+				.andExpect(header().exists(HttpHeaders.ETAG))
+				.andReturn().getResponse();
+		var serializations = serializedResponseCache.stats();
+		// when
+		var second = mockMvc.perform(get("/api/poller").header(HttpHeaders.IF_NONE_MATCH, first.getHeader(HttpHeaders.ETAG)))
+				.andExpect(status().isNotModified())
+				.andExpect(header().string(HttpHeaders.ETAG, first.getHeader(HttpHeaders.ETAG)))
+				.andReturn().getResponse();
+		// then
+		Assertions.assertTrue(first.getContentAsByteArray().length > 1000);
+		Assertions.assertEquals(0, second.getContentAsByteArray().length);
+		// neither serialized again nor looked up in serialized responses
+		Assertions.assertEquals(serializations, serializedResponseCache.stats());
+	}
+	
+	@Test
+	void changedResultIsSentWithNewEtagTest() throws Exception {
+		// given
+		Mockito.when(apiService.getRepositoriesOfUser(Mockito.eq("changing"), Mockito.any(RepositoryQuery.class)))
+				.thenReturn(repositories("changing", "a"))
+				.thenReturn(repositories("changing", "b"));
+		String etag = mockMvc.perform(get("/api/changing?limit=50"))
+				.andExpect(status().isOk())
+				.andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+		// when
+		var response = mockMvc.perform(get("/api/changing?limit=50").header(HttpHeaders.IF_NONE_MATCH, etag))
+				.andExpect(status().isOk())
+				.andReturn().getResponse();
+		// then
+		Assertions.assertNotEquals(etag, response.getHeader(HttpHeaders.ETAG));
+		Assertions.assertTrue(response.getContentAsByteArray().length > 1000);
+	}
+	
+	@Test
+	void etagDependsOnContentOnlyTest() {
+		// then
+		Assertions.assertEquals(RepositoryDto.etag(repositories("user", "a")), RepositoryDto.etag(repositories("user", "a")));
+		Assertions.assertNotEquals(RepositoryDto.etag(repositories("user", "a")), RepositoryDto.etag(repositories("user", "b")));
+		Assertions.assertNotEquals(RepositoryDto.etag(repositories("user", "a")), RepositoryDto.etag(repositories("user", "a").subList(0, 49)));
+		Assertions.assertTrue(RepositoryDto.etag(List.of()).matches("\"[0-9a-f]{16}\""));
+	}
+	
+	private static List<RepositoryDto> repositories(String owner, String shaSuffix) {
+		return IntStream.range(0, 50)
+				.mapToObj(repo -> new RepositoryDto("repo-" + repo, new OwnerDto(owner), false,
+						List.of(new BranchDto("main", new CommitDto("%039x".formatted(repo) + shaSuffix)))))
+				.toList();
+	}
+}
@@ -0,0 +1,224 @@
+package pl.majchrzw.repoapi;
+
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import pl.majchrzw.repoapi.exception.ExternalApiErrorException;
+import pl.majchrzw.repoapi.model.BatchResult;
+import pl.majchrzw.repoapi.model.RepositoryDto;
+import pl.majchrzw.repoapi.service.BatchLookupService;
+import pl.majchrzw.repoapi.service.GithubApiService;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+@SpringBootTest(properties = {"gh-fanout-per-request-limit=4", "gh-fanout-global-limit=64", "gh-hedge-enabled=false"})
+public class GithubApiServiceConcurrencyTests {
+	
+	private static final int CAP = 4;
+	private static final long DELAY_MS = 200;
+	
+	static MockWebServer webServer;
+	static final AtomicInteger inFlight = new AtomicInteger();
+	static final AtomicInteger maxInFlight = new AtomicInteger();
+	
+	@Autowired
+	private GithubApiService githubApiService;
+	@Autowired
+	private BatchLookupService batchLookupService;
+	
+	@DynamicPropertySource
+	static void properties(DynamicPropertyRegistry r) {
+		r.add("gh-api-url", () -> "http://localhost:" + webServer.getPort());
+	}
+	
+	@BeforeAll
+	static void beforeAll() throws IOException {
+		webServer = new MockWebServer();
+		webServer.start();
+	}
+	
+	@AfterAll
+	static void afterAll() throws IOException {
+		webServer.shutdown();
+	}
+	
+	@AfterEach
+	void afterEach() {
+		maxInFlight.set(0);
+	}
+	
+	@Test
+	void branchCallsAreBoundedByPerRequestCapTest() {
+		// given
+		int repoCount = 16;
+		webServer.setDispatcher(new DelayedDispatcher(repoCount, null));
+		// when
+		long start = System.nanoTime();
+		List<RepositoryDto> res = githubApiService.getRepositoriesAndBranchesOfUser("octocat");
+		long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+		// then
+		Assertions.assertEquals(repoCount, res.size());
+		Assertions.assertTrue(maxInFlight.get() > 1, "branch calls should overlap");
+		Assertions.assertTrue(maxInFlight.get() <= CAP, "in-flight branch calls exceeded cap: " + maxInFlight.get());
+		Assertions.assertTrue(elapsedMs >= (repoCount / CAP) * DELAY_MS, "elapsed " + elapsedMs + "ms is below cap bound");
+		Assertions.assertTrue(elapsedMs < repoCount * DELAY_MS, "elapsed " + elapsedMs + "ms is not better than sequential");
+	}
+	
+	@Test
+	void wallClockScalesWithCapNotRepoCountTest() {
+		// given
+		int repoCount = 40;
+		webServer.setDispatcher(new DelayedDispatcher(repoCount, null));
+		// when
+		long start = System.nanoTime();
+		List<RepositoryDto> res = githubApiService.getRepositoriesAndBranchesOfUser("octocat");
+		long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+		// then
+		long waves = (repoCount + CAP - 1) / CAP;
+		Assertions.assertEquals(repoCount, res.size());
+		Assertions.assertTrue(elapsedMs >= waves * DELAY_MS, "elapsed " + elapsedMs + "ms is below cap bound");
+		Assertions.assertTrue(elapsedMs < repoCount * DELAY_MS / 2, "elapsed " + elapsedMs + "ms grows with repo count");
+	}
+	
+	@Test
+	void resultKeepsRepositoryOrderTest() {
+		// given
+		int repoCount = 12;
+		webServer.setDispatcher(new DelayedDispatcher(repoCount, null));
+		// when
+		List<RepositoryDto> res = githubApiService.getRepositoriesAndBranchesOfUser("octocat");
+		// then
+		for (int i = 0; i < repoCount; i++) {
+			Assertions.assertEquals("repo-" + i, res.get(i).name());
+			Assertions.assertEquals("branch-of-repo-" + i, res.get(i).branches().getFirst().name());
+		}
+	}
+	
+	@Test
+	void failedBranchCallFailsWholeRequestTest() {
+		// given
+		webServer.setDispatcher(new DelayedDispatcher(8, "repo-5"));
+		// then
+		Assertions.assertThrows(ExternalApiErrorException.class, () -> githubApiService.getRepositoriesAndBranchesOfUser("octocat"));
+	}
+	
+	@Test
+	void furtherPagesOfListingsAreBoundedByPerRequestCapTest() {
+		// given
+		webServer.setDispatcher(new PagedDispatcher(3, 4));
+		// when
+		List<RepositoryDto> res = githubApiService.getRepositoriesAndBranchesOfUser("octocat");
+		// then
+		Assertions.assertEquals(12, res.size());
+		Assertions.assertTrue(res.stream().allMatch(repo -> repo.branches().size() == 3));
+		Assertions.assertTrue(maxInFlight.get() > 1, "calls should overlap");
+		Assertions.assertTrue(maxInFlight.get() <= CAP, "in-flight calls exceeded cap: " + maxInFlight.get());
+	}
+	
+	@Test
+	void branchCallsOfBatchAreBoundedByOneRequestCapTest() {
+		// given
+		webServer.setDispatcher(new DelayedDispatcher(8, null));
+		var usernames = List.of("batch-a", "batch-b", "batch-c", "batch-d");
+		// when
+		List<BatchResult> res = batchLookupService.lookup(usernames);
+		// then
+		Assertions.assertTrue(res.stream().allMatch(result -> result.error() == null && result.repositories().size() == 8));
+		Assertions.assertTrue(maxInFlight.get() > 1, "branch calls should overlap");
+		Assertions.assertTrue(maxInFlight.get() <= CAP, "in-flight branch calls of batch exceeded cap: " + maxInFlight.get());
+	}
+	
+	private static MockResponse json(String body) {
+		return new MockResponse()
+				.setResponseCode(200)
+				.addHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+				.setBody(body);
+	}
+	
+	/**
+	 * Serves {@code pages} pages of repositories and of branches of every repository, all of them counted as in flight.
+	 */
+	private static class PagedDispatcher extends Dispatcher {
+		
+		private final int pages;
+		private final int reposPerPage;
+		
+		PagedDispatcher(int pages, int reposPerPage) {
+			this.pages = pages;
+			this.reposPerPage = reposPerPage;
+		}
+		
+		@Override
+		public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+			var url = request.getRequestUrl();
+			int page = Integer.parseInt(url.queryParameter("page"));
+			int current = inFlight.incrementAndGet();
+			maxInFlight.accumulateAndGet(current, Math::max);
+			try {
+				Thread.sleep(50);
+			} finally {
+				inFlight.decrementAndGet();
+			}
+			String body;
+			if (url.encodedPath().equals("/users/octocat/repos")) {
+				body = IntStream.range((page - 1) * reposPerPage, page * reposPerPage)
+						.mapToObj(i -> "{\"name\":\"repo-" + i + "\",\"owner\":{\"login\":\"octocat\"},\"fork\":false}")
+						.collect(Collectors.joining(",", "[", "]"));
+			} else {
+				body = "[{\"name\":\"branch-" + page + "\",\"commit\":{\"sha\":\"c5b97d5ae6c19d5c5df71a34c7fbeeda2479ccbc\"}}]";
+			}
+			String last = url.newBuilder().setQueryParameter("page", String.valueOf(pages)).build().toString();
+			return json(body).addHeader(HttpHeaders.LINK, "<" + last + ">; rel=\"last\"");
+		}
+	}
+	
+	private static class DelayedDispatcher extends Dispatcher {
+		
+		private final int repoCount;
+		private final String failingRepo;
+		
+		DelayedDispatcher(int repoCount, String failingRepo) {
+			this.repoCount = repoCount;
+			this.failingRepo = failingRepo;
+		}
+		
+		@Override
+		public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+			String path = request.getRequestUrl().encodedPath();
+			if (path.startsWith("/users/")) {
+				String owner = path.split("/")[2];
+				return json(IntStream.range(0, repoCount)
+						.mapToObj(i -> "{\"name\":\"repo-" + i + "\",\"owner\":{\"login\":\"" + owner + "\"},\"fork\":false}")
+						.collect(Collectors.joining(",", "[", "]")));
+			}
+			String repo = path.split("/")[3];
+			int current = inFlight.incrementAndGet();
+			maxInFlight.accumulateAndGet(current, Math::max);
+			try {
+				Thread.sleep(DELAY_MS);
+			} finally {
+				inFlight.decrementAndGet();
+			}
+			if (repo.equals(failingRepo)) {
+				return new MockResponse().setResponseCode(403);
+			}
+			return json("[{\"name\":\"branch-of-" + repo + "\",\"commit\":{\"sha\":\"c5b97d5ae6c19d5c5df71a34c7fbeeda2479ccbc\"}}]");
+		}
+	}
+}
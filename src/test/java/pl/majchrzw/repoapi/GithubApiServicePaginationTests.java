@@ -0,0 +1,199 @@
+package pl.majchrzw.repoapi;
+
+import okhttp3.HttpUrl;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import pl.majchrzw.repoapi.model.RepositoryDto;
+import pl.majchrzw.repoapi.model.RepositoryQuery;
+import pl.majchrzw.repoapi.model.RepositorySort;
+import pl.majchrzw.repoapi.service.GithubApiService;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.IntFunction;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+@SpringBootTest(properties = {"gh-page-size=100", "gh-max-pages=3", "gh-hedge-enabled=false"})
+public class GithubApiServicePaginationTests {
+	
+	static MockWebServer webServer;
+	static final Queue<HttpUrl> requestedUrls = new ConcurrentLinkedQueue<>();
+	// username -> repository count, "repo-0" of each user has 150 branches, other repositories have one
+	static final Map<String, Integer> users = Map.of(
+			"single", 20,
+			"paged", 250,
+			"huge", 480
+	);
+	
+	@Autowired
+	private GithubApiService githubApiService;
+	
+	@DynamicPropertySource
+	static void properties(DynamicPropertyRegistry r) {
+		r.add("gh-api-url", () -> "http://localhost:" + webServer.getPort());
+	}
+	
+	@BeforeAll
+	static void beforeAll() throws IOException {
+		webServer = new MockWebServer();
+		webServer.setDispatcher(new PaginatingDispatcher());
+		webServer.start();
+	}
+	
+	@AfterAll
+	static void afterAll() throws IOException {
+		webServer.shutdown();
+	}
+	
+	@Test
+	void perPageIsSentWithEveryRequestTest() {
+		// given
+		requestedUrls.clear();
+		// when
+		List<RepositoryDto> res = githubApiService.getRepositoriesAndBranchesOfUser("single");
+		// then
+		Assertions.assertEquals(20, res.size());
+		// one repositories page, two branch pages for repo-0 and one for each of 19 other repositories
+		Assertions.assertEquals(22, requestedUrls.size());
+		Assertions.assertTrue(requestedUrls.stream().allMatch(url -> "100".equals(url.queryParameter("per_page"))));
+	}
+	
+	@Test
+	void allRepositoryPagesAreMergedInOrderTest() {
+		// given
+		requestedUrls.clear();
+		// when
+		List<RepositoryDto> res = githubApiService.getRepositoriesAndBranchesOfUser("paged");
+		// then
+		Assertions.assertEquals(250, res.size());
+		for (int i = 0; i < res.size(); i++) {
+			Assertions.assertEquals("repo-" + i, res.get(i).name());
+		}
+		Assertions.assertEquals(3, countRequests("/users/paged/repos"));
+	}
+	
+	@Test
+	void allBranchPagesAreMergedInOrderTest() {
+		// given
+		requestedUrls.clear();
+		// when
+		List<RepositoryDto> res = githubApiService.getRepositoriesAndBranchesOfUser("single");
+		// then
+		var branches = res.getFirst().branches();
+		Assertions.assertEquals(150, branches.size());
+		for (int i = 0; i < branches.size(); i++) {
+			Assertions.assertEquals("branch-" + i, branches.get(i).name());
+		}
+		Assertions.assertEquals(2, countRequests("/repos/single/repo-0/branches"));
+	}
+	
+	@Test
+	void pagesAboveLimitAreNotFetchedTest() {
+		// given
+		requestedUrls.clear();
+		// when
+		List<RepositoryDto> res = githubApiService.getRepositoriesAndBranchesOfUser("huge");
+		// then
+		Assertions.assertEquals(300, res.size());
+		Assertions.assertEquals(3, countRequests("/users/huge/repos"));
+	}
+	
+	@Test
+	void repositoriesWithoutBranchesNeedNoBranchCallsTest() {
+		// given
+		requestedUrls.clear();
+		// when
+		List<RepositoryDto> res = githubApiService.getRepositoriesOfUser("paged", new RepositoryQuery(false, null, null, null));
+		// then
+		Assertions.assertEquals(250, res.size());
+		Assertions.assertNull(res.getFirst().branches());
+		Assertions.assertEquals(3, requestedUrls.size());
+	}
+	
+	@Test
+	void limitStopsPaginationAndBranchCallsTest() {
+		// given
+		requestedUrls.clear();
+		// when
+		List<RepositoryDto> res = githubApiService.getRepositoriesOfUser("paged", new RepositoryQuery(true, 10, RepositorySort.PUSHED, null));
+		// then
+		Assertions.assertEquals(10, res.size());
+		Assertions.assertEquals("repo-9", res.getLast().name());
+		// one repositories page instead of three, branches of ten repositories instead of 250
+		Assertions.assertEquals(1, countRequests("/users/paged/repos"));
+		Assertions.assertEquals(12, requestedUrls.size());
+		HttpUrl listing = requestedUrls.stream().filter(url -> url.encodedPath().equals("/users/paged/repos")).findFirst().orElseThrow();
+		Assertions.assertEquals("pushed", listing.queryParameter("sort"));
+		Assertions.assertEquals("desc", listing.queryParameter("direction"));
+	}
+	
+	@Test
+	void branchesAreFetchedOnlyForRepositoriesMatchingPrefixTest() {
+		// given
+		requestedUrls.clear();
+		// when
+		List<RepositoryDto> res = githubApiService.getRepositoriesOfUser("single", new RepositoryQuery(true, null, null, "REPO-1"));
+		// then
+		Assertions.assertEquals(11, res.size());
+		Assertions.assertTrue(res.stream().allMatch(repo -> repo.name().startsWith("repo-1")));
+		// repositories page and one branch call of each of repo-1, repo-10 ... repo-19
+		Assertions.assertEquals(12, requestedUrls.size());
+	}
+	
+	private long countRequests(String path) {
+		return requestedUrls.stream().filter(url -> url.encodedPath().equals(path)).count();
+	}
+	
+	private static class PaginatingDispatcher extends Dispatcher {
+		
+		@Override
+		public MockResponse dispatch(RecordedRequest request) {
+			HttpUrl url = request.getRequestUrl();
+			requestedUrls.add(url);
+			String[] segments = url.encodedPath().split("/");
+			int perPage = Integer.parseInt(url.queryParameter("per_page"));
+			int page = Integer.parseInt(url.queryParameter("page"));
+			if (segments[1].equals("users")) {
+				String user = segments[2];
+				return page(url, users.get(user), perPage, page,
+						i -> "{\"name\":\"repo-" + i + "\",\"owner\":{\"login\":\"" + user + "\"},\"fork\":false}");
+			}
+			int branchCount = segments[3].equals("repo-0") ? 150 : 1;
+			return page(url, branchCount, perPage, page,
+					i -> "{\"name\":\"branch-" + i + "\",\"commit\":{\"sha\":\"c5b97d5ae6c19d5c5df71a34c7fbeeda2479ccbc\"}}");
+		}
+		
+		private MockResponse page(HttpUrl url, int total, int perPage, int page, IntFunction<String> item) {
+			int lastPage = Math.max(1, (total + perPage - 1) / perPage);
+			String body = IntStream.range((page - 1) * perPage, Math.min(total, page * perPage))
+					.mapToObj(item)
+					.collect(Collectors.joining(",", "[", "]"));
+			var response = new MockResponse()
+					.setResponseCode(200)
+					.addHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+					.setBody(body);
+			if (lastPage > 1) {
+				String next = url.newBuilder().setQueryParameter("page", String.valueOf(Math.min(page + 1, lastPage))).build().toString();
+				String last = url.newBuilder().setQueryParameter("page", String.valueOf(lastPage)).build().toString();
+				response.addHeader(HttpHeaders.LINK, "<" + next + ">; rel=\"next\", <" + last + ">; rel=\"last\"");
+			}
+			return response;
+		}
+	}
+}
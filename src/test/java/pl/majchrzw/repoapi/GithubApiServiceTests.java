@@ -1,8 +1,12 @@
 package pl.majchrzw.repoapi;
 
+import okhttp3.mockwebserver.Dispatcher;
 import okhttp3.mockwebserver.MockResponse;
 import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.QueueDispatcher;
+import okhttp3.mockwebserver.RecordedRequest;
 import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
@@ -68,6 +72,11 @@ public class GithubApiServiceTests {
 		webServer.shutdown();
 	}
 	
+	@AfterEach
+	void afterEach() {
+		webServer.setDispatcher(new QueueDispatcher());
+	}
+	
 	@Test
 	void emptyRepoResponseTest() {
 		// given
@@ -171,20 +180,21 @@ public class GithubApiServiceTests {
 				  }
 				]
 				""";
-		webServer.enqueue(new MockResponse()
-				.setResponseCode(200)
-				.addHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
-				.setBody(
-						twoRepos
-				));
-		webServer.enqueue(new MockResponse()
-				.setResponseCode(200)
-				.addHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
-				.setBody(oneBranch));
-		webServer.enqueue(new MockResponse()
-				.setResponseCode(200)
-				.addHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
-				.setBody(emptyCollection));
+		// branch calls run concurrently, so responses are matched by path instead of queue order
+		webServer.setDispatcher(new Dispatcher() {
+			@Override
+			public MockResponse dispatch(RecordedRequest request) {
+				String body = switch (request.getRequestUrl().encodedPath()) {
+					case "/users/octocat/repos" -> twoRepos;
+					case "/repos/octocat/Hello-World/branches" -> oneBranch;
+					default -> emptyCollection;
+				};
+				return new MockResponse()
+						.setResponseCode(200)
+						.addHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+						.setBody(body);
+			}
+		});
 		int initialCount = webServer.getRequestCount();
 		// when
 		List<RepositoryDto> res = githubApiService.getRepositoriesAndBranchesOfUser("octocat");
@@ -0,0 +1,104 @@
+package pl.majchrzw.repoapi;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import pl.majchrzw.repoapi.model.BranchDto;
+import pl.majchrzw.repoapi.model.RepositoryDto;
+import pl.majchrzw.repoapi.service.GithubJsonReader;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+public class GithubJsonReaderTests {
+	
+	@Test
+	void unusedFieldsAndForksAreSkippedTest() throws IOException {
+		// given
+		String body = """
+				[
+				  {
+				    "id": 1296269,
+				    "name": "Hello-World",
+				    "owner": {"login": "octocat", "id": 1, "name": "not a login", "plan": {"name": "pro"}},
+				    "license": {"key": "mit", "name": "MIT License"},
+				    "topics": ["name", {"name": "nested"}],
+				    "fork": false,
+				    "pushed_at": "2024-06-20T08:01:45Z",
+				    "mirror_url": null
+				  },
+				  {"name": "forked", "owner": {"login": "octocat"}, "fork": true, "parent": {"name": "original", "fork": false}},
+				  {"fork": false, "owner": null, "name": "no-owner", "pushed_at": null}
+				]
+				""";
+		List<RepositoryDto> repositories = new ArrayList<>();
+		// when
+		int forks = GithubJsonReader.readNonForkRepositories(stream(body), repositories::add);
+		// then
+		Assertions.assertEquals(1, forks);
+		Assertions.assertEquals(2, repositories.size());
+		Assertions.assertEquals("Hello-World", repositories.getFirst().name());
+		Assertions.assertEquals("octocat", repositories.getFirst().owner().login());
+		Assertions.assertFalse(repositories.getFirst().fork());
+		Assertions.assertNull(repositories.getFirst().branches());
+		Assertions.assertEquals(Instant.parse("2024-06-20T08:01:45Z"), repositories.getFirst().pushedAt());
+		Assertions.assertEquals("no-owner", repositories.get(1).name());
+		Assertions.assertNull(repositories.get(1).owner());
+		Assertions.assertNull(repositories.get(1).pushedAt());
+	}
+	
+	@Test
+	void malformedPushedAtIsReadAsUnknownTest() throws IOException {
+		// given
+		String body = """
+				[
+				  {"name": "garbled", "owner": {"login": "octocat"}, "fork": false, "pushed_at": "yesterday"},
+				  {"name": "nested", "owner": {"login": "octocat"}, "fork": false, "pushed_at": {"date": "2024-06-20"}}
+				]
+				""";
+		List<RepositoryDto> repositories = new ArrayList<>();
+		// when
+		GithubJsonReader.readNonForkRepositories(stream(body), repositories::add);
+		// then
+		Assertions.assertEquals(2, repositories.size());
+		Assertions.assertNull(repositories.getFirst().pushedAt());
+		Assertions.assertNull(repositories.get(1).pushedAt());
+		Assertions.assertEquals("nested", repositories.get(1).name());
+	}
+	
+	@Test
+	void branchesAreReadTest() throws IOException {
+		// given
+		String body = """
+				[
+				  {"name": "main", "commit": {"sha": "c5b97d5ae6c19d5c5df71a34c7fbeeda2479ccbc", "url": "https://api.github.com"}, "protected": false},
+				  {"protection": {"enabled": true, "required_status_checks": {"contexts": []}}, "name": "dev", "commit": null}
+				]
+				""";
+		List<BranchDto> branches = new ArrayList<>();
+		// when
+		GithubJsonReader.readBranches(stream(body), branches::add);
+		// then
+		Assertions.assertEquals(2, branches.size());
+		Assertions.assertEquals("main", branches.getFirst().name());
+		Assertions.assertEquals("c5b97d5ae6c19d5c5df71a34c7fbeeda2479ccbc", branches.getFirst().lastCommit().sha());
+		Assertions.assertEquals("dev", branches.get(1).name());
+		Assertions.assertNull(branches.get(1).lastCommit());
+	}
+	
+	@Test
+	void nonArrayBodyIsRejectedTest() {
+		Assertions.assertThrows(IOException.class, () -> GithubJsonReader.readBranches(stream(""), branch -> {
+		}));
+		Assertions.assertThrows(IOException.class, () -> GithubJsonReader.readBranches(stream("{\"message\": \"Not Found\"}"), branch -> {
+		}));
+	}
+	
+	private InputStream stream(String body) {
+		return new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8));
+	}
+}
@@ -0,0 +1,214 @@
+package pl.majchrzw.repoapi;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import okhttp3.HttpUrl;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.web.client.RestClient;
+import pl.majchrzw.repoapi.exception.UserNotFoundException;
+import pl.majchrzw.repoapi.model.RepositoryDto;
+import pl.majchrzw.repoapi.service.FanOutExecutor;
+import pl.majchrzw.repoapi.service.GithubApiService;
+import pl.majchrzw.repoapi.service.GithubMetrics;
+import pl.majchrzw.repoapi.service.GraphQlGithubApiService;
+import pl.majchrzw.repoapi.service.RequestHedger;
+import pl.majchrzw.repoapi.service.RestGithubApiService;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+@SpringBootTest(properties = "gh-backend=graphql")
+public class GraphQlGithubApiServiceTests {
+	
+	static MockWebServer webServer;
+	static final AtomicInteger graphQlRequests = new AtomicInteger();
+	static final ObjectMapper mapper = new ObjectMapper();
+	
+	@Autowired
+	private GithubApiService githubApiService;
+	@Autowired
+	private RestClient restClient;
+	@Autowired
+	private FanOutExecutor fanOutExecutor;
+	@Autowired
+	private GithubMetrics githubMetrics;
+	@Autowired
+	private RequestHedger requestHedger;
+	@Autowired
+	private ObjectMapper objectMapper;
+	
+	@DynamicPropertySource
+	static void properties(DynamicPropertyRegistry r) {
+		r.add("gh-api-url", () -> "http://localhost:" + webServer.getPort());
+	}
+	
+	@BeforeAll
+	static void beforeAll() throws IOException {
+		webServer = new MockWebServer();
+		webServer.setDispatcher(new StubGithubDispatcher());
+		webServer.start();
+	}
+	
+	@AfterAll
+	static void afterAll() throws IOException {
+		webServer.shutdown();
+	}
+	
+	@Test
+	void graphQlBackendIsSelectedTest() {
+		Assertions.assertInstanceOf(GraphQlGithubApiService.class, githubApiService);
+	}
+	
+	@Test
+	void outputIsIdenticalToRestBackendTest() throws Exception {
+		// given
+		var restService = new RestGithubApiService(restClient, fanOutExecutor, githubMetrics, requestHedger, 100, 10);
+		// when
+		List<RepositoryDto> rest = restService.getRepositoriesAndBranchesOfUser("octocat");
+		graphQlRequests.set(0);
+		List<RepositoryDto> graphQl = githubApiService.getRepositoriesAndBranchesOfUser("octocat");
+		// then
+		Assertions.assertEquals(117, graphQl.size());
+		Assertions.assertArrayEquals(objectMapper.writeValueAsBytes(rest), objectMapper.writeValueAsBytes(graphQl));
+		// two pages of repositories and one extra page of branches for repo-000
+		Assertions.assertEquals(3, graphQlRequests.get());
+	}
+	
+	@Test
+	void noUserFoundTest() {
+		Assertions.assertThrows(UserNotFoundException.class, () -> githubApiService.getRepositoriesAndBranchesOfUser("not_existing"));
+	}
+	
+	static boolean isFork(int repo) {
+		return repo % 10 == 9;
+	}
+	
+	static int branchCount(int repo) {
+		return repo == 0 ? 130 : repo % 3;
+	}
+	
+	static String repoName(int repo) {
+		return "repo-%03d".formatted(repo);
+	}
+	
+	static Map<String, Object> branch(int repo, int branch, String commitField, String shaField) {
+		return Map.of(
+				"name", "branch-%03d".formatted(branch),
+				commitField, Map.of(shaField, "%040x".formatted(repo * 1000 + branch))
+		);
+	}
+	
+	private static class StubGithubDispatcher extends Dispatcher {
+		
+		private static final int REPO_COUNT = 130;
+		private static final int PAGE_SIZE = 100;
+		
+		@Override
+		public MockResponse dispatch(RecordedRequest request) {
+			try {
+				HttpUrl url = request.getRequestUrl();
+				if (url.encodedPath().equals("/graphql")) {
+					graphQlRequests.incrementAndGet();
+					return graphQl(mapper.readTree(request.getBody().readUtf8()).get("variables"));
+				}
+				return rest(url);
+			} catch (IOException e) {
+				return new MockResponse().setResponseCode(500);
+			}
+		}
+		
+		private MockResponse rest(HttpUrl url) throws IOException {
+			String[] segments = url.encodedPath().split("/");
+			int page = Integer.parseInt(url.queryParameter("page"));
+			if (segments[1].equals("users")) {
+				if (!segments[2].equals("octocat")) {
+					return new MockResponse().setResponseCode(404);
+				}
+				List<Object> repos = new ArrayList<>();
+				for (int i = (page - 1) * PAGE_SIZE; i < Math.min(REPO_COUNT, page * PAGE_SIZE); i++) {
+					repos.add(Map.of("name", repoName(i), "owner", Map.of("login", "octocat"), "fork", isFork(i)));
+				}
+				return json(repos, url, (REPO_COUNT + PAGE_SIZE - 1) / PAGE_SIZE);
+			}
+			int repo = Integer.parseInt(segments[3].substring("repo-".length()));
+			int count = branchCount(repo);
+			List<Object> branches = IntStream.range((page - 1) * PAGE_SIZE, Math.min(count, page * PAGE_SIZE))
+					.mapToObj(i -> (Object) branch(repo, i, "commit", "sha"))
+					.toList();
+			return json(branches, url, Math.max(1, (count + PAGE_SIZE - 1) / PAGE_SIZE));
+		}
+		
+		private MockResponse graphQl(JsonNode variables) throws IOException {
+			if (variables.has("login")) {
+				if (!variables.get("login").asText().equals("octocat")) {
+					return json(Map.of(
+							"data", mapOf("repositoryOwner", null),
+							"errors", List.of(Map.of("type", "NOT_FOUND", "message", "Could not resolve to a RepositoryOwner"))
+					), null, 1);
+				}
+				List<Integer> nonForks = IntStream.range(0, REPO_COUNT).filter(i -> !isFork(i)).boxed().toList();
+				int from = variables.path("cursor").isTextual() ? Integer.parseInt(variables.get("cursor").asText()) : 0;
+				int to = Math.min(nonForks.size(), from + PAGE_SIZE);
+				List<Object> nodes = new ArrayList<>();
+				for (Integer repo : nonForks.subList(from, to)) {
+					nodes.add(Map.of("name", repoName(repo), "owner", Map.of("login", "octocat"), "refs", refs(repo, 0)));
+				}
+				return json(Map.of("data", Map.of("repositoryOwner", Map.of("repositories", connection(nodes, to, to < nonForks.size())))), null, 1);
+			}
+			int repo = Integer.parseInt(variables.get("name").asText().substring("repo-".length()));
+			int from = Integer.parseInt(variables.get("refsCursor").asText());
+			return json(Map.of("data", Map.of("repository", Map.of("refs", refs(repo, from)))), null, 1);
+		}
+		
+		private Map<String, Object> refs(int repo, int from) {
+			int to = Math.min(branchCount(repo), from + PAGE_SIZE);
+			List<Object> nodes = IntStream.range(from, to)
+					.mapToObj(i -> (Object) branch(repo, i, "target", "oid"))
+					.toList();
+			return connection(nodes, to, to < branchCount(repo));
+		}
+		
+		private Map<String, Object> connection(List<Object> nodes, int endCursor, boolean hasNextPage) {
+			return Map.of(
+					"pageInfo", Map.of("hasNextPage", hasNextPage, "endCursor", String.valueOf(endCursor)),
+					"nodes", nodes
+			);
+		}
+		
+		private Map<String, Object> mapOf(String key, Object value) {
+			Map<String, Object> map = new LinkedHashMap<>();
+			map.put(key, value);
+			return map;
+		}
+		
+		private MockResponse json(Object body, HttpUrl url, int lastPage) throws IOException {
+			var response = new MockResponse()
+					.setResponseCode(200)
+					.addHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+					.setBody(mapper.writeValueAsString(body));
+			if (lastPage > 1) {
+				String last = url.newBuilder().setQueryParameter("page", String.valueOf(lastPage)).build().toString();
+				response.addHeader(HttpHeaders.LINK, "<" + last + ">; rel=\"last\"");
+			}
+			return response;
+		}
+	}
+}
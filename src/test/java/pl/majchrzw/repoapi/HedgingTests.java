@@ -0,0 +1,135 @@
+package pl.majchrzw.repoapi;
+
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.web.client.RestClient;
+import pl.majchrzw.repoapi.model.RepositoryDto;
+import pl.majchrzw.repoapi.service.FanOutExecutor;
+import pl.majchrzw.repoapi.service.GithubApiService;
+import pl.majchrzw.repoapi.service.GithubMetrics;
+import pl.majchrzw.repoapi.service.RequestHedger;
+import pl.majchrzw.repoapi.service.RestGithubApiService;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+@SpringBootTest(properties = {"gh-hedge-enabled=true", "gh-hedge-budget=0.5", "gh-hedge-min-delay=50ms"})
+public class HedgingTests {
+	
+	private static final int REPO_COUNT = 40;
+	private static final long SLOW_MS = 1000;
+	
+	static MockWebServer webServer;
+	static final Map<String, Integer> attempts = new ConcurrentHashMap<>();
+	static final Map<String, Long> delays = new ConcurrentHashMap<>();
+	static Set<String> slowRepos;
+	
+	@Autowired
+	private GithubApiService githubApiService;
+	@Autowired
+	private RequestHedger requestHedger;
+	@Autowired
+	private RestClient restClient;
+	@Autowired
+	private FanOutExecutor fanOutExecutor;
+	@Autowired
+	private GithubMetrics githubMetrics;
+	
+	@DynamicPropertySource
+	static void properties(DynamicPropertyRegistry r) {
+		r.add("gh-api-url", () -> "http://localhost:" + webServer.getPort());
+	}
+	
+	@BeforeAll
+	static void beforeAll() throws IOException {
+		// first attempt of every branch call is delayed by 5-20ms, except a few which take a second
+		var random = new Random(42);
+		List<String> repos = new ArrayList<>(IntStream.range(0, REPO_COUNT).mapToObj(i -> "repo-" + i).toList());
+		repos.forEach(repo -> delays.put(repo, 5L + random.nextInt(16)));
+		Collections.shuffle(repos, random);
+		slowRepos = Set.copyOf(repos.subList(0, 4));
+		slowRepos.forEach(repo -> delays.put(repo, SLOW_MS));
+		webServer = new MockWebServer();
+		webServer.setDispatcher(new RandomDelayDispatcher());
+		webServer.start();
+	}
+	
+	@AfterAll
+	static void afterAll() throws IOException {
+		webServer.shutdown();
+	}
+	
+	@Test
+	void hedgingCutsTailLatencyTest() {
+		// given
+		var unhedgedService = new RestGithubApiService(restClient, fanOutExecutor, githubMetrics,
+				new RequestHedger(false, 0.95, Duration.ofMillis(50), 0.5), 100, 10);
+		// latencies of upstream are learned first
+		githubApiService.getRepositoriesAndBranchesOfUser("warmup");
+		attempts.clear();
+		// when
+		long start = System.nanoTime();
+		List<RepositoryDto> hedged = githubApiService.getRepositoriesAndBranchesOfUser("octocat");
+		long hedgedMs = (System.nanoTime() - start) / 1_000_000;
+		var hedgedAttempts = Map.copyOf(attempts);
+		attempts.clear();
+		start = System.nanoTime();
+		List<RepositoryDto> unhedged = unhedgedService.getRepositoriesAndBranchesOfUser("octocat");
+		long unhedgedMs = (System.nanoTime() - start) / 1_000_000;
+		// then
+		Assertions.assertEquals(unhedged, hedged);
+		Assertions.assertEquals(REPO_COUNT, hedged.size());
+		// every slow call has been duplicated within the budget and the duplicate has answered first
+		slowRepos.forEach(repo -> Assertions.assertEquals(2, hedgedAttempts.get("octocat/" + repo), repo));
+		Assertions.assertTrue(hedgedAttempts.values().stream().mapToInt(Integer::intValue).sum() <= REPO_COUNT * 3 / 2);
+		Assertions.assertTrue(requestHedger.stats().hedgeWins() >= slowRepos.size());
+		Assertions.assertTrue(unhedgedMs >= SLOW_MS, "unhedged lookup took " + unhedgedMs + "ms");
+		Assertions.assertTrue(hedgedMs < unhedgedMs, "hedged lookup took " + hedgedMs + "ms, unhedged " + unhedgedMs + "ms");
+	}
+	
+	private static class RandomDelayDispatcher extends Dispatcher {
+		
+		@Override
+		public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+			String[] segments = request.getRequestUrl().encodedPath().split("/");
+			if (segments[1].equals("users")) {
+				return json(IntStream.range(0, REPO_COUNT)
+						.mapToObj(i -> "{\"name\":\"repo-" + i + "\",\"owner\":{\"login\":\"" + segments[2] + "\"},\"fork\":false}")
+						.collect(Collectors.joining(",", "[", "]")));
+			}
+			String repo = segments[3];
+			int attempt = attempts.merge(segments[2] + "/" + repo, 1, Integer::sum);
+			// warm-up user and retries are always fast
+			Thread.sleep(attempt == 1 && segments[2].equals("octocat") ? delays.get(repo) : 5);
+			return json("[{\"name\":\"branch-of-" + repo + "\",\"commit\":{\"sha\":\"c5b97d5ae6c19d5c5df71a34c7fbeeda2479ccbc\"}}]");
+		}
+		
+		private MockResponse json(String body) {
+			return new MockResponse()
+					.setResponseCode(200)
+					.addHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+					.setBody(body);
+		}
+	}
+}
@@ -0,0 +1,157 @@
+package pl.majchrzw.repoapi;
+
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.GzipSink;
+import okio.Okio;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.web.client.RestClient;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Compares the tuned GitHub transport with the previous default (untuned JDK client) against a local stub.
+ * Run with {@code mvn test -Dtest=HttpTransportBenchmarkTests -Dbenchmark=true}.
+ */
+@SpringBootTest(properties = "gh-http-max-connections=16")
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+public class HttpTransportBenchmarkTests {
+	
+	private static final int REQUESTS = 2000;
+	private static final int CONCURRENCY = 32;
+	private static final long DELAY_MS = 5;
+	
+	static MockWebServer webServer;
+	static final AtomicInteger connections = new AtomicInteger();
+	static final AtomicLong bytesSent = new AtomicLong();
+	static final String body = IntStream.range(0, 100)
+			.mapToObj(i -> "{\"name\":\"branch-" + i + "\",\"commit\":{\"sha\":\"c5b97d5ae6c19d5c5df71a34c7fbeeda2479ccbc\",\"url\":\"https://api.github.com/repos/octocat/Hello-World/commits/c5b97d5ae6c19d5c5df71a34c7fbeeda2479ccbc\"},\"protected\":false}")
+			.collect(Collectors.joining(",", "[", "]"));
+	
+	private final Logger log = LoggerFactory.getLogger(HttpTransportBenchmarkTests.class);
+	
+	@Autowired
+	private RestClient restClient;
+	
+	@DynamicPropertySource
+	static void properties(DynamicPropertyRegistry r) {
+		r.add("gh-api-url", () -> "http://localhost:" + webServer.getPort());
+	}
+	
+	@BeforeAll
+	static void beforeAll() throws IOException {
+		webServer = new MockWebServer();
+		webServer.setDispatcher(new CompressingDispatcher());
+		webServer.start();
+	}
+	
+	@AfterAll
+	static void afterAll() throws IOException {
+		webServer.shutdown();
+	}
+	
+	@Test
+	void tunedTransportBenchmark() throws Exception {
+		var previousDefault = RestClient.builder()
+				.baseUrl("http://localhost:" + webServer.getPort())
+				.requestFactory(new JdkClientHttpRequestFactory())
+				.build();
+		
+		var baseline = run("previous default", previousDefault);
+		var tuned = run("tuned", restClient);
+		
+		Assertions.assertTrue(tuned.connections() <= 16, "tuned transport opened more connections than its pool");
+		Assertions.assertTrue(tuned.bytes() < baseline.bytes(), "tuned transport did not receive compressed bodies");
+	}
+	
+	private Result run(String name, RestClient client) throws Exception {
+		// warm-up, not measured
+		load(client, REQUESTS / 10);
+		connections.set(0);
+		bytesSent.set(0);
+		List<Long> latencies = load(client, REQUESTS);
+		Collections.sort(latencies);
+		var result = new Result(connections.get(), bytesSent.get(),
+				latencies.get(latencies.size() / 2), latencies.get((int) (latencies.size() * 0.99)));
+		log.info("{} connections opened: {}, bytes received: {}, p50: {}ms, p99: {}ms", name, result.connections(),
+				result.bytes(), "%.2f".formatted(result.p50Nanos() / 1e6), "%.2f".formatted(result.p99Nanos() / 1e6));
+		return result;
+	}
+	
+	private List<Long> load(RestClient client, int requests) throws Exception {
+		List<Long> latencies = Collections.synchronizedList(new ArrayList<>(requests));
+		try (ExecutorService executor = Executors.newFixedThreadPool(CONCURRENCY)) {
+			List<Future<?>> futures = new ArrayList<>(requests);
+			for (int i = 0; i < requests; i++) {
+				int repo = i;
+				futures.add(executor.submit(() -> {
+					long start = System.nanoTime();
+					client.get().uri("/repos/octocat/repo-{repo}/branches", repo).retrieve().body(String.class);
+					latencies.add(System.nanoTime() - start);
+				}));
+			}
+			for (Future<?> future : futures) {
+				future.get(30, TimeUnit.SECONDS);
+			}
+		}
+		return latencies;
+	}
+	
+	record Result(int connections, long bytes, long p50Nanos, long p99Nanos) {
+	}
+	
+	private static class CompressingDispatcher extends Dispatcher {
+		
+		@Override
+		public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+			if (request.getSequenceNumber() == 0) {
+				connections.incrementAndGet();
+			}
+			Thread.sleep(DELAY_MS);
+			var response = new MockResponse()
+					.setResponseCode(200)
+					.addHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE);
+			String acceptEncoding = request.getHeader(HttpHeaders.ACCEPT_ENCODING);
+			if (acceptEncoding != null && acceptEncoding.contains("gzip")) {
+				Buffer compressed = new Buffer();
+				try (BufferedSink sink = Okio.buffer(new GzipSink(compressed))) {
+					sink.writeUtf8(body);
+				} catch (IOException e) {
+					throw new IllegalStateException(e);
+				}
+				bytesSent.addAndGet(compressed.size());
+				return response.addHeader(HttpHeaders.CONTENT_ENCODING, "gzip").setBody(compressed);
+			}
+			bytesSent.addAndGet(body.length());
+			return response.setBody(body);
+		}
+	}
+}
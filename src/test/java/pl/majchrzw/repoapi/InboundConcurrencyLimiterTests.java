@@ -0,0 +1,171 @@
+package pl.majchrzw.repoapi;
+
+import io.micrometer.context.ContextSnapshotFactory;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.web.servlet.MockMvc;
+import pl.majchrzw.repoapi.configuration.InboundConcurrencyLimiter;
+import pl.majchrzw.repoapi.controller.MainController;
+import pl.majchrzw.repoapi.service.GithubApiService;
+import pl.majchrzw.repoapi.service.NegativeLookupCache;
+import pl.majchrzw.repoapi.service.RepositoryCacheService;
+import pl.majchrzw.repoapi.service.RequestDeadline;
+import pl.majchrzw.repoapi.service.SerializedResponseCache;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@WebMvcTest(controllers = MainController.class, properties = {"cache-ttl=0s", "inbound-limit-initial=1", "inbound-limit-min=1",
+		"inbound-limit-retry-after=1500ms"})
+@Import({RepositoryCacheService.class, NegativeLookupCache.class, RequestDeadline.class, SerializedResponseCache.class})
+public class InboundConcurrencyLimiterTests {
+	
+	@MockBean
+	private GithubApiService apiService;
+	
+	@Autowired
+	private MockMvc mockMvc;
+	@Autowired
+	private InboundConcurrencyLimiter limiter;
+	
+	@Test
+	void requestAboveLimitIsRejectedWithRetryAfterTest() throws Exception {
+		// given
+		var release = new CountDownLatch(1);
+		Mockito.when(apiService.getRepositoriesAndBranchesOfUser("slow")).thenAnswer(invocation -> {
+			release.await(5, TimeUnit.SECONDS);
+			return List.of();
+		});
+		var slow = CompletableFuture.runAsync(() -> {
+			try {
+				mockMvc.perform(get("/api/slow")).andExpect(status().isOk());
+			} catch (Exception e) {
+				throw new RuntimeException(e);
+			}
+		});
+		while (limiter.stats().inFlight() == 0) {
+			Thread.sleep(5);
+		}
+		// when
+		var response = mockMvc.perform(get("/api/other"));
+		release.countDown();
+		slow.get(5, TimeUnit.SECONDS);
+		// then
+		response.andExpect(status().isServiceUnavailable())
+				.andExpect(header().string(HttpHeaders.RETRY_AFTER, "2"))
+				.andExpect(jsonPath("$.status").value(503))
+				.andExpect(jsonPath("$.message").value("Too many requests in progress, try later."));
+		Mockito.verify(apiService, Mockito.never()).getRepositoriesAndBranchesOfUser("other");
+		Assertions.assertEquals(0, limiter.stats().inFlight());
+		Assertions.assertTrue(limiter.stats().rejected() >= 1);
+	}
+	
+	@Test
+	void onlyRequestsCallingGithubAreMeasuredTest() throws Exception {
+		// given
+		Mockito.when(apiService.getRepositoriesAndBranchesOfUser("local")).thenReturn(List.of());
+		Mockito.when(apiService.getRepositoriesAndBranchesOfUser("upstream")).thenAnswer(invocation -> {
+			// GitHub called from a fan-out task
+			CompletableFuture.runAsync(ContextSnapshotFactory.builder().build().captureAll()
+					.wrap(InboundConcurrencyLimiter::recordUpstreamCall)).join();
+			return List.of();
+		});
+		long measured = limiter.stats().measured();
+		// when
+		mockMvc.perform(get("/api/local")).andExpect(status().isOk());
+		long afterLocal = limiter.stats().measured();
+		mockMvc.perform(get("/api/upstream")).andExpect(status().isOk());
+		// then
+		Assertions.assertEquals(measured, afterLocal);
+		Assertions.assertEquals(measured + 1, limiter.stats().measured());
+		Assertions.assertEquals(0, limiter.stats().inFlight());
+	}
+	
+	@Test
+	void limitGrowsWhileLatencyIsFlatTest() {
+		// given
+		var limiter = new InboundConcurrencyLimiter(true, 10, 2, 100, 2.0, Duration.ofSeconds(1));
+		// when
+		saturate(limiter, Duration.ofMillis(10), 10);
+		// then
+		Assertions.assertTrue(limiter.limit() > 10, "limit has not grown: " + limiter.limit());
+		Assertions.assertTrue(limiter.limit() <= 100);
+	}
+	
+	@Test
+	void limitShrinksWhenLatencyGrowsTest() {
+		// given
+		var limiter = new InboundConcurrencyLimiter(true, 10, 2, 100, 2.0, Duration.ofSeconds(1));
+		saturate(limiter, Duration.ofMillis(10), 10);
+		int grown = limiter.limit();
+		// when
+		saturate(limiter, Duration.ofMillis(100), 3);
+		// then
+		Assertions.assertTrue(limiter.limit() < grown / 2, "limit has not shrunk: " + grown + " -> " + limiter.limit());
+		Assertions.assertTrue(limiter.limit() >= 2);
+	}
+	
+	@Test
+	void limitIsNotCollapsedByCacheHitsTest() {
+		// given
+		var limiter = new InboundConcurrencyLimiter(true, 10, 2, 100, 2.0, Duration.ofSeconds(1));
+		// when
+		for (int round = 0; round < 20; round++) {
+			int taken = 0;
+			while (limiter.tryAcquire()) {
+				taken++;
+			}
+			for (int i = 0; i < taken; i++) {
+				// every fifth request calls GitHub, the rest is answered from cache
+				if (i % 5 == 0) {
+					limiter.release(Duration.ofMillis(300).toNanos());
+				} else {
+					limiter.release();
+				}
+			}
+		}
+		// then
+		Assertions.assertTrue(limiter.limit() >= 10, "limit has collapsed: " + limiter.limit());
+		Assertions.assertEquals(0, limiter.stats().inFlight());
+	}
+	
+	@Test
+	void limitIsKeptWhileFarFromSaturationTest() {
+		// given
+		var limiter = new InboundConcurrencyLimiter(true, 10, 2, 100, 2.0, Duration.ofSeconds(1));
+		// when
+		for (int i = 0; i < 100; i++) {
+			Assertions.assertTrue(limiter.tryAcquire());
+			limiter.release(Duration.ofMillis(i % 2 == 0 ? 10 : 100).toNanos());
+		}
+		// then
+		Assertions.assertEquals(10, limiter.limit());
+	}
+	
+	/**
+	 * Takes all slots and completes them with given latency, given number of times.
+	 */
+	private static void saturate(InboundConcurrencyLimiter limiter, Duration latency, int rounds) {
+		for (int round = 0; round < rounds; round++) {
+			int taken = 0;
+			while (limiter.tryAcquire()) {
+				taken++;
+			}
+			for (int i = 0; i < taken; i++) {
+				limiter.release(latency.toNanos());
+			}
+		}
+	}
+}
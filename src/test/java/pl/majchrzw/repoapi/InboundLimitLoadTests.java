@@ -0,0 +1,110 @@
+package pl.majchrzw.repoapi;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import pl.majchrzw.repoapi.configuration.InboundConcurrencyLimiter;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Offers more concurrent requests than a simulated backend can serve at once, so that its latency grows with queueing,
+ * and compares latency of served requests with and without {@link InboundConcurrencyLimiter}. A share of requests
+ * may be answered at once without the backend, like cache hits.
+ * Run with {@code mvn test -Dtest=InboundLimitLoadTests -Dbenchmark=true}.
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+public class InboundLimitLoadTests {
+	
+	private static final int CLIENTS = 64;
+	private static final int BACKEND_CAPACITY = 8;
+	private static final long SERVICE_MS = 5;
+	private static final Duration RUN_TIME = Duration.ofSeconds(10);
+	
+	private final Logger log = LoggerFactory.getLogger(InboundLimitLoadTests.class);
+	
+	@Test
+	void limitBoundsTailLatencyTest() throws Exception {
+		// when
+		Result unlimited = run(null, 0);
+		Result limited = run(new InboundConcurrencyLimiter(true, 20, 4, 200, 2.0, Duration.ofSeconds(1)), 0);
+		// then
+		log.info("unlimited: {}", unlimited);
+		log.info("limited:   {}", limited);
+		Assertions.assertTrue(limited.p99Millis() < unlimited.p99Millis(), "p99 has not been bounded");
+		// shedding must not cost throughput, the backend is kept busy
+		Assertions.assertTrue(limited.served() > unlimited.served() * 0.8);
+	}
+	
+	@Test
+	void limitKeepsServingMixOfCacheHitsAndMissesTest() throws Exception {
+		// when
+		Result unlimited = run(null, 0.8);
+		Result limited = run(new InboundConcurrencyLimiter(true, 20, 4, 200, 2.0, Duration.ofSeconds(1)), 0.8);
+		// then
+		log.info("unlimited, 80% hits: {}", unlimited);
+		log.info("limited, 80% hits:   {}", limited);
+		Assertions.assertTrue(limited.finalLimit() > BACKEND_CAPACITY, "limit has collapsed to " + limited.finalLimit());
+		Assertions.assertTrue(limited.served() > unlimited.served() * 0.8);
+	}
+	
+	private static Result run(InboundConcurrencyLimiter limiter, double hitShare) throws InterruptedException {
+		var backend = new Semaphore(BACKEND_CAPACITY, true);
+		List<Long> latencies = Collections.synchronizedList(new ArrayList<>());
+		var rejected = new AtomicInteger();
+		long end = System.nanoTime() + RUN_TIME.toNanos();
+		ExecutorService clients = Executors.newFixedThreadPool(CLIENTS);
+		for (int i = 0; i < CLIENTS; i++) {
+			clients.submit(() -> {
+				while (System.nanoTime() < end) {
+					long start = System.nanoTime();
+					if (limiter != null && !limiter.tryAcquire()) {
+						rejected.incrementAndGet();
+						// scaled down Retry-After
+						Thread.sleep(SERVICE_MS);
+						continue;
+					}
+					boolean hit = ThreadLocalRandom.current().nextDouble() < hitShare;
+					if (!hit) {
+						backend.acquire();
+						try {
+							Thread.sleep(SERVICE_MS);
+						} finally {
+							backend.release();
+						}
+					}
+					long latency = System.nanoTime() - start;
+					if (limiter != null && hit) {
+						limiter.release();
+					} else if (limiter != null) {
+						limiter.release(latency);
+					}
+					latencies.add(latency);
+				}
+				return null;
+			});
+		}
+		clients.shutdown();
+		clients.awaitTermination(RUN_TIME.toSeconds() + 30, TimeUnit.SECONDS);
+		List<Long> sorted = new ArrayList<>(latencies);
+		Collections.sort(sorted);
+		return new Result(sorted.size(), rejected.get(),
+				sorted.get(sorted.size() / 2) / 1e6,
+				sorted.get((int) (sorted.size() * 0.99)) / 1e6,
+				limiter == null ? CLIENTS : limiter.limit());
+	}
+	
+	private record Result(int served, int rejected, double p50Millis, double p99Millis, int finalLimit) {
+	}
+}
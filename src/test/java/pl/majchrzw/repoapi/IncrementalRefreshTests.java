@@ -0,0 +1,137 @@
+package pl.majchrzw.repoapi;
+
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import pl.majchrzw.repoapi.model.RepositoryDto;
+import pl.majchrzw.repoapi.service.RepositoryCacheService;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.stream.Collectors;
+
+@SpringBootTest(properties = {"cache-ttl=200ms", "cache-incremental-refresh=true", "cache-stale-while-revalidate=0s", "gh-hedge-enabled=false"})
+public class IncrementalRefreshTests {
+	
+	private static final int REPO_COUNT = 100;
+	private static final Instant PUSHED_AT = Instant.parse("2024-05-01T10:00:00Z");
+	
+	static MockWebServer webServer;
+	// pushed_at of repositories by user and repository name
+	static final Map<String, Map<String, Instant>> pushes = new ConcurrentHashMap<>();
+	
+	@Autowired
+	private RepositoryCacheService repositoryCacheService;
+	
+	@DynamicPropertySource
+	static void properties(DynamicPropertyRegistry r) {
+		r.add("gh-api-url", () -> "http://localhost:" + webServer.getPort());
+	}
+	
+	@BeforeAll
+	static void beforeAll() throws IOException {
+		webServer = new MockWebServer();
+		webServer.setDispatcher(new PushesDispatcher());
+		webServer.start();
+	}
+	
+	@AfterAll
+	static void afterAll() throws IOException {
+		webServer.shutdown();
+	}
+	
+	@Test
+	void unchangedUserIsRefreshedWithSingleCallTest() throws InterruptedException {
+		// given
+		user("unchanged");
+		int initialCount = webServer.getRequestCount();
+		List<RepositoryDto> first = repositoryCacheService.getRepositoriesAndBranchesOfUser("unchanged");
+		Assertions.assertEquals(REPO_COUNT + 1, webServer.getRequestCount() - initialCount);
+		Thread.sleep(300);
+		// when
+		int refreshCount = webServer.getRequestCount();
+		List<RepositoryDto> refreshed = repositoryCacheService.getRepositoriesAndBranchesOfUser("unchanged");
+		// then
+		Assertions.assertEquals(1, webServer.getRequestCount() - refreshCount);
+		Assertions.assertNotSame(first, refreshed);
+		Assertions.assertEquals(first, refreshed);
+	}
+	
+	@Test
+	void onlyNewAndPushedRepositoriesAreFetchedTest() throws InterruptedException {
+		// given
+		var repos = user("changing");
+		repositoryCacheService.getRepositoriesAndBranchesOfUser("changing");
+		repos.put(name(7), PUSHED_AT.plusSeconds(60));
+		repos.remove(name(9));
+		repos.put("repo-new", PUSHED_AT.plusSeconds(120));
+		Thread.sleep(300);
+		// when
+		int refreshCount = webServer.getRequestCount();
+		List<RepositoryDto> refreshed = repositoryCacheService.getRepositoriesAndBranchesOfUser("changing");
+		// then
+		Assertions.assertEquals(3, webServer.getRequestCount() - refreshCount);
+		Assertions.assertEquals(REPO_COUNT, refreshed.size());
+		Assertions.assertTrue(refreshed.stream().noneMatch(repo -> repo.name().equals(name(9))));
+		Map<String, String> branches = refreshed.stream()
+				.collect(Collectors.toMap(RepositoryDto::name, repo -> repo.branches().getFirst().name()));
+		Assertions.assertEquals(branchName(name(7), PUSHED_AT.plusSeconds(60)), branches.get(name(7)));
+		Assertions.assertEquals(branchName("repo-new", PUSHED_AT.plusSeconds(120)), branches.get("repo-new"));
+		Assertions.assertEquals(branchName(name(8), PUSHED_AT), branches.get(name(8)));
+	}
+	
+	private static Map<String, Instant> user(String username) {
+		Map<String, Instant> repos = new ConcurrentSkipListMap<>();
+		for (int i = 0; i < REPO_COUNT; i++) {
+			repos.put(name(i), PUSHED_AT);
+		}
+		pushes.put(username, repos);
+		return repos;
+	}
+	
+	private static String name(int repo) {
+		return "repo-%03d".formatted(repo);
+	}
+	
+	static String branchName(String repo, Instant pushedAt) {
+		return "main-of-" + repo + "-" + pushedAt.getEpochSecond();
+	}
+	
+	private static class PushesDispatcher extends Dispatcher {
+		
+		@Override
+		public MockResponse dispatch(RecordedRequest request) {
+			String[] segments = request.getRequestUrl().encodedPath().split("/");
+			Map<String, Instant> repos = pushes.get(segments[2]);
+			if (segments[1].equals("users")) {
+				return json(repos.entrySet().stream()
+						.map(repo -> "{\"name\":\"" + repo.getKey() + "\",\"owner\":{\"login\":\"" + segments[2] + "\"},\"fork\":false,\"pushed_at\":\"" + repo.getValue() + "\"}")
+						.collect(Collectors.joining(",", "[", "]")));
+			}
+			String repo = segments[3];
+			return json("[{\"name\":\"" + branchName(repo, repos.get(repo)) + "\",\"commit\":{\"sha\":\"c5b97d5ae6c19d5c5df71a34c7fbeeda2479ccbc\"}}]");
+		}
+		
+		private MockResponse json(String body) {
+			return new MockResponse()
+					.setResponseCode(200)
+					.addHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+					.setBody(body);
+		}
+	}
+}
@@ -5,26 +5,38 @@ import org.mockito.Mockito;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.ResultActions;
+import pl.majchrzw.repoapi.controller.MainController;
 import pl.majchrzw.repoapi.exception.ExternalApiErrorException;
 import pl.majchrzw.repoapi.exception.UserNotFoundException;
 import pl.majchrzw.repoapi.model.BranchDto;
 import pl.majchrzw.repoapi.model.CommitDto;
 import pl.majchrzw.repoapi.model.OwnerDto;
 import pl.majchrzw.repoapi.model.RepositoryDto;
+import pl.majchrzw.repoapi.model.RepositoryQuery;
+import pl.majchrzw.repoapi.model.RepositorySort;
 import pl.majchrzw.repoapi.service.GithubApiService;
+import pl.majchrzw.repoapi.service.NegativeLookupCache;
+import pl.majchrzw.repoapi.service.RepositoryCacheService;
+import pl.majchrzw.repoapi.service.RequestDeadline;
+import pl.majchrzw.repoapi.service.SerializedResponseCache;
 
 import java.util.Collections;
 import java.util.List;
+import java.util.function.Consumer;
 
 import static org.hamcrest.Matchers.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
 
-@WebMvcTest
+@WebMvcTest(controllers = MainController.class, properties = {"cache-ttl=0s", "cache-negative-ttl=0s"})
+@Import({RepositoryCacheService.class, NegativeLookupCache.class, RequestDeadline.class, SerializedResponseCache.class})
 public class MainControllerTests {
 	
 	@MockBean
@@ -57,6 +69,55 @@ public class MainControllerTests {
 				.andExpect(jsonPath("$[1].branches[*].name", containsInAnyOrder("main")));
 	}
 	
+	@Test
+	void testWhenQueryOptionsAreGiven() throws Exception {
+		// given
+		var query = new RepositoryQuery(false, 5, RepositorySort.UPDATED, "api");
+		Mockito.when(apiService.getRepositoriesOfUser("user", query)).thenReturn(List.of(
+				new RepositoryDto("api-client", new OwnerDto("user"), false, null)
+		));
+		// when
+		ResultActions res = mockMvc.perform(get("/api/user?includeBranches=false&limit=5&sort=updated&namePrefix=api"));
+		// then
+		res.andExpect(status().isOk())
+				.andExpect(jsonPath("$[0].name").value("api-client"))
+				.andExpect(jsonPath("$[0].branches").doesNotExist());
+		Mockito.verify(apiService, Mockito.never()).getRepositoriesAndBranchesOfUser(Mockito.anyString());
+	}
+	
+	@Test
+	void testWhenQueryOptionsAreInvalid() throws Exception {
+		mockMvc.perform(get("/api/user?sort=stars"))
+				.andExpect(status().is(400))
+				.andExpect(jsonPath("$.status").value("400"));
+		mockMvc.perform(get("/api/user?limit=0"))
+				.andExpect(status().is(400))
+				.andExpect(jsonPath("$.status").value("400"));
+		mockMvc.perform(get("/api/user").header("X-Request-Deadline", "0"))
+				.andExpect(status().is(400))
+				.andExpect(jsonPath("$.status").value("400"));
+		Mockito.verifyNoInteractions(apiService);
+	}
+	
+	@Test
+	void testWhenBranchesAreIncomplete() throws Exception {
+		// given
+		Mockito.when(apiService.getRepositoriesAndBranchesOfUser("user")).thenReturn(List.of(
+				new RepositoryDto("first repo", new OwnerDto("user"), false, List.of(
+						new BranchDto("main", new CommitDto("sha of commit1"))
+				)),
+				new RepositoryDto("second repo", new OwnerDto("user"), false, null, false, null)
+		));
+		// when
+		ResultActions res = mockMvc.perform(get("/api/user").header("X-Request-Deadline", "500"));
+		// then
+		res.andExpect(status().isOk())
+				.andExpect(header().string("X-Partial-Response", "true"))
+				.andExpect(jsonPath("$[0].branchesComplete").doesNotExist())
+				.andExpect(jsonPath("$[1].branchesComplete").value(false))
+				.andExpect(jsonPath("$[1].branches").doesNotExist());
+	}
+	
 	@Test
 	void testWhenNoUserIsFound() throws Exception {
 		// given
@@ -92,7 +153,8 @@ public class MainControllerTests {
 		// then
 		res.andExpect(status().isOk())
 				.andExpect(content().contentType(MediaType.APPLICATION_JSON))
-				.andExpect(content().string("[]"));
+				.andExpect(content().string("[]"))
+				.andExpect(header().doesNotExist("X-Partial-Response"));
 	}
 	
 	@Test
@@ -114,4 +176,64 @@ public class MainControllerTests {
 				.andExpect(jsonPath("$[*].owner.login", everyItem(equalTo("user"))))
 				.andExpect(jsonPath("$[1].branches[*].name", containsInAnyOrder("main")));
 	}
+	
+	@Test
+	void testStreamWritesOneRepositoryPerLine() throws Exception {
+		// given
+		List<RepositoryDto> repos = List.of(
+				new RepositoryDto("first repo", new OwnerDto("user"), false, null),
+				new RepositoryDto("second repo", new OwnerDto("user"), false, null)
+		);
+		Mockito.when(apiService.getNonForkRepositoriesOfUser("user")).thenReturn(repos);
+		Mockito.doAnswer(invocation -> {
+			Consumer<RepositoryDto> sink = invocation.getArgument(1);
+			sink.accept(new RepositoryDto("second repo", new OwnerDto("user"), false, List.of(
+					new BranchDto("main", new CommitDto("sha of commit1"))
+			)));
+			sink.accept(new RepositoryDto("first repo", new OwnerDto("user"), false, Collections.emptyList()));
+			return null;
+		}).when(apiService).streamBranchesOfRepositories(Mockito.eq(repos), Mockito.any());
+		// when
+		MvcResult started = mockMvc.perform(get("/api/user/stream")).andExpect(request().asyncStarted()).andReturn();
+		ResultActions res = mockMvc.perform(asyncDispatch(started));
+		// then
+		res.andExpect(status().isOk())
+				.andExpect(content().contentType(MediaType.APPLICATION_NDJSON))
+				.andExpect(content().string(
+						"{\"name\":\"second repo\",\"owner\":{\"login\":\"user\"},\"branches\":[{\"name\":\"main\",\"lastCommit\":{\"sha\":\"sha of commit1\"}}]}\n"
+								+ "{\"name\":\"first repo\",\"owner\":{\"login\":\"user\"},\"branches\":[]}\n"));
+	}
+	
+	@Test
+	void testStreamWritesErrorRecordAfterStreamingStarted() throws Exception {
+		// given
+		List<RepositoryDto> repos = List.of(
+				new RepositoryDto("first repo", new OwnerDto("user"), false, null),
+				new RepositoryDto("second repo", new OwnerDto("user"), false, null)
+		);
+		Mockito.when(apiService.getNonForkRepositoriesOfUser("user")).thenReturn(repos);
+		Mockito.doAnswer(invocation -> {
+			Consumer<RepositoryDto> sink = invocation.getArgument(1);
+			sink.accept(new RepositoryDto("first repo", new OwnerDto("user"), false, Collections.emptyList()));
+			throw new ExternalApiErrorException("External api error");
+		}).when(apiService).streamBranchesOfRepositories(Mockito.eq(repos), Mockito.any());
+		// when
+		MvcResult started = mockMvc.perform(get("/api/user/stream")).andExpect(request().asyncStarted()).andReturn();
+		ResultActions res = mockMvc.perform(asyncDispatch(started));
+		// then
+		res.andExpect(status().isOk())
+				.andExpect(content().string(endsWith("{\"error\":{\"status\":500,\"message\":\"External api error\"}}\n")));
+	}
+	
+	@Test
+	void testStreamWhenNoUserIsFound() throws Exception {
+		// given
+		Mockito.when(apiService.getNonForkRepositoriesOfUser("user")).thenThrow(new UserNotFoundException("Not found"));
+		// when
+		ResultActions res = mockMvc.perform(get("/api/user/stream"));
+		// then
+		res.andExpect(status().is(404))
+				.andExpect(content().contentType(MediaType.APPLICATION_JSON))
+				.andExpect(jsonPath("$.status").value("404"));
+	}
 }
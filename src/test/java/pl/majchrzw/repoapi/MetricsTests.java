@@ -0,0 +1,81 @@
+package pl.majchrzw.repoapi;
+
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.io.IOException;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = "cache-ttl=0s")
+@AutoConfigureMockMvc
+@AutoConfigureObservability
+public class MetricsTests {
+	
+	static MockWebServer webServer;
+	
+	@Autowired
+	private MockMvc mockMvc;
+	
+	@DynamicPropertySource
+	static void properties(DynamicPropertyRegistry r) {
+		r.add("gh-api-url", () -> "http://localhost:" + webServer.getPort());
+	}
+	
+	@BeforeAll
+	static void beforeAll() throws IOException {
+		webServer = new MockWebServer();
+		webServer.setDispatcher(new Dispatcher() {
+			@Override
+			public MockResponse dispatch(RecordedRequest request) {
+				String body = request.getPath().startsWith("/users/")
+						? "[{\"name\":\"repo\",\"owner\":{\"login\":\"octocat\"},\"fork\":false},{\"name\":\"forked\",\"owner\":{\"login\":\"octocat\"},\"fork\":true}]"
+						: "[{\"name\":\"main\",\"commit\":{\"sha\":\"c5b97d5ae6c19d5c5df71a34c7fbeeda2479ccbc\"}}]";
+				return new MockResponse()
+						.setResponseCode(200)
+						.addHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+						.setBody(body);
+			}
+		});
+		webServer.start();
+	}
+	
+	@AfterAll
+	static void afterAll() throws IOException {
+		webServer.shutdown();
+	}
+	
+	@Test
+	void requestIsInstrumentedTest() throws Exception {
+		// given
+		mockMvc.perform(get("/api/octocat").accept(MediaType.APPLICATION_JSON))
+				.andExpect(status().isOk());
+		// when
+		String metrics = mockMvc.perform(get("/actuator/prometheus"))
+				.andExpect(status().isOk())
+				.andReturn().getResponse().getContentAsString();
+		// then
+		Assertions.assertTrue(metrics.contains("http_client_requests_seconds_count{") && metrics.contains("uri=\"/users/{owner}/repos?per_page={perPage}&page={page}&sort={sort}&direction={direction}\""), "no upstream call latency");
+		Assertions.assertTrue(metrics.contains("repoapi_github_lookup_seconds_count{backend=\"rest\""), "no lookup timer");
+		Assertions.assertTrue(metrics.contains("repoapi_request_repositories_sum 2.0"), "no repositories summary");
+		Assertions.assertTrue(metrics.contains("repoapi_request_forks_sum 1.0"), "no forks summary");
+		Assertions.assertTrue(metrics.contains("repoapi_request_branch_calls_sum 1.0"), "no branch calls summary");
+		Assertions.assertTrue(metrics.contains("repoapi_serialization_seconds_count{type=\"List<RepositoryDto>\""), "no serialization timer");
+	}
+}
@@ -0,0 +1,107 @@
+package pl.majchrzw.repoapi;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import pl.majchrzw.repoapi.exception.UserNotFoundException;
+import pl.majchrzw.repoapi.model.OwnerDto;
+import pl.majchrzw.repoapi.model.RepositoryDto;
+import pl.majchrzw.repoapi.model.RepositoryQuery;
+import pl.majchrzw.repoapi.service.GithubApiService;
+import pl.majchrzw.repoapi.service.NegativeLookupCache;
+import pl.majchrzw.repoapi.service.RepositoryCacheService;
+import pl.majchrzw.repoapi.service.RotatingBloomFilter;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.IntStream;
+
+public class NegativeLookupCacheTests {
+	
+	private final GithubApiService apiService = Mockito.mock(GithubApiService.class);
+	private final List<RepositoryDto> repos = List.of(new RepositoryDto("repo", new OwnerDto("user"), false, List.of()));
+	
+	@Test
+	void repeatedMissIsAnsweredByFilterAfterRecentEntryExpiresTest() throws InterruptedException {
+		// given
+		var negativeLookupCache = new NegativeLookupCache(Duration.ofMillis(50), 100, 1000, Duration.ofHours(1));
+		var cache = new RepositoryCacheService(apiService, 10, Duration.ofMinutes(1), negativeLookupCache, Duration.ZERO, false);
+		Mockito.when(apiService.getRepositoriesAndBranchesOfUser("ghost")).thenThrow(new UserNotFoundException("Not found"));
+		Mockito.when(apiService.getRepositoriesOfUser(Mockito.eq("ghost"), Mockito.any())).thenThrow(new UserNotFoundException("Not found"));
+		// when
+		Assertions.assertThrows(UserNotFoundException.class, () -> cache.getRepositoriesAndBranchesOfUser("ghost"));
+		Assertions.assertThrows(UserNotFoundException.class, () -> cache.getRepositoriesAndBranchesOfUser("Ghost"));
+		Thread.sleep(100);
+		Assertions.assertThrows(UserNotFoundException.class, () -> cache.getRepositoriesAndBranchesOfUser("ghost"));
+		Assertions.assertThrows(UserNotFoundException.class,
+				() -> cache.getRepositoriesOfUser("ghost", new RepositoryQuery(false, 10, RepositoryQuery.ALL.sort(), null)));
+		// then
+		Mockito.verify(apiService, Mockito.times(1)).getRepositoriesAndBranchesOfUser("ghost");
+		Mockito.verify(apiService, Mockito.never()).getRepositoriesOfUser(Mockito.eq("ghost"), Mockito.any());
+		Assertions.assertEquals(1, negativeLookupCache.stats().recentHits());
+		Assertions.assertEquals(2, negativeLookupCache.stats().filterHits());
+		Assertions.assertEquals(3, cache.stats().negativeHits());
+	}
+	
+	@Test
+	void recentMissesAreBoundedTest() {
+		// given
+		var negativeLookupCache = new NegativeLookupCache(Duration.ofMinutes(1), 2, 0, Duration.ofHours(1));
+		// when
+		for (String username : List.of("a", "b", "c")) {
+			negativeLookupCache.recordMissing(username, new UserNotFoundException("Not found"));
+		}
+		// then
+		Assertions.assertEquals(2, negativeLookupCache.stats().size());
+		Assertions.assertNull(negativeLookupCache.lookup("a", "a"));
+		Assertions.assertNotNull(negativeLookupCache.lookup("c", "c"));
+	}
+	
+	@Test
+	void userFoundToExistIsNotBlockedByFilterTest() throws InterruptedException {
+		// given
+		var negativeLookupCache = new NegativeLookupCache(Duration.ofMillis(50), 100, 1000, Duration.ofHours(1));
+		var cache = new RepositoryCacheService(apiService, 1, Duration.ofMinutes(1), negativeLookupCache, Duration.ZERO, false);
+		Mockito.when(apiService.getRepositoriesAndBranchesOfUser("newcomer"))
+				.thenThrow(new UserNotFoundException("Not found"))
+				.thenReturn(repos);
+		Mockito.when(apiService.getRepositoriesAndBranchesOfUser("other")).thenReturn(repos);
+		Assertions.assertThrows(UserNotFoundException.class, () -> cache.getRepositoriesAndBranchesOfUser("newcomer"));
+		// when
+		// registered meanwhile and refreshed in background, then evicted by another user
+		Assertions.assertTrue(cache.refresh("newcomer"));
+		cache.getRepositoriesAndBranchesOfUser("other");
+		Thread.sleep(100);
+		// then
+		Assertions.assertEquals(repos, cache.getRepositoriesAndBranchesOfUser("newcomer"));
+		Mockito.verify(apiService, Mockito.times(3)).getRepositoriesAndBranchesOfUser("newcomer");
+		Assertions.assertEquals(0, negativeLookupCache.stats().filterHits());
+	}
+	
+	@Test
+	void filterNeverBlocksFoundUsersTest() {
+		// given
+		var negativeLookupCache = new NegativeLookupCache(Duration.ofMinutes(1), 10_000, 100_000, Duration.ofHours(1));
+		IntStream.range(0, 10_000).forEach(i -> negativeLookupCache.recordFound("user-" + i));
+		// when
+		IntStream.range(0, 100_000).forEach(i -> negativeLookupCache.recordMissing("missing-" + i, new UserNotFoundException("Not found")));
+		// then
+		for (int i = 0; i < 10_000; i++) {
+			Assertions.assertNull(negativeLookupCache.lookup("user-" + i, "user-" + i));
+		}
+		Assertions.assertEquals(0, negativeLookupCache.stats().filterHits());
+	}
+	
+	@Test
+	void filterHasFewFalsePositivesTest() {
+		// given
+		var filter = new RotatingBloomFilter(100_000, Duration.ofHours(1).toNanos());
+		IntStream.range(0, 100_000).forEach(i -> filter.add("missing-" + i));
+		// when
+		long falsePositives = IntStream.range(0, 100_000).filter(i -> filter.mightContain("unknown-" + i)).count();
+		// then
+		Assertions.assertTrue(IntStream.range(0, 100_000).allMatch(i -> filter.mightContain("missing-" + i)));
+		Assertions.assertTrue(falsePositives < 500, "false positives: " + falsePositives);
+		Assertions.assertTrue(filter.sizeInBytes() < 400_000);
+	}
+}
@@ -0,0 +1,143 @@
+package pl.majchrzw.repoapi;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpHeaders;
+import pl.majchrzw.repoapi.configuration.PersistentResponseStore;
+import pl.majchrzw.repoapi.configuration.PersistentResponseStore.Entry;
+
+import java.io.RandomAccessFile;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+
+public class PersistentResponseStoreTests {
+	
+	@TempDir
+	Path directory;
+	
+	@Test
+	void storedResponsesSurviveRestartTest() throws Exception {
+		// given
+		var store = open();
+		var fetchedAt = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+		store.put(uri("a"), entry("a", fetchedAt));
+		store.put(uri("b"), entry("b", fetchedAt));
+		store.put(uri("a"), entry("a2", fetchedAt));
+		store.destroy();
+		// when
+		var restarted = open();
+		// then
+		Assertions.assertTrue(restarted.awaitLoaded(Duration.ofSeconds(5)));
+		Entry a = restarted.get(uri("a"));
+		Assertions.assertEquals("a2", new String(a.body(), StandardCharsets.UTF_8));
+		Assertions.assertEquals("\"etag-a2\"", a.headers().getETag());
+		Assertions.assertEquals(fetchedAt, a.fetchedAt());
+		Assertions.assertEquals("b", new String(restarted.get(uri("b")).body(), StandardCharsets.UTF_8));
+		Assertions.assertEquals(2, restarted.stats().entries());
+		restarted.destroy();
+	}
+	
+	@Test
+	void truncatedTailIsIgnoredTest() throws Exception {
+		// given
+		var store = open();
+		store.put(uri("a"), entry("a", Instant.now()));
+		store.put(uri("b"), entry("b", Instant.now()));
+		store.destroy();
+		long size = Files.size(file());
+		try (var file = new RandomAccessFile(file().toFile(), "rw")) {
+			file.setLength(size - 3);
+		}
+		// when
+		var restarted = open();
+		restarted.awaitLoaded(Duration.ofSeconds(5));
+		restarted.put(uri("c"), entry("c", Instant.now()));
+		restarted.destroy();
+		var reopened = open();
+		reopened.awaitLoaded(Duration.ofSeconds(5));
+		// then
+		Assertions.assertNotNull(reopened.get(uri("a")));
+		Assertions.assertNull(reopened.get(uri("b")));
+		Assertions.assertEquals("c", new String(reopened.get(uri("c")).body(), StandardCharsets.UTF_8));
+		reopened.destroy();
+	}
+	
+	@Test
+	void corruptedRecordEndsTheFileTest() throws Exception {
+		// given
+		var store = open();
+		store.put(uri("a"), entry("a", Instant.now()));
+		store.put(uri("b"), entry("b", Instant.now()));
+		store.destroy();
+		try (var file = new RandomAccessFile(file().toFile(), "rw")) {
+			file.seek(file.length() - 1);
+			file.write('x');
+		}
+		// when
+		var restarted = open();
+		restarted.awaitLoaded(Duration.ofSeconds(5));
+		// then
+		Assertions.assertNotNull(restarted.get(uri("a")));
+		Assertions.assertNull(restarted.get(uri("b")));
+		restarted.destroy();
+	}
+	
+	@Test
+	void expiredResponseIsNotLoadedTest() throws Exception {
+		// given
+		var store = open();
+		store.put(uri("old"), entry("old", Instant.now().minus(Duration.ofDays(8))));
+		store.put(uri("new"), entry("new", Instant.now()));
+		store.destroy();
+		// when
+		var restarted = open();
+		restarted.awaitLoaded(Duration.ofSeconds(5));
+		// then
+		Assertions.assertNull(restarted.get(uri("old")));
+		Assertions.assertNotNull(restarted.get(uri("new")));
+		restarted.destroy();
+	}
+	
+	@Test
+	void supersededRecordsAreCompactedTest() throws Exception {
+		// given
+		var store = open();
+		String body = "x".repeat(16 * 1024);
+		// when
+		for (int i = 0; i < 200; i++) {
+			store.put(uri("a"), entry(body + i, Instant.now()));
+		}
+		store.destroy();
+		// then
+		Assertions.assertTrue(Files.size(file()) < 2 * 1024 * 1024, "store has not been compacted");
+		var restarted = open();
+		restarted.awaitLoaded(Duration.ofSeconds(5));
+		Assertions.assertEquals(body + 199, new String(restarted.get(uri("a")).body(), StandardCharsets.UTF_8));
+		restarted.destroy();
+	}
+	
+	private PersistentResponseStore open() {
+		return new PersistentResponseStore(file().toString(), Duration.ofDays(7));
+	}
+	
+	private Path file() {
+		return directory.resolve("responses.bin");
+	}
+	
+	private static URI uri(String name) {
+		return URI.create("http://localhost/repos/octocat/" + name + "/branches?per_page=100&page=1");
+	}
+	
+	private static Entry entry(String body, Instant fetchedAt) {
+		var headers = new HttpHeaders();
+		headers.setETag("\"etag-" + body + "\"");
+		headers.add(HttpHeaders.LINK, "<http://localhost/next>; rel=\"next\"");
+		return new Entry(headers, body.getBytes(StandardCharsets.UTF_8), fetchedAt);
+	}
+}
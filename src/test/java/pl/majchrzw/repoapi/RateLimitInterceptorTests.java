@@ -0,0 +1,219 @@
+package pl.majchrzw.repoapi;
+
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.web.client.RestClient;
+import pl.majchrzw.repoapi.configuration.IoRetryStrategy;
+import pl.majchrzw.repoapi.configuration.RateLimitInterceptor;
+import pl.majchrzw.repoapi.exception.ExternalApiErrorException;
+import pl.majchrzw.repoapi.model.TokenQuota;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class RateLimitInterceptorTests {
+	
+	private MockWebServer webServer;
+	private QuotaDispatcher dispatcher;
+	
+	@BeforeEach
+	void beforeEach() throws IOException {
+		webServer = new MockWebServer();
+		dispatcher = new QuotaDispatcher();
+		webServer.setDispatcher(dispatcher);
+		webServer.start();
+	}
+	
+	@AfterEach
+	void afterEach() throws IOException {
+		webServer.shutdown();
+	}
+	
+	@Test
+	void tokenWithMostQuotaIsUsedTest() throws InterruptedException {
+		// given
+		dispatcher.quota("a", 10, 60);
+		dispatcher.quota("b", 100, 60);
+		var interceptor = new RateLimitInterceptor("a", new String[]{"b"}, 0, Duration.ofSeconds(1));
+		var client = client(interceptor);
+		// when
+		for (int i = 0; i < 10; i++) {
+			client.get().uri("/users/octocat/repos").retrieve().toBodilessEntity();
+		}
+		// then
+		webServer.takeRequest();
+		webServer.takeRequest();
+		for (int i = 2; i < 10; i++) {
+			Assertions.assertEquals("Bearer b", webServer.takeRequest().getHeader(HttpHeaders.AUTHORIZATION));
+		}
+		List<TokenQuota> quotas = interceptor.quotas();
+		Assertions.assertEquals(9, quotas.get(0).remaining());
+		Assertions.assertEquals(91, quotas.get(1).remaining());
+	}
+	
+	@Test
+	void rateLimitedCallIsRetriedWithAnotherTokenTest() throws InterruptedException {
+		// given
+		dispatcher.quota("a", 100, 60);
+		dispatcher.quota("b", 50, 60);
+		dispatcher.retryAfter("a", 30);
+		var interceptor = new RateLimitInterceptor("a", new String[]{"b"}, 0, Duration.ofSeconds(1));
+		// when
+		var response = client(interceptor).get().uri("/users/octocat/repos").retrieve().toBodilessEntity();
+		// then
+		Assertions.assertEquals(200, response.getStatusCode().value());
+		Assertions.assertEquals("Bearer a", webServer.takeRequest().getHeader(HttpHeaders.AUTHORIZATION));
+		Assertions.assertEquals("Bearer b", webServer.takeRequest().getHeader(HttpHeaders.AUTHORIZATION));
+		Assertions.assertTrue(interceptor.quotas().getFirst().blockedUntil().toEpochMilli() > System.currentTimeMillis() + 20_000);
+	}
+	
+	@Test
+	void callFailsFastWhenQuotaIsExhaustedTest() {
+		// given
+		dispatcher.quota("a", 1, 3600);
+		var interceptor = new RateLimitInterceptor("a", new String[0], 0, Duration.ofSeconds(1));
+		var client = client(interceptor);
+		client.get().uri("/users/octocat/repos").retrieve().toBodilessEntity();
+		// then
+		Assertions.assertThrows(ExternalApiErrorException.class, () -> client.get().uri("/users/octocat/repos").retrieve().toBodilessEntity());
+		Assertions.assertEquals(1, webServer.getRequestCount());
+	}
+	
+	@Test
+	void reservedQuotaIsNotUsedTest() {
+		// given
+		dispatcher.quota("a", 5, 3600);
+		var interceptor = new RateLimitInterceptor("a", new String[0], 3, Duration.ofSeconds(1));
+		var client = client(interceptor);
+		// when
+		client.get().uri("/users/octocat/repos").retrieve().toBodilessEntity();
+		client.get().uri("/users/octocat/repos").retrieve().toBodilessEntity();
+		// then
+		Assertions.assertThrows(ExternalApiErrorException.class, () -> client.get().uri("/users/octocat/repos").retrieve().toBodilessEntity());
+		Assertions.assertEquals(2, webServer.getRequestCount());
+	}
+	
+	@Test
+	void notModifiedResponsesDoNotUseQuotaTest() {
+		// given
+		dispatcher.quota("a", 3, 3600);
+		var interceptor = new RateLimitInterceptor("a", new String[0], 0, Duration.ofSeconds(1));
+		var client = client(interceptor);
+		client.get().uri("/users/octocat/repos").retrieve().toBodilessEntity();
+		// when
+		for (int i = 0; i < 10; i++) {
+			var response = client.get().uri("/users/octocat/repos").header(HttpHeaders.IF_NONE_MATCH, "\"etag\"").retrieve().toBodilessEntity();
+			Assertions.assertEquals(304, response.getStatusCode().value());
+		}
+		client.get().uri("/users/octocat/repos").retrieve().toBodilessEntity();
+		// then
+		Assertions.assertEquals(1, interceptor.quotas().getFirst().remaining());
+		Assertions.assertEquals(12, webServer.getRequestCount());
+	}
+	
+	@Test
+	void callWaitsForNearResetTest() {
+		// given
+		dispatcher.quota("a", 1, 2);
+		var interceptor = new RateLimitInterceptor("a", new String[0], 0, Duration.ofSeconds(5));
+		var client = client(interceptor);
+		client.get().uri("/users/octocat/repos").retrieve().toBodilessEntity();
+		// when
+		long start = System.nanoTime();
+		var response = client.get().uri("/users/octocat/repos").retrieve().toBodilessEntity();
+		long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+		// then
+		Assertions.assertEquals(200, response.getStatusCode().value());
+		Assertions.assertTrue(elapsedMs >= 500, "call has not waited for reset, elapsed " + elapsedMs + "ms");
+		Assertions.assertEquals(2, webServer.getRequestCount());
+	}
+	
+	@Test
+	void anonymousCallsHaveNoAuthorizationHeaderTest() throws InterruptedException {
+		// given
+		var interceptor = new RateLimitInterceptor("", new String[0], 0, Duration.ofSeconds(1));
+		// when
+		client(interceptor).get().uri("/users/octocat/repos").retrieve().toBodilessEntity();
+		// then
+		Assertions.assertNull(webServer.takeRequest().getHeader(HttpHeaders.AUTHORIZATION));
+		Assertions.assertEquals("anonymous", interceptor.quotas().getFirst().token());
+	}
+	
+	private RestClient client(RateLimitInterceptor interceptor) {
+		// retries as the github http client does, so that rate limited responses reach the interceptor
+		return RestClient.builder()
+				.baseUrl("http://localhost:" + webServer.getPort())
+				.requestFactory(new HttpComponentsClientHttpRequestFactory(HttpClients.custom().setRetryStrategy(new IoRetryStrategy()).build()))
+				.requestInterceptor(interceptor)
+				.build();
+	}
+	
+	/**
+	 * Emulates GitHub quota accounting per token, with the first window ending given number of seconds after quota is set.
+	 */
+	private static class QuotaDispatcher extends Dispatcher {
+		
+		private final Map<String, AtomicInteger> remaining = new ConcurrentHashMap<>();
+		private final Map<String, Integer> limits = new ConcurrentHashMap<>();
+		private final Map<String, Long> resets = new ConcurrentHashMap<>();
+		private final Map<String, Integer> retryAfter = new ConcurrentHashMap<>();
+		
+		void quota(String token, int limit, long resetInSeconds) {
+			limits.put(token, limit);
+			remaining.put(token, new AtomicInteger(limit));
+			resets.put(token, System.currentTimeMillis() / 1000 + resetInSeconds);
+		}
+		
+		void retryAfter(String token, int seconds) {
+			retryAfter.put(token, seconds);
+		}
+		
+		@Override
+		public MockResponse dispatch(RecordedRequest request) {
+			String authorization = request.getHeader(HttpHeaders.AUTHORIZATION);
+			if (authorization == null) {
+				return new MockResponse().setResponseCode(200).setBody("[]");
+			}
+			String token = authorization.substring("Bearer ".length());
+			Integer retry = retryAfter.remove(token);
+			if (retry != null) {
+				return new MockResponse()
+						.setResponseCode(429)
+						.addHeader(HttpHeaders.RETRY_AFTER, retry);
+			}
+			long now = System.currentTimeMillis() / 1000;
+			if (resets.get(token) <= now) {
+				remaining.get(token).set(limits.get(token));
+				resets.put(token, now + 3600);
+			}
+			if (request.getHeader(HttpHeaders.IF_NONE_MATCH) != null) {
+				// like on GitHub, revalidation does not count against quota
+				return new MockResponse()
+						.setResponseCode(304)
+						.addHeader("X-RateLimit-Limit", limits.get(token))
+						.addHeader("X-RateLimit-Remaining", remaining.get(token).get())
+						.addHeader("X-RateLimit-Reset", resets.get(token));
+			}
+			int left = remaining.get(token).decrementAndGet();
+			return new MockResponse()
+					.setResponseCode(left < 0 ? 403 : 200)
+					.addHeader("X-RateLimit-Limit", limits.get(token))
+					.addHeader("X-RateLimit-Remaining", Math.max(0, left))
+					.addHeader("X-RateLimit-Reset", resets.get(token))
+					.setBody("[]");
+		}
+	}
+}
@@ -0,0 +1,133 @@
+package pl.majchrzw.repoapi;
+
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import pl.majchrzw.repoapi.exception.ExternalApiErrorException;
+import pl.majchrzw.repoapi.service.ReactiveGithubApiService;
+import reactor.test.StepVerifier;
+
+import java.io.IOException;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@SpringBootTest(properties = {"gh-reactive=true", "cache-ttl=0s", "cache-negative-ttl=0s"})
+@AutoConfigureMockMvc
+public class ReactiveGithubApiServiceTests {
+	
+	static MockWebServer webServer;
+	
+	@Autowired
+	private ReactiveGithubApiService reactiveGithubApiService;
+	@Autowired
+	private MockMvc mockMvc;
+	
+	@DynamicPropertySource
+	static void properties(DynamicPropertyRegistry r) {
+		r.add("gh-api-url", () -> "http://localhost:" + webServer.getPort());
+	}
+	
+	@BeforeAll
+	static void beforeAll() throws IOException {
+		webServer = new MockWebServer();
+		webServer.setDispatcher(new StubDispatcher());
+		webServer.start();
+	}
+	
+	@AfterAll
+	static void afterAll() throws IOException {
+		webServer.shutdown();
+	}
+	
+	@Test
+	void repositoriesAreReturnedInListingOrderTest() {
+		StepVerifier.create(reactiveGithubApiService.getRepositoriesAndBranchesOfUser("octocat"))
+				.assertNext(repositories -> {
+					Assertions.assertEquals(2, repositories.size());
+					Assertions.assertEquals("slow", repositories.get(0).name());
+					Assertions.assertEquals("fast", repositories.get(1).name());
+					Assertions.assertEquals("c5b97d5ae6c19d5c5df71a34c7fbeeda2479ccbc",
+							repositories.get(0).branches().getFirst().lastCommit().sha());
+				})
+				.verifyComplete();
+	}
+	
+	@Test
+	void rateLimitedCallIsExternalApiErrorTest() {
+		StepVerifier.create(reactiveGithubApiService.getRepositoriesAndBranchesOfUser("limited"))
+				.verifyError(ExternalApiErrorException.class);
+	}
+	
+	@Test
+	void reactiveEndpointReturnsRepositoriesTest() throws Exception {
+		// when
+		MvcResult started = mockMvc.perform(get("/reactive/api/octocat")).andExpect(request().asyncStarted()).andReturn();
+		// then
+		mockMvc.perform(asyncDispatch(started))
+				.andExpect(status().isOk())
+				.andExpect(content().contentType(MediaType.APPLICATION_JSON))
+				.andExpect(jsonPath("$[0].name").value("slow"))
+				.andExpect(jsonPath("$[0].fork").doesNotExist())
+				.andExpect(jsonPath("$[1].branches[0].name").value("main"));
+	}
+	
+	@Test
+	void reactiveEndpointMapsNotFoundUserTest() throws Exception {
+		// when
+		MvcResult started = mockMvc.perform(get("/reactive/api/not_existing")).andExpect(request().asyncStarted()).andReturn();
+		// then
+		mockMvc.perform(asyncDispatch(started))
+				.andExpect(status().is(404))
+				.andExpect(content().contentType(MediaType.APPLICATION_JSON))
+				.andExpect(jsonPath("$.status").value("404"))
+				.andExpect(jsonPath("$.message").exists());
+	}
+	
+	private static class StubDispatcher extends Dispatcher {
+		
+		@Override
+		public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+			String path = request.getRequestUrl().encodedPath();
+			return switch (path) {
+				case "/users/octocat/repos" -> json("""
+						[
+						  {"name": "slow", "owner": {"login": "octocat"}, "fork": false},
+						  {"name": "forked", "owner": {"login": "octocat"}, "fork": true},
+						  {"name": "fast", "owner": {"login": "octocat"}, "fork": false}
+						]
+						""");
+				case "/repos/octocat/slow/branches" -> {
+					// answered after branches of the next repository, order of output must not change
+					Thread.sleep(200);
+					yield json("[{\"name\": \"main\", \"commit\": {\"sha\": \"c5b97d5ae6c19d5c5df71a34c7fbeeda2479ccbc\"}}]");
+				}
+				case "/repos/octocat/fast/branches" -> json("[{\"name\": \"main\", \"commit\": {\"sha\": \"7fd1a60b01f91b314f59955a4e4d4e80d8edf11d\"}}]");
+				case "/users/limited/repos" -> new MockResponse().setResponseCode(403).setBody("{\"message\": \"API rate limit exceeded\"}");
+				default -> new MockResponse().setResponseCode(404);
+			};
+		}
+		
+		private MockResponse json(String body) {
+			return new MockResponse()
+					.setResponseCode(200)
+					.addHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+					.setBody(body);
+		}
+	}
+}
@@ -0,0 +1,171 @@
+package pl.majchrzw.repoapi;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import pl.majchrzw.repoapi.exception.ExternalApiErrorException;
+import pl.majchrzw.repoapi.exception.UserNotFoundException;
+import pl.majchrzw.repoapi.model.CompactRepositoryList;
+import pl.majchrzw.repoapi.model.OwnerDto;
+import pl.majchrzw.repoapi.model.RepositoryDto;
+import pl.majchrzw.repoapi.service.GithubApiService;
+import pl.majchrzw.repoapi.service.NegativeLookupCache;
+import pl.majchrzw.repoapi.service.RepositoryCacheService;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+public class RepositoryCacheServiceTests {
+	
+	private final GithubApiService apiService = Mockito.mock(GithubApiService.class);
+	private final List<RepositoryDto> repos = List.of(new RepositoryDto("repo", new OwnerDto("user"), false, List.of()));
+	private final NegativeLookupCache negativeLookupCache = new NegativeLookupCache(Duration.ofMinutes(1), 100, 1000, Duration.ofHours(1));
+	
+	@Test
+	void secondRequestIsServedFromCacheTest() {
+		// given
+		var cache = new RepositoryCacheService(apiService, 10, Duration.ofMinutes(1), negativeLookupCache, Duration.ZERO, false);
+		Mockito.when(apiService.getRepositoriesAndBranchesOfUser("user")).thenReturn(repos);
+		// when
+		cache.getRepositoriesAndBranchesOfUser("user");
+		List<RepositoryDto> res = cache.getRepositoriesAndBranchesOfUser("User");
+		// then
+		Assertions.assertEquals(repos, res);
+		Assertions.assertInstanceOf(CompactRepositoryList.class, res);
+		Mockito.verify(apiService, Mockito.times(1)).getRepositoriesAndBranchesOfUser(Mockito.anyString());
+		Assertions.assertEquals(1, cache.stats().hits());
+		Assertions.assertEquals(1, cache.stats().misses());
+	}
+	
+	@Test
+	void expiredEntryIsFetchedAgainTest() throws InterruptedException {
+		// given
+		var cache = new RepositoryCacheService(apiService, 10, Duration.ofMillis(50), negativeLookupCache, Duration.ZERO, false);
+		Mockito.when(apiService.getRepositoriesAndBranchesOfUser("user")).thenReturn(repos);
+		// when
+		cache.getRepositoriesAndBranchesOfUser("user");
+		Thread.sleep(100);
+		cache.getRepositoriesAndBranchesOfUser("user");
+		// then
+		Mockito.verify(apiService, Mockito.times(2)).getRepositoriesAndBranchesOfUser("user");
+	}
+	
+	@Test
+	void expiredEntryIsRefreshedFromSnapshotTest() throws InterruptedException {
+		// given
+		var cache = new RepositoryCacheService(apiService, 10, Duration.ofMillis(50), negativeLookupCache, Duration.ZERO, true);
+		var refreshed = List.of(new RepositoryDto("repo", new OwnerDto("user"), false, List.of()));
+		Mockito.when(apiService.getRepositoriesAndBranchesOfUser("user")).thenReturn(repos);
+		Mockito.when(apiService.refreshRepositoriesOfUser("user", repos)).thenReturn(refreshed);
+		// when
+		cache.getRepositoriesAndBranchesOfUser("user");
+		Thread.sleep(100);
+		List<RepositoryDto> res = cache.getRepositoriesAndBranchesOfUser("user");
+		// then
+		Assertions.assertEquals(refreshed, res);
+		Assertions.assertSame(res, cache.getRepositoriesAndBranchesOfUser("user"));
+		Mockito.verify(apiService, Mockito.times(1)).getRepositoriesAndBranchesOfUser("user");
+		Assertions.assertEquals(1, cache.stats().refreshes());
+	}
+	
+	@Test
+	void expiredEntryIsServedStaleWhileRevalidatedTest() throws InterruptedException {
+		// given
+		var cache = new RepositoryCacheService(apiService, 10, Duration.ofMillis(50), negativeLookupCache, Duration.ofMinutes(1), false);
+		var refreshed = List.of(new RepositoryDto("repo", new OwnerDto("user"), false, List.of()));
+		List<String> revalidated = new ArrayList<>();
+		cache.onStale(revalidated::add);
+		// revalidation looks the user up with username of the stale hit
+		Mockito.when(apiService.getRepositoriesAndBranchesOfUser(Mockito.anyString())).thenReturn(repos)
+				.thenReturn(refreshed);
+		// when
+		cache.getRepositoriesAndBranchesOfUser("user");
+		Thread.sleep(100);
+		List<RepositoryDto> stale = cache.getRepositoriesAndBranchesOfUser("User");
+		cache.refresh(revalidated.getFirst());
+		// then
+		Assertions.assertEquals(repos, stale);
+		Assertions.assertEquals(List.of("User"), revalidated);
+		Assertions.assertEquals(refreshed, cache.getRepositoriesAndBranchesOfUser("user"));
+		Assertions.assertNotSame(stale, cache.getRepositoriesAndBranchesOfUser("user"));
+		Assertions.assertEquals(1, cache.stats().staleHits());
+		Assertions.assertEquals(2, cache.stats().hits());
+		Mockito.verify(apiService, Mockito.times(2)).getRepositoriesAndBranchesOfUser(Mockito.anyString());
+	}
+	
+	@Test
+	void notFoundUserIsCachedTest() {
+		// given
+		var cache = new RepositoryCacheService(apiService, 10, Duration.ofMinutes(1), negativeLookupCache, Duration.ZERO, false);
+		Mockito.when(apiService.getRepositoriesAndBranchesOfUser("missing")).thenThrow(new UserNotFoundException("Not found"));
+		// then
+		Assertions.assertThrows(UserNotFoundException.class, () -> cache.getRepositoriesAndBranchesOfUser("missing"));
+		Assertions.assertThrows(UserNotFoundException.class, () -> cache.getRepositoriesAndBranchesOfUser("missing"));
+		Mockito.verify(apiService, Mockito.times(1)).getRepositoriesAndBranchesOfUser("missing");
+		Assertions.assertEquals(1, cache.stats().negativeHits());
+	}
+	
+	@Test
+	void externalApiErrorIsNotCachedTest() {
+		// given
+		var cache = new RepositoryCacheService(apiService, 10, Duration.ofMinutes(1), negativeLookupCache, Duration.ZERO, false);
+		Mockito.when(apiService.getRepositoriesAndBranchesOfUser("user"))
+				.thenThrow(new ExternalApiErrorException("External api error"))
+				.thenReturn(repos);
+		// then
+		Assertions.assertThrows(ExternalApiErrorException.class, () -> cache.getRepositoriesAndBranchesOfUser("user"));
+		Assertions.assertEquals(repos, cache.getRepositoriesAndBranchesOfUser("user"));
+	}
+	
+	@Test
+	void leastRecentlyUsedUserIsEvictedTest() {
+		// given
+		var cache = new RepositoryCacheService(apiService, 2, Duration.ofMinutes(1), negativeLookupCache, Duration.ZERO, false);
+		Mockito.when(apiService.getRepositoriesAndBranchesOfUser(Mockito.anyString())).thenReturn(repos);
+		// when
+		cache.getRepositoriesAndBranchesOfUser("a");
+		cache.getRepositoriesAndBranchesOfUser("b");
+		cache.getRepositoriesAndBranchesOfUser("a");
+		cache.getRepositoriesAndBranchesOfUser("c");
+		cache.getRepositoriesAndBranchesOfUser("b");
+		// then
+		Mockito.verify(apiService, Mockito.times(2)).getRepositoriesAndBranchesOfUser("b");
+		Mockito.verify(apiService, Mockito.times(1)).getRepositoriesAndBranchesOfUser("a");
+		Assertions.assertEquals(2, cache.stats().size());
+	}
+	
+	@Test
+	void concurrentMissesAreCoalescedTest() throws Exception {
+		// given
+		var cache = new RepositoryCacheService(apiService, 10, Duration.ofMinutes(1), negativeLookupCache, Duration.ZERO, false);
+		var release = new CountDownLatch(1);
+		Mockito.when(apiService.getRepositoriesAndBranchesOfUser("user")).thenAnswer(invocation -> {
+			release.await(5, TimeUnit.SECONDS);
+			return repos;
+		});
+		int callers = 10;
+		List<Future<List<RepositoryDto>>> results = new ArrayList<>();
+		// when
+		try (ExecutorService executor = Executors.newFixedThreadPool(callers)) {
+			for (int i = 0; i < callers; i++) {
+				results.add(executor.submit(() -> cache.getRepositoriesAndBranchesOfUser("user")));
+			}
+			while (cache.stats().coalesced() < callers - 1) {
+				Thread.sleep(10);
+			}
+			release.countDown();
+			for (Future<List<RepositoryDto>> result : results) {
+				Assertions.assertEquals(repos, result.get(5, TimeUnit.SECONDS));
+			}
+		}
+		// then
+		Mockito.verify(apiService, Mockito.times(1)).getRepositoriesAndBranchesOfUser("user");
+		Assertions.assertEquals(callers - 1, cache.stats().coalesced());
+	}
+}
@@ -0,0 +1,206 @@
+package pl.majchrzw.repoapi;
+
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.web.client.RestClient;
+import pl.majchrzw.repoapi.exception.ExternalApiErrorException;
+import pl.majchrzw.repoapi.service.FanOutExecutor;
+import pl.majchrzw.repoapi.service.GithubMetrics;
+import pl.majchrzw.repoapi.service.RequestDeadline;
+import pl.majchrzw.repoapi.service.RequestHedger;
+import pl.majchrzw.repoapi.service.RestGithubApiService;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@SpringBootTest(properties = {"request-deadline=5s", "gh-hedge-enabled=false", "cache-ttl=1m"})
+@AutoConfigureMockMvc
+public class RequestDeadlineTests {
+	
+	private static final Set<String> hangingRepos = Set.of("repo-2", "repo-5");
+	
+	static MockWebServer webServer;
+	// hanging calls are answered only after the test, other ones at once
+	static volatile CountDownLatch release;
+	static final AtomicInteger hangingCalls = new AtomicInteger();
+	static final AtomicInteger slowListings = new AtomicInteger();
+	
+	@Autowired
+	private MockMvc mockMvc;
+	@Autowired
+	private RequestDeadline requestDeadline;
+	@Autowired
+	private FanOutExecutor fanOutExecutor;
+	@Autowired
+	private GithubMetrics githubMetrics;
+	
+	@DynamicPropertySource
+	static void properties(DynamicPropertyRegistry r) {
+		r.add("gh-api-url", () -> "http://localhost:" + webServer.getPort());
+	}
+	
+	@BeforeAll
+	static void beforeAll() throws IOException {
+		webServer = new MockWebServer();
+		webServer.setDispatcher(new HangingDispatcher());
+		webServer.start();
+	}
+	
+	@AfterAll
+	static void afterAll() throws IOException {
+		webServer.shutdown();
+	}
+	
+	@BeforeEach
+	void beforeEach() {
+		release = new CountDownLatch(1);
+		hangingCalls.set(0);
+		slowListings.set(0);
+	}
+	
+	@AfterEach
+	void afterEach() {
+		release.countDown();
+	}
+	
+	@Test
+	void resolvedRepositoriesAreReturnedWhenDeadlinePassesTest() throws Exception {
+		// given
+		long exceeded = requestDeadline.stats().exceeded();
+		// when
+		var res = mockMvc.perform(get("/api/octocat").header("X-Request-Deadline", "1000"));
+		// then
+		res.andExpect(status().isOk())
+				.andExpect(header().string("X-Partial-Response", "true"))
+				.andExpect(jsonPath("$.length()").value(8))
+				.andExpect(jsonPath("$[0].branches[0].name").value("branch-of-repo-0"))
+				.andExpect(jsonPath("$[0].branchesComplete").doesNotExist())
+				.andExpect(jsonPath("$[2].branches").doesNotExist())
+				.andExpect(jsonPath("$[2].branchesComplete").value(false))
+				.andExpect(jsonPath("$[5].branchesComplete").value(false));
+		// answered while calls of both hanging repositories are still held
+		Assertions.assertEquals(2, hangingCalls.get());
+		Assertions.assertEquals(1, release.getCount());
+		Assertions.assertEquals(exceeded + 1, requestDeadline.stats().exceeded());
+	}
+	
+	@Test
+	void partialResultIsNotCachedTest() throws Exception {
+		// given
+		mockMvc.perform(get("/api/cached").header("X-Request-Deadline", "300"))
+				.andExpect(header().string("X-Partial-Response", "true"));
+		// when
+		var res = mockMvc.perform(get("/api/cached").header("X-Request-Deadline", "300"));
+		// then
+		res.andExpect(header().string("X-Partial-Response", "true"));
+	}
+	
+	@Test
+	void gatewayTimeoutWhenListingIsNotFetchedInTimeTest() throws Exception {
+		// when
+		var res = mockMvc.perform(get("/api/slowpoke").header("X-Request-Deadline", "300"));
+		// then
+		res.andExpect(status().is(504))
+				.andExpect(jsonPath("$.status").value("504"));
+	}
+	
+	@Test
+	void coalescedRequestDoesNotWaitPastItsDeadlineTest() throws Exception {
+		// given
+		var leader = CompletableFuture.runAsync(() -> {
+			try {
+				mockMvc.perform(get("/api/slowcoach"));
+			} catch (Exception e) {
+				throw new RuntimeException(e);
+			}
+		});
+		while (slowListings.get() == 0) {
+			Thread.sleep(5);
+		}
+		long start = System.nanoTime();
+		// when
+		var res = mockMvc.perform(get("/api/slowcoach").header("X-Request-Deadline", "300"));
+		// then
+		res.andExpect(status().is(504));
+		Assertions.assertTrue(System.nanoTime() - start < Duration.ofSeconds(2).toNanos());
+		Assertions.assertFalse(leader.isDone());
+	}
+	
+	@Test
+	void upstreamErrorAfterDeadlineIsNotReportedAsPartialResultTest() {
+		// given
+		var restClient = RestClient.builder()
+				.baseUrl("http://localhost:" + webServer.getPort())
+				.requestInterceptor((request, body, execution) -> {
+					if (!request.getURI().getPath().endsWith("/branches")) {
+						return execution.execute(request, body);
+					}
+					// GitHub answers with an error only once the deadline has passed
+					while (!RequestDeadline.isExpired()) {
+						Thread.onSpinWait();
+					}
+					throw new ExternalApiErrorException("Cannot realize request due to github api error, try later.");
+				})
+				.build();
+		var service = new RestGithubApiService(restClient, fanOutExecutor, githubMetrics,
+				new RequestHedger(false, 0.95, Duration.ofMillis(50), 0.1), 100, 10);
+		// then
+		Assertions.assertThrows(ExternalApiErrorException.class,
+				() -> requestDeadline.within(Duration.ofMillis(100), () -> service.getRepositoriesAndBranchesOfUser("octocat")));
+	}
+	
+	private static class HangingDispatcher extends Dispatcher {
+		
+		@Override
+		public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+			String[] segments = request.getRequestUrl().encodedPath().split("/");
+			if (segments[1].equals("users")) {
+				if (segments[2].startsWith("slow")) {
+					slowListings.incrementAndGet();
+					release.await();
+				}
+				return json(IntStream.range(0, 8)
+						.mapToObj(i -> "{\"name\":\"repo-" + i + "\",\"owner\":{\"login\":\"" + segments[2] + "\"},\"fork\":false}")
+						.collect(Collectors.joining(",", "[", "]")));
+			}
+			String repo = segments[3];
+			if (hangingRepos.contains(repo)) {
+				hangingCalls.incrementAndGet();
+				release.await();
+			}
+			return json("[{\"name\":\"branch-of-" + repo + "\",\"commit\":{\"sha\":\"c5b97d5ae6c19d5c5df71a34c7fbeeda2479ccbc\"}}]");
+		}
+		
+		private MockResponse json(String body) {
+			return new MockResponse()
+					.setResponseCode(200)
+					.addHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+					.setBody(body);
+		}
+	}
+}
@@ -0,0 +1,146 @@
+package pl.majchrzw.repoapi;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import pl.majchrzw.repoapi.controller.MainController;
+import pl.majchrzw.repoapi.model.BranchDto;
+import pl.majchrzw.repoapi.model.CommitDto;
+import pl.majchrzw.repoapi.model.OwnerDto;
+import pl.majchrzw.repoapi.model.RepositoryDto;
+import pl.majchrzw.repoapi.service.GithubApiService;
+import pl.majchrzw.repoapi.service.NegativeLookupCache;
+import pl.majchrzw.repoapi.service.RepositoryCacheService;
+import pl.majchrzw.repoapi.service.RequestDeadline;
+import pl.majchrzw.repoapi.service.SerializedResponseCache;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.stream.IntStream;
+import java.util.zip.GZIPInputStream;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@WebMvcTest(controllers = MainController.class)
+@Import({RepositoryCacheService.class, NegativeLookupCache.class, RequestDeadline.class, SerializedResponseCache.class})
+public class SerializedResponseCacheTests {
+	
+	@MockBean
+	private GithubApiService apiService;
+	
+	@Autowired
+	private MockMvc mockMvc;
+	@Autowired
+	private SerializedResponseCache serializedResponseCache;
+	@Autowired
+	private ObjectMapper objectMapper;
+	
+	@Test
+	void cachedResultIsWrittenFromSerializedBytesTest() throws Exception {
+		// given
+		var repositories = repositories("user", 20);
+		Mockito.when(apiService.getRepositoriesAndBranchesOfUser("user")).thenReturn(repositories);
+		long misses = serializedResponseCache.stats().misses();
+		long hits = serializedResponseCache.stats().hits();
+		// when
+		byte[] plain = mockMvc.perform(get("/api/user"))
+				.andExpect(status().isOk())
+				.andExpect(content().contentType(MediaType.APPLICATION_JSON))
+				.andExpect(header().doesNotExist(HttpHeaders.CONTENT_ENCODING))
+				.andReturn().getResponse().getContentAsByteArray();
+		byte[] compressed = mockMvc.perform(get("/api/user").header(HttpHeaders.ACCEPT_ENCODING, "gzip, deflate"))
+				.andExpect(status().isOk())
+				.andExpect(header().string(HttpHeaders.CONTENT_ENCODING, "gzip"))
+				.andExpect(header().string(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING))
+				.andReturn().getResponse().getContentAsByteArray();
+		// then
+		Assertions.assertArrayEquals(objectMapper.writeValueAsBytes(repositories), plain);
+		Assertions.assertArrayEquals(plain, gunzip(compressed));
+		Assertions.assertTrue(compressed.length < plain.length);
+		Assertions.assertEquals(misses + 1, serializedResponseCache.stats().misses());
+		Assertions.assertEquals(hits + 1, serializedResponseCache.stats().hits());
+		Mockito.verify(apiService, Mockito.times(1)).getRepositoriesAndBranchesOfUser("user");
+	}
+	
+	@Test
+	void gzipVariantHasEntityTagOfItsOwnTest() throws Exception {
+		// given
+		Mockito.when(apiService.getRepositoriesAndBranchesOfUser("coder")).thenReturn(repositories("coder", 20));
+		// when
+		String plainTag = mockMvc.perform(get("/api/coder").header(HttpHeaders.ACCEPT_ENCODING, "gzip;q=0, identity"))
+				.andExpect(status().isOk())
+				.andExpect(header().doesNotExist(HttpHeaders.CONTENT_ENCODING))
+				.andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+		String gzipTag = mockMvc.perform(get("/api/coder").header(HttpHeaders.ACCEPT_ENCODING, "br;q=1.0, *;q=0.5"))
+				.andExpect(status().isOk())
+				.andExpect(header().string(HttpHeaders.CONTENT_ENCODING, "gzip"))
+				.andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+		// then
+		Assertions.assertNotEquals(plainTag, gzipTag);
+		mockMvc.perform(get("/api/coder").header(HttpHeaders.ACCEPT_ENCODING, "gzip").header(HttpHeaders.IF_NONE_MATCH, gzipTag))
+				.andExpect(status().isNotModified());
+		mockMvc.perform(get("/api/coder").header(HttpHeaders.IF_NONE_MATCH, gzipTag))
+				.andExpect(status().isOk())
+				.andExpect(header().string(HttpHeaders.ETAG, plainTag));
+	}
+	
+	@Test
+	void newerResultIsSerializedAgainTest() throws IOException {
+		// given
+		var cache = new SerializedResponseCache(objectMapper, 1 << 20);
+		var first = repositories("user", 2);
+		var second = repositories("user", 3);
+		cache.get("user", first);
+		// when
+		var serialized = cache.get("USER", second);
+		// then
+		Assertions.assertArrayEquals(objectMapper.writeValueAsBytes(second), serialized.json());
+		Assertions.assertSame(serialized, cache.get("user", second));
+		Assertions.assertEquals(2, cache.stats().misses());
+		Assertions.assertEquals(1, cache.stats().entries());
+	}
+	
+	@Test
+	void entriesAreEvictedByByteWeightTest() {
+		// given
+		var probe = new SerializedResponseCache(objectMapper, 1 << 20).get("probe", repositories("probe", 10));
+		long weight = probe.json().length + probe.gzip().length;
+		var cache = new SerializedResponseCache(objectMapper, weight * 2 + weight / 2);
+		var first = repositories("first", 10);
+		// when
+		cache.get("first", first);
+		cache.get("second", repositories("second", 10));
+		cache.get("third", repositories("third", 10));
+		cache.get("first", first);
+		// then
+		Assertions.assertEquals(2, cache.stats().entries());
+		Assertions.assertTrue(cache.stats().bytes() <= weight * 2 + weight / 2);
+		Assertions.assertEquals(0, cache.stats().hits());
+		Assertions.assertEquals(4, cache.stats().misses());
+	}
+	
+	private static List<RepositoryDto> repositories(String owner, int count) {
+		return IntStream.range(0, count)
+				.mapToObj(i -> new RepositoryDto("repo-" + i, new OwnerDto(owner), false, List.of(
+						new BranchDto("main", new CommitDto("c5b97d5ae6c19d5c5df71a34c7fbeeda2479ccbc")),
+						new BranchDto("develop", new CommitDto("553c2077f0edc3d5dc5d17262f6aa498e69d6f8e"))
+				)))
+				.toList();
+	}
+	
+	private static byte[] gunzip(byte[] compressed) throws IOException {
+		try (var gzip = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+			return gzip.readAllBytes();
+		}
+	}
+}